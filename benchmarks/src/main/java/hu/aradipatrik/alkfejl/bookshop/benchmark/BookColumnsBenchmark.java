@@ -0,0 +1,104 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookColumns;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BookColumns} elemzései a könyv bean-eken futó ciklusokkal
+ * összevetve. A bean-ek nem adattárból jönnek, így 10 millió sor is elfér.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class BookColumnsBenchmark {
+
+    private static final String CATEGORY = "Category 3";
+    private static final int FROM_YEAR = 1950;
+    private static final int TO_YEAR = 1999;
+    private static final int HISTOGRAM_MIN = 1000;
+    private static final int HISTOGRAM_WIDTH = 500;
+    private static final int HISTOGRAM_BUCKETS = 20;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private List<Book> books;
+    private BookColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            books.add(Fixtures.book(n));
+        }
+        columns = BookColumns.of(books);
+    }
+
+    @Benchmark
+    public long stockValueBeans() {
+        long total = 0;
+        for (Book book : books) {
+            total += (long) book.getPrice() * book.getPiece();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long stockValueColumns() {
+        return columns.stockValue(null);
+    }
+
+    /**
+     * Egy kategória adott évek közötti könyveinek készletértéke.
+     */
+    @Benchmark
+    public long filteredStockValueBeans() {
+        long total = 0;
+        for (Book book : books) {
+            if (book.getYear() >= FROM_YEAR && book.getYear() <= TO_YEAR && CATEGORY.equals(book.getCategory())) {
+                total += (long) book.getPrice() * book.getPiece();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long filteredStockValueColumns() {
+        return columns.stockValue(BookColumns.and(columns.selectYears(FROM_YEAR, TO_YEAR),
+                columns.selectCategory(CATEGORY)));
+    }
+
+    @Benchmark
+    public int[] priceHistogramBeans() {
+        int[] histogram = new int[HISTOGRAM_BUCKETS];
+        for (Book book : books) {
+            long bucket = ((long) book.getPrice() - HISTOGRAM_MIN) / HISTOGRAM_WIDTH;
+            histogram[(int) Math.max(0, Math.min(HISTOGRAM_BUCKETS - 1, bucket))]++;
+        }
+        return histogram;
+    }
+
+    @Benchmark
+    public int[] priceHistogramColumns() {
+        return columns.priceHistogram(null, HISTOGRAM_MIN, HISTOGRAM_WIDTH, HISTOGRAM_BUCKETS);
+    }
+}
@@ -0,0 +1,61 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * A benchmarkok belépési pontja ({@code java -jar benchmarks.jar}).
+ * <p>
+ * Argumentumok nélkül mindent lefuttat a GC profilerrel (foglalás mûveletenként,
+ * GC idõ): a {@link DAOBenchmark}-ot egy szálon, majd {@value #THREADS} szálon a
+ * szálbiztos adattárakon, a többi benchmarkot a saját szálszámával. Az
+ * eredmények a munkakönyvtár {@code results-*.json} fájljaiba kerülnek.
+ * Argumentumokkal a szokásos JMH parancssorként mûködik (pl. {@code
+ * DAOBenchmark.getBooks -p size=1000 -prof gc}).
+ * </p>
+ */
+public final class BookShopBenchmarks {
+
+    static final int THREADS = 4;
+
+    private static final String DAO_BENCHMARK = "\\." + DAOBenchmark.class.getSimpleName() + "\\.";
+
+    private BookShopBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        if (args.length > 0) {
+            new Runner(new CommandLineOptions(args)).run();
+            return;
+        }
+
+        new Runner(options("single-threaded")
+                .include(DAO_BENCHMARK)
+                .threads(1)
+                .build()).run();
+
+        new Runner(options("multi-threaded")
+                .include(DAO_BENCHMARK)
+                .threads(THREADS)
+                .param("store", Fixtures.Store.DB.name(), Fixtures.Store.CONCURRENT_MEM.name())
+                .build()).run();
+
+        new Runner(options("other")
+                .include(BookShopBenchmarks.class.getPackage().getName() + "\\.")
+                .exclude(DAO_BENCHMARK)
+                .build()).run();
+    }
+
+    private static ChainedOptionsBuilder options(String name) {
+        return new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("results-" + name + ".json");
+    }
+}
@@ -0,0 +1,148 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.Page;
+import hu.aradipatrik.alkfejl.bookshop.model.PageRequest;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Vegyes terhelés a szálbiztos adattárakon: egyszerre vesznek fel
+ * vásárlókat, könyveket és vásárlásokat, és lapoznak, illetve keresnek id
+ * szerint. A mérés végén ellenõrzi, hogy egyetlen sikeres felvétel sem
+ * veszett el és nem kapott két elem azonos id-t; ha igen, a benchmark hibával
+ * leáll.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ConcurrentStressBenchmark {
+
+    private static final int INITIAL_ROWS = 10_000;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"DB", "CONCURRENT_MEM"})
+    public Fixtures.Store store;
+
+    private Path directory;
+    private BookShopDAO dao;
+    private Book[] books;
+    private Customer[] customers;
+
+    private final AtomicInteger next = new AtomicInteger(INITIAL_ROWS);
+    private final AtomicLong nextPurchase = new AtomicLong(INITIAL_ROWS);
+    private final LongAdder addedCustomers = new LongAdder();
+    private final LongAdder addedBooks = new LongAdder();
+    private final LongAdder addedPurchases = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createTempDirectory();
+        Fixtures.Populated populated = Fixtures.populate(store.create(directory),
+                INITIAL_ROWS, INITIAL_ROWS, INITIAL_ROWS);
+        dao = populated.dao;
+        books = populated.books;
+        customers = populated.customers;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            check("customers", dao.getCustomers(), Customer::getId, INITIAL_ROWS + addedCustomers.sum());
+            check("books", dao.getBooks(), Book::getId, INITIAL_ROWS + addedBooks.sum());
+            check("purchases", dao.getPurchases(), Purchase::getId, INITIAL_ROWS + addedPurchases.sum());
+        } finally {
+            Fixtures.close(dao);
+            Fixtures.delete(directory);
+        }
+    }
+
+    private static <T> void check(String table, List<T> rows, ToIntFunction<T> id, long expected) {
+        Set<Integer> ids = new HashSet<>();
+        for (T row : rows) {
+            if (!ids.add(id.applyAsInt(row))) {
+                throw new IllegalStateException("Duplicate id " + id.applyAsInt(row) + " in " + table);
+            }
+        }
+        if (rows.size() != expected) {
+            throw new IllegalStateException("Expected " + expected + " " + table + " but found " + rows.size());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean addCustomer() {
+        boolean added = dao.addCustomer(Fixtures.customer(next.getAndIncrement()));
+        if (added) {
+            addedCustomers.increment();
+        }
+        return added;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean addBook() {
+        boolean added = dao.addBook(Fixtures.book(next.getAndIncrement()));
+        if (added) {
+            addedBooks.increment();
+        }
+        return added;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean addPurchase() {
+        boolean added = dao.addPurchase(Fixtures.purchase(nextPurchase.getAndIncrement(), books, customers));
+        if (added) {
+            addedPurchases.increment();
+        }
+        return added;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Page<Book> getBooksPage() {
+        return dao.getBooks(PageRequest.first(PAGE_SIZE, "title"));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Customer getCustomer() {
+        return dao.getCustomer(customers[ThreadLocalRandom.current().nextInt(customers.length)].getId());
+    }
+}
@@ -0,0 +1,106 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.controller.CsvImporter;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAODBImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CsvImporter} egy generált CSV fájlt tölt be egy üres, ideiglenes
+ * adatbázisba. Egy mérés egy teljes betöltés; a sor / másodperc érték a
+ * {@code rows} és a mért idõ hányadosa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CsvImportBenchmark {
+
+    public enum Table {
+        BOOKS,
+        CUSTOMERS
+    }
+
+    @Param({"BOOKS", "CUSTOMERS"})
+    public Table table;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path directory;
+    private Path csv;
+    private BookShopDAODBImpl dao;
+
+    @Setup(Level.Trial)
+    public void writeCsv() throws IOException {
+        directory = Fixtures.createTempDirectory();
+        csv = directory.resolve(table.name().toLowerCase() + ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            if (table == Table.BOOKS) {
+                out.write("author,title,year,category,price,piece\n");
+                for (int n = 0; n < rows; n++) {
+                    Book book = Fixtures.book(n);
+                    out.write(book.getAuthor() + "," + book.getTitle() + "," + book.getYear() + ","
+                            + book.getCategory() + "," + book.getPrice() + "," + book.getPiece() + "\n");
+                }
+            } else {
+                out.write("name,age,female,rented,student,grantee,qualification\n");
+                for (int n = 0; n < rows; n++) {
+                    Customer customer = Fixtures.customer(n);
+                    out.write(customer.getName() + "," + customer.getAge() + "," + customer.isFemale() + ","
+                            + customer.isRented() + "," + customer.isStudent() + "," + customer.isGrantee() + ","
+                            + customer.getQualification() + "\n");
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() throws IOException {
+        Fixtures.delete(directory.resolve("db"));
+        Files.createDirectories(directory.resolve("db"));
+        dao = new BookShopDAODBImpl(Fixtures.storageConfig(directory.resolve("db").resolve("bookshop.db")));
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() {
+        dao.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public CsvImporter.Result importCsv() throws IOException {
+        CsvImporter importer = new CsvImporter(dao);
+        importer.setThreads(threads);
+        return table == Table.BOOKS ? importer.importBooks(csv) : importer.importCustomers(csv);
+    }
+}
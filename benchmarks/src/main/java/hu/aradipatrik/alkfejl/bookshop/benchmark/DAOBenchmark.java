@@ -0,0 +1,119 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BookShopDAO} alapmûveletei a három megvalósításon, különbözõ
+ * méretû (könyv, vásárló és vásárlás táblánként {@code size} soros)
+ * adattárakon. Az adatbázis egy ideiglenes SQLite fájl.
+ * <p>
+ * Alapértelmezésben egy szálon fut; több szálon ({@code -t 4}) a nem
+ * szálbiztos {@code MEM} adattárat ki kell hagyni ({@code -p
+ * store=DB,CONCURRENT_MEM}), a {@link BookShopBenchmarks} így futtatja.
+ * Az írások a mérés alatt növelik a táblákat, így az írási eredmények a
+ * {@code size} méretû és annál valamivel nagyobb táblára vonatkoznak. Az
+ * addPurchase a feltöltés után következõ (könyv, vásárló) párokat veszi fel;
+ * a {@code size * size} pár elfogyása után (kis {@code size}-nál, gyors
+ * adattáron) a hívások már a DUPLICATE ágat mérik.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DAOBenchmark {
+
+    @Param({"DB", "MEM", "CONCURRENT_MEM"})
+    public Fixtures.Store store;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private BookShopDAO dao;
+    private Book[] books;
+    private Customer[] customers;
+
+    // Az új könyvek és vásárlók egyedi nevéhez
+    private final AtomicInteger next = new AtomicInteger();
+
+    // A következõ vásárlás sorszáma (lásd Fixtures.purchase)
+    private final AtomicLong nextPurchase = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws Exception {
+        if (params.getThreads() > 1 && !store.isThreadSafe()) {
+            throw new IllegalStateException(store + " is not thread-safe, run multi-threaded benchmarks with "
+                    + "-p store=DB,CONCURRENT_MEM");
+        }
+
+        directory = Fixtures.createTempDirectory();
+        Fixtures.Populated populated = Fixtures.populate(store.create(directory), size, size, size);
+        dao = populated.dao;
+        books = populated.books;
+        customers = populated.customers;
+        next.set(size);
+        nextPurchase.set(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.close(dao);
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public boolean addBook() {
+        return dao.addBook(Fixtures.book(next.getAndIncrement()));
+    }
+
+    @Benchmark
+    public boolean addCustomer() {
+        return dao.addCustomer(Fixtures.customer(next.getAndIncrement()));
+    }
+
+    @Benchmark
+    public boolean addPurchase() {
+        return dao.addPurchase(Fixtures.purchase(nextPurchase.getAndIncrement(), books, customers));
+    }
+
+    @Benchmark
+    public List<Book> getBooks() {
+        return dao.getBooks();
+    }
+
+    @Benchmark
+    public List<Customer> getCustomers() {
+        return dao.getCustomers();
+    }
+
+    @Benchmark
+    public List<Purchase> getPurchases() {
+        return dao.getPurchases();
+    }
+}
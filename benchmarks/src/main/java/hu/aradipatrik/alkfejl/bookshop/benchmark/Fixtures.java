@@ -0,0 +1,226 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAOConcurrentMemImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAODBImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAOMemImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.BulkLoadable;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+import hu.aradipatrik.alkfejl.bookshop.model.db.StorageConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A benchmarkok közös segédei: az adattárak létrehozása ideiglenes
+ * könyvtárban, és determinisztikus tesztadatok generálása. Azért publikus,
+ * mert a JMH által generált (jmh_generated csomagbeli) osztályok a
+ * {@link Store} paramétert név szerint érik el.
+ */
+public final class Fixtures {
+
+    // A keresés benchmarkhoz a címek ezekbõl a szavakból állnak
+    static final String[] WORDS = {
+            "winter", "river", "shadow", "garden", "silent", "empire", "ocean", "letters",
+            "stone", "journey", "golden", "forest", "night", "kingdom", "storm", "mirror",
+            "harvest", "island", "secret", "memory", "fire", "crown", "winds", "valley"
+    };
+
+    static final int CATEGORIES = 20;
+    static final LocalDate FIRST_SELL_DATE = LocalDate.of(2015, 1, 1);
+    static final int SELL_DAYS = 3650;
+
+    // Tömeges feltöltésnél ennyi sort adunk át egyszerre
+    private static final int LOAD_CHUNK = 10_000;
+
+    private Fixtures() {
+    }
+
+    /**
+     * A mért adattár megvalósítások.
+     */
+    public enum Store {
+        DB,
+        MEM,
+        CONCURRENT_MEM;
+
+        /**
+         * @param directory Az adatbázis fájl könyvtára (csak a DB használja).
+         */
+        BookShopDAO create(Path directory) {
+            switch (this) {
+                case DB:
+                    return new BookShopDAODBImpl(storageConfig(directory.resolve("bookshop.db")));
+                case MEM:
+                    return new BookShopDAOMemImpl();
+                default:
+                    return new BookShopDAOConcurrentMemImpl();
+            }
+        }
+
+        boolean isThreadSafe() {
+            return this != MEM;
+        }
+    }
+
+    /**
+     * A rendszer tulajdonságokból olvasott beállítások (pl. {@code
+     * -Dbookshop.db.profile=FAST}) a megadott adatbázis fájllal.
+     */
+    static StorageConfig storageConfig(Path databaseFile) {
+        StorageConfig config = StorageConfig.fromSystemProperties();
+        config.setDatabasePath(databaseFile);
+        return config;
+    }
+
+    static Book book(int n) {
+        Book book = new Book();
+        book.setAuthor("Author " + (n % 5000));
+        book.setTitle(WORDS[n % WORDS.length] + " " + WORDS[(n / WORDS.length) % WORDS.length] + " " + n);
+        book.setYear(1850 + n % 170);
+        book.setCategory("Category " + (n % CATEGORIES));
+        book.setPrice(1000 + n % 9000);
+        book.setPiece(10 + n % 50);
+        book.setAncient(book.getYear() < 1900);
+        return book;
+    }
+
+    static Customer customer(int n) {
+        Customer customer = new Customer();
+        customer.setName("Customer " + n);
+        customer.setAge(18 + n % 60);
+        customer.setFemale(n % 2 == 0);
+        customer.setRented(n % 3 == 0);
+        customer.setStudent(customer.getAge() < 25);
+        customer.setGrantee(customer.isStudent() && n % 4 == 0);
+        customer.setQualification(n % 5 == 0 ? "university" : "secondary");
+        return customer;
+    }
+
+    /**
+     * Az n. vásárlás a könyvek és vásárlók közül. Az adattárak egy vásárlónak
+     * egy könyvet csak egyszer adnak el, ezért a párok azonos könyv- és
+     * vásárlószámnál {@code n < könyvek * vásárlók} esetén egyediek.
+     */
+    static Purchase purchase(long n, Book[] books, Customer[] customers) {
+        int book = (int) (n % books.length);
+        int customer = (int) ((n / books.length + 31 * n) % customers.length);
+        return purchase((int) (n % SELL_DAYS), books[book], customers[customer]);
+    }
+
+    static Purchase purchase(int n, Book book, Customer customer) {
+        Purchase purchase = new Purchase();
+        purchase.setBook(book);
+        purchase.setCustomer(customer);
+        purchase.setSellDate(FIRST_SELL_DATE.plusDays(n % SELL_DAYS));
+        purchase.setPrice(book.getPrice());
+        return purchase;
+    }
+
+    /**
+     * Egy feltöltött adattár, és a tárolt könyvek és vásárlók (a
+     * memóriabeli adattáraknál a tárolt példányok, az adatbázisnál id-val
+     * beolvasott bean-ek), amikre a vásárlások hivatkozhatnak.
+     */
+    static final class Populated {
+        final BookShopDAO dao;
+        final Book[] books;
+        final Customer[] customers;
+
+        private Populated(BookShopDAO dao, Book[] books, Customer[] customers) {
+            this.dao = dao;
+            this.books = books;
+            this.customers = customers;
+        }
+    }
+
+    /**
+     * Feltölti az adattárat a megadott számú könyvvel, vásárlóval és
+     * vásárlással, batch-ekben (az adatbázisnál tömeges betöltés módban).
+     */
+    static Populated populate(BookShopDAO dao, int books, int customers, int purchases) {
+        if (dao instanceof BulkLoadable) {
+            return ((BulkLoadable) dao).bulkLoad(() -> load(dao, books, customers, purchases));
+        }
+        return load(dao, books, customers, purchases);
+    }
+
+    private static Populated load(BookShopDAO dao, int bookCount, int customerCount, int purchaseCount) {
+        List<Book> bookChunk = new ArrayList<>(LOAD_CHUNK);
+        for (int n = 0; n < bookCount; n++) {
+            bookChunk.add(book(n));
+            if (bookChunk.size() == LOAD_CHUNK || n == bookCount - 1) {
+                dao.addBooks(bookChunk);
+                bookChunk.clear();
+            }
+        }
+
+        List<Customer> customerChunk = new ArrayList<>(LOAD_CHUNK);
+        for (int n = 0; n < customerCount; n++) {
+            customerChunk.add(customer(n));
+            if (customerChunk.size() == LOAD_CHUNK || n == customerCount - 1) {
+                dao.addCustomers(customerChunk);
+                customerChunk.clear();
+            }
+        }
+
+        // az adatbázis batch-es felvétele nem állít id-t, ezért a tárolt
+        // sorokat visszaolvassuk
+        List<Book> storedBooks = new ArrayList<>(bookCount);
+        List<Customer> storedCustomers = new ArrayList<>(customerCount);
+        dao.forEachBook(storedBooks::add, false);
+        dao.forEachCustomer(storedCustomers::add, false);
+        Book[] books = storedBooks.toArray(new Book[0]);
+        Customer[] customers = storedCustomers.toArray(new Customer[0]);
+
+        if (books.length > 0 && customers.length > 0) {
+            List<Purchase> purchaseChunk = new ArrayList<>(LOAD_CHUNK);
+            for (int n = 0; n < purchaseCount; n++) {
+                purchaseChunk.add(purchase(n, books, customers));
+                if (purchaseChunk.size() == LOAD_CHUNK || n == purchaseCount - 1) {
+                    dao.addPurchases(purchaseChunk);
+                    purchaseChunk.clear();
+                }
+            }
+        }
+
+        return new Populated(dao, books, customers);
+    }
+
+    static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("bookshop-bench");
+    }
+
+    /**
+     * Lezárja az adattárat (ha lezárható).
+     */
+    static void close(BookShopDAO dao) throws Exception {
+        if (dao instanceof BookShopDAODBImpl) {
+            ((BookShopDAODBImpl) dao).close();
+        } else if (dao instanceof AutoCloseable) {
+            ((AutoCloseable) dao).close();
+        }
+    }
+
+    /**
+     * Rekurzívan törli a könyvtárat.
+     */
+    static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
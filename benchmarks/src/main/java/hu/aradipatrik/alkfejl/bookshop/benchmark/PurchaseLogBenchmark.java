@@ -0,0 +1,123 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAOConcurrentMemImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.OffHeapPurchaseDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.PurchaseLog;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nagy vásárlási történet a heap-en ({@code HEAP}, a szálbiztos memóriabeli
+ * adattár) és a heap-en kívül ({@code OFF_HEAP}, {@link OffHeapPurchaseDAO}).
+ * A GC profilerrel ({@code -prof gc}) futtatva a GC idõ és a foglalás
+ * mutatja a különbséget, nem csak a mûveletek ideje.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class PurchaseLogBenchmark {
+
+    public enum History {
+        HEAP,
+        OFF_HEAP
+    }
+
+    private static final int CATALOG_ROWS = 10_000;
+    private static final int RANGE_DAYS = 7;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public History history;
+
+    @Param({"1000000", "10000000"})
+    public int purchases;
+
+    private BookShopDAO dao;
+    private Book[] books;
+    private Customer[] customers;
+
+    // A következõ vásárlás sorszáma (lásd Fixtures.purchase)
+    private final AtomicLong nextPurchase = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BookShopDAO created = history == History.HEAP
+                ? new BookShopDAOConcurrentMemImpl()
+                : new OffHeapPurchaseDAO(new BookShopDAOConcurrentMemImpl(), PurchaseLog.inMemory());
+        Fixtures.Populated populated = Fixtures.populate(created, CATALOG_ROWS, CATALOG_ROWS, purchases);
+        dao = populated.dao;
+        books = populated.books;
+        customers = populated.customers;
+        nextPurchase.set(purchases);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.close(dao);
+    }
+
+    @Benchmark
+    public boolean addPurchase() {
+        return dao.addPurchase(Fixtures.purchase(nextPurchase.getAndIncrement(), books, customers));
+    }
+
+    /**
+     * Egy hét vásárlásainak száma. A heap-en a vásárlásokon kell végigmenni,
+     * a naplóban a tartományon kívüli szegmenseket átugorjuk.
+     */
+    @Benchmark
+    public long purchasesOfWeek() {
+        LocalDate from = Fixtures.FIRST_SELL_DATE.plusDays(
+                ThreadLocalRandom.current().nextInt(Fixtures.SELL_DAYS - RANGE_DAYS));
+        LocalDate to = from.plusDays(RANGE_DAYS - 1);
+        if (dao instanceof OffHeapPurchaseDAO) {
+            return ((OffHeapPurchaseDAO) dao).getPurchases(from, to).size();
+        }
+        long[] count = {0};
+        dao.forEachPurchase(purchase -> {
+            if (!purchase.getSellDate().isBefore(from) && !purchase.getSellDate().isAfter(to)) {
+                count[0]++;
+            }
+        }, true);
+        return count[0];
+    }
+
+    /**
+     * Egy vásárló vásárlásai.
+     */
+    @Benchmark
+    public long purchasesOfCustomer() {
+        Customer customer = customers[ThreadLocalRandom.current().nextInt(customers.length)];
+        if (dao instanceof OffHeapPurchaseDAO) {
+            return ((OffHeapPurchaseDAO) dao).getPurchasesOf(customer).size();
+        }
+        long[] count = {0};
+        dao.forEachPurchase(purchase -> {
+            if (purchase.getCustomer().getId() == customer.getId()) {
+                count[0]++;
+            }
+        }, true);
+        return count[0];
+    }
+}
@@ -0,0 +1,83 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.DurableBookShopDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DurableBookShopDAO} újraindítási ideje: a könyvtár megnyitása a
+ * snapshot betöltésével, illetve a napló visszajátszásával. A táblák
+ * egyenként {@code rows} sorosak.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RestartBenchmark {
+
+    public enum Source {
+        // minden a snapshotban van
+        SNAPSHOT,
+        // minden a naplóban van, snapshot nincs
+        JOURNAL
+    }
+
+    // Ekkora naplónál sem készül snapshot a mérés alatt
+    private static final long NO_SNAPSHOT = Long.MAX_VALUE;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"SNAPSHOT", "JOURNAL"})
+    public Source source;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createTempDirectory();
+        DurableBookShopDAO dao = new DurableBookShopDAO(directory, SYNC_INTERVAL_MILLIS, NO_SNAPSHOT);
+        try {
+            Fixtures.populate(dao, rows, rows, rows);
+            if (source == Source.SNAPSHOT) {
+                dao.snapshot();
+            }
+        } finally {
+            dao.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.delete(directory);
+    }
+
+    /**
+     * A konstruktor visszatölti az állapotot, a lezárás megvárja a háttérben
+     * épülõ keresõ indexet is, így a mért idõ a teljes újraindítás. A
+     * visszatöltés ideje külön a "Recovered ... records" sorban látszik.
+     */
+    @Benchmark
+    public DurableBookShopDAO restart() {
+        DurableBookShopDAO dao = new DurableBookShopDAO(directory, SYNC_INTERVAL_MILLIS, NO_SNAPSHOT);
+        dao.close();
+        return dao;
+    }
+}
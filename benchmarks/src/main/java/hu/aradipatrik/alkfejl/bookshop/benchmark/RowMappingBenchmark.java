@@ -0,0 +1,85 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Az adatbázis olvasási útjának soronkénti költsége (a sorok leképezése
+ * bean-ekre): lista, cursoros bejárás új és újrahasznált bean-nel, és
+ * lusta stream. Az eredmény egy sorra jutó idõ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@OperationsPerInvocation(RowMappingBenchmark.ROWS)
+public class RowMappingBenchmark {
+
+    static final int ROWS = 100_000;
+
+    private Path directory;
+    private BookShopDAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createTempDirectory();
+        dao = Fixtures.populate(Fixtures.Store.DB.create(directory), ROWS, ROWS, ROWS).dao;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.close(dao);
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public int getBooks() {
+        return dao.getBooks().size();
+    }
+
+    @Benchmark
+    public void forEachBookNewBean(Blackhole blackhole) {
+        dao.forEachBook(blackhole::consume, false);
+    }
+
+    @Benchmark
+    public void forEachBookReusedBean(Blackhole blackhole) {
+        dao.forEachBook(blackhole::consume, true);
+    }
+
+    @Benchmark
+    public void streamBooks(Blackhole blackhole) {
+        try (Stream<?> books = dao.streamBooks()) {
+            books.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * A vásárlás a könyv és a vásárló oszlopaival együtt (join) képezõdik le.
+     */
+    @Benchmark
+    public void forEachPurchaseReusedBean(Blackhole blackhole) {
+        dao.forEachPurchase((Purchase purchase) -> blackhole.consume(purchase.getBook()), true);
+    }
+}
@@ -0,0 +1,70 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rangsorolt szabadszöveges keresés egymillió könyv címében és szerzõjében
+ * (adatbázisban FTS5, memóriában a keresõ index).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({"DB", "MEM", "CONCURRENT_MEM"})
+    public Fixtures.Store store;
+
+    @Param({"1000000"})
+    public int size;
+
+    /**
+     * Egy gyakori szó, két szó együtt, szó eleje, és egy szerzõ.
+     */
+    @Param({"river", "golden forest", "shad", "Author 4242"})
+    public String query;
+
+    private Path directory;
+    private BookShopDAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createTempDirectory();
+        dao = Fixtures.populate(store.create(directory), size, 0, 0).dao;
+        // az elsõ keresés építi fel a késleltetett indexeket
+        dao.searchBooks(query, LIMIT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.close(dao);
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return dao.searchBooks(query, LIMIT);
+    }
+}
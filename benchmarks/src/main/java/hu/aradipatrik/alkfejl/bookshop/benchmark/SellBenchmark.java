@@ -0,0 +1,120 @@
+package hu.aradipatrik.alkfejl.bookshop.benchmark;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eladások áteresztõképessége négy szálon. {@code DISTINCT} esetén minden
+ * szál a saját könyveit adja el (a könyvenkénti zárak miatt ezek nem várnak
+ * egymásra), {@code HOT} esetén mind ugyanazt az egy könyvet.
+ * <p>
+ * Egy vásárló egy könyvet csak egyszer vehet meg, ezért minden szál a saját
+ * vásárlóinak ad el, könyvenként mindig a következõ vásárlónak. Egy szál
+ * {@code HOT} esetén {@value #CUSTOMERS} / szálszám, {@code DISTINCT} esetén
+ * ennek a saját könyvszámszorosa eladásáig kap egyedi párt, utána a
+ * DUPLICATE ágat méri.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(4)
+public class SellBenchmark {
+
+    public enum Contention {
+        DISTINCT,
+        HOT
+    }
+
+    private static final int BOOKS = 1000;
+    private static final int CUSTOMERS = 100_000;
+
+    @Param({"DB", "CONCURRENT_MEM"})
+    public Fixtures.Store store;
+
+    @Param({"DISTINCT", "HOT"})
+    public Contention contention;
+
+    private Path directory;
+    private BookShopDAO dao;
+    private Book[] books;
+    private Customer[] customers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createTempDirectory();
+        BookShopDAO created = store.create(directory);
+
+        // a mérés alatt nem fogyhat ki a készlet
+        for (int n = 0; n < BOOKS; n++) {
+            Book book = Fixtures.book(n);
+            book.setPiece(Integer.MAX_VALUE / 2);
+            created.addBook(book);
+        }
+        Fixtures.Populated populated = Fixtures.populate(created, 0, CUSTOMERS, 0);
+        dao = populated.dao;
+        books = populated.books;
+        customers = populated.customers;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Fixtures.close(dao);
+        Fixtures.delete(directory);
+    }
+
+    /**
+     * Szálanként a saját könyv- és vásárlótartomány és egy sorszám.
+     */
+    @State(Scope.Thread)
+    public static class Till {
+        int first;
+        int count;
+        int firstCustomer;
+        int customerCount;
+        int sold;
+
+        @Setup(Level.Trial)
+        public void setUp(SellBenchmark benchmark, ThreadParams thread) {
+            if (benchmark.contention == Contention.HOT) {
+                first = 0;
+                count = 1;
+            } else {
+                count = benchmark.books.length / thread.getThreadCount();
+                first = thread.getThreadIndex() * count;
+            }
+            customerCount = benchmark.customers.length / thread.getThreadCount();
+            firstCustomer = thread.getThreadIndex() * customerCount;
+        }
+    }
+
+    @Benchmark
+    public boolean sellBook(Till till) {
+        int n = till.sold++;
+        Book book = books[till.first + n % till.count];
+        Customer customer = customers[till.firstCustomer + (n / till.count) % till.customerCount];
+        return dao.sellBook(Fixtures.purchase(n, book, customer));
+    }
+}
@@ -1,6 +1,17 @@
 package hu.aradipatrik.alkfejl.bookshop;
 
 import hu.aradipatrik.alkfejl.bookshop.controller.BookShopController;
+import hu.aradipatrik.alkfejl.bookshop.controller.CsvImporter;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAODBImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.DataExporter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Az osztály az alkalmazás belépési pontja, az alkalmazás indításáért felel.
@@ -10,11 +21,87 @@ public class Main {
     /**
      * Az alkalmazás belépési pontja.
      *
-     * @param args A parancssori argumentumok listája.
+     * @param args A parancssori argumentumok listája. A {@code --explain-queries}
+     *             argumentummal a GUI helyett a DAO lekérdezéseinek végrehajtási
+     *             tervét írja ki. Az {@code --import-books <fájl>} és
+     *             {@code --import-customers <fájl>} argumentumokkal a GUI
+     *             helyett CSV fájlból tölti be a könyveket / vásárlókat. Az
+     *             {@code --export <könyvtár>} argumentummal a táblákat
+     *             exportálja (lásd {@link DataExporter#fromSystemProperties}).
      */
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--explain-queries")) {
+            explainQueries();
+            return;
+        }
+        if (args.length == 2 && (args[0].equals("--import-books") || args[0].equals("--import-customers"))) {
+            importCsv(args[0].equals("--import-books"), Paths.get(args[1]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--export")) {
+            export(Paths.get(args[1]));
+            return;
+        }
+
         BookShopController controller = new BookShopController();
         controller.startDesktop();
     }
 
+    private static void explainQueries() {
+        BookShopDAODBImpl dao = new BookShopDAODBImpl();
+        try {
+            for (Map.Entry<String, List<String>> query : dao.explainQueries().entrySet()) {
+                System.out.println(query.getKey() + ":");
+                for (String step : query.getValue()) {
+                    System.out.println("    " + step);
+                }
+            }
+        } finally {
+            dao.close();
+        }
+    }
+
+    /**
+     * Betölti a CSV fájlt, a visszautasított sorokat a mellette lévõ
+     * {@code .rejected.csv} fájlba írja.
+     */
+    private static void importCsv(boolean books, Path csv) {
+        BookShopDAODBImpl dao = new BookShopDAODBImpl();
+        try {
+            CsvImporter importer = new CsvImporter(dao);
+            importer.setRejectedRowsFile(Paths.get(csv + ".rejected.csv"));
+            long[] lastReport = {0};
+            importer.setProgressListener((done, total, inserted, rejected) -> {
+                long now = System.currentTimeMillis();
+                if (now - lastReport[0] >= 1000 || done == total) {
+                    lastReport[0] = now;
+                    System.out.printf("%d%% (%d inserted, %d rejected)%n",
+                            total > 0 ? done * 100 / total : 100, inserted, rejected);
+                }
+            });
+
+            CsvImporter.Result result = books ? importer.importBooks(csv) : importer.importCustomers(csv);
+            System.out.println(result);
+        } catch (IOException e) {
+            System.out.println("Failed to import " + csv + ".");
+            e.printStackTrace();
+        } finally {
+            dao.close();
+        }
+    }
+
+    private static void export(Path directory) {
+        BookShopDAODBImpl dao = new BookShopDAODBImpl();
+        try {
+            for (Path file : DataExporter.fromSystemProperties(dao).exportAll(directory)) {
+                System.out.println(file + " (" + Files.size(file) + " bytes)");
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to export to " + directory + ".");
+            e.printStackTrace();
+        } finally {
+            dao.close();
+        }
+    }
+
 }
@@ -0,0 +1,37 @@
+package hu.aradipatrik.alkfejl.bookshop.controller;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.util.List;
+
+/**
+ * A {@link BookShopController}-nél regisztrálható figyelõ, ami az újonnan
+ * felvett sorokról kap értesítést, így a view-nak (vagy egy cache-nek) nem
+ * kell újratöltenie a teljes listát.
+ * <p>
+ * Az értesítések nem a GUI szálán (EDT) érkeznek, a Swing komponenseket a
+ * figyelõnek kell átadnia a {@link javax.swing.SwingUtilities#invokeLater}-rel.
+ * </p>
+ */
+public interface BookShopChangeListener {
+
+    /**
+     * @param customers Az utolsó értesítés óta (a már listázottak is köztük lehetnek) felvett {@link Customer}-ek, id szerint rendezve.
+     */
+    default void customersAdded(List<Customer> customers) {
+    }
+
+    /**
+     * @param books Az utolsó értesítés óta (a már listázottak is köztük lehetnek) felvett {@link Book}-ok, id szerint rendezve.
+     */
+    default void booksAdded(List<Book> books) {
+    }
+
+    /**
+     * @param purchases Az utolsó értesítés óta (a már listázottak is köztük lehetnek) felvett {@link Purchase}-ek, id szerint rendezve.
+     */
+    default void purchasesAdded(List<Purchase> purchases) {
+    }
+}
@@ -1,13 +1,34 @@
 package hu.aradipatrik.alkfejl.bookshop.controller;
 
+import hu.aradipatrik.alkfejl.bookshop.model.BookQuery;
 import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
 import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAODBImpl;
+import hu.aradipatrik.alkfejl.bookshop.model.CacheConfig;
+import hu.aradipatrik.alkfejl.bookshop.model.CustomerQuery;
+import hu.aradipatrik.alkfejl.bookshop.model.Page;
+import hu.aradipatrik.alkfejl.bookshop.model.PageRequest;
+import hu.aradipatrik.alkfejl.bookshop.model.PurchaseIngestionQueue;
+import hu.aradipatrik.alkfejl.bookshop.model.SalesGrouping;
+import hu.aradipatrik.alkfejl.bookshop.model.SalesRow;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
 import hu.aradipatrik.alkfejl.bookshop.view.BookShopGUI;
 
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * Ez az oszt�ly vez�rli az eg�sz programot, valamint a view �s model csomagokat
@@ -20,7 +41,26 @@ public class BookShopController {
     // a r�teget mindig az interf�szen kereszt�l �rj�k el.
     // A r�teg implement�ci�j�t egyszer haszn�ljuk, p�ld�nyos�t�skor,
     // visszacastolni TILOS!!!
-    private BookShopDAO dao = new BookShopDAODBImpl();
+    // Ha a bookshop.cache.enabled be van kapcsolva, a DAO elé egy cache kerül
+    private BookShopDAO dao = CacheConfig.fromSystemProperties().apply(new BookShopDAODBImpl());
+
+    // A vásárlásokat egyetlen író szál írja batch-ekben az adattárba
+    private PurchaseIngestionQueue purchaseQueue = new PurchaseIngestionQueue(dao);
+
+    // Az aszinkron (*Async) metódusok ezen futnak, így a GUI szála (EDT)
+    // sosem várakozik az adatbázisra
+    private ExecutorService executor = createExecutor();
+
+    // Leállításkor legfeljebb ennyit várunk a futó aszinkron mûveletekre
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // A változásokra feliratkozott figyelõk, és hogy melyik id-ig kapták
+    // meg már a sorokat. A listázások nem léptetik: egy listázás után
+    // felvett (pl. egy másik kasszán) sor így sem maradhat ki az értesítésbõl
+    private List<BookShopChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private AtomicInteger customerWatermark = new AtomicInteger();
+    private AtomicInteger bookWatermark = new AtomicInteger();
+    private AtomicInteger purchaseWatermark = new AtomicInteger();
 
     /**
      * Elind�tja az alkalmaz�s desktopra specializ�lt user interface-�t.
@@ -33,16 +73,13 @@ public class BookShopController {
     }
 
     public boolean addCustomer(Customer c) {
-        // Controller, business logic-ra (�zleti logika, szab�lyok) p�lda
-        // Szab�ly: valaki akkor hallgat� ha 14-n�l fiatalabb, valaki akkor
-        // nyugd�jas ha 62-nel id�sebb
-        if (c.getAge() < 14) {
-            c.setStudent(true);
-        } else if(c.getAge() > 62) {
-            c.setRented(true);
-        }
+        applyCustomerRules(c);
 
-        return dao.addCustomer(c);
+        boolean isStored = dao.addCustomer(c);
+        if (isStored) {
+            pollCustomerChanges();
+        }
+        return isStored;
     }
 
     public List<Customer> getCustomers() {
@@ -51,24 +88,311 @@ public class BookShopController {
         return dao.getCustomers();
     }
 
+    public Page<Customer> getCustomers(PageRequest request) {
+        return dao.getCustomers(request);
+    }
+
+    public List<Customer> findCustomers(CustomerQuery query) {
+        return dao.findCustomers(query);
+    }
+
     public boolean addBook(Book book) {
+        applyBookRules(book);
+
+        boolean isStored = dao.addBook(book);
+        if (isStored) {
+            pollBookChanges();
+        }
+        return isStored;
+    }
+
+    /**
+     * A vásárlóra vonatkozó üzleti szabályok. Statikus, így a tömeges
+     * betöltés ({@link CsvImporter}) is ugyanezeket alkalmazza.
+     */
+    public static void applyCustomerRules(Customer c) {
+        // Controller, business logic-ra (�zleti logika, szab�lyok) p�lda
+        // Szab�ly: valaki akkor hallgat� ha 14-n�l fiatalabb, valaki akkor
+        // nyugd�jas ha 62-nel id�sebb
+        if (c.getAge() < 14) {
+            c.setStudent(true);
+        } else if(c.getAge() > 62) {
+            c.setRented(true);
+        }
+    }
+
+    /**
+     * A könyvre vonatkozó üzleti szabály: az 1900 elõtt kiadott könyv antik.
+     */
+    public static void applyBookRules(Book book) {
         if (book.getYear() < 1900 ) {
             book.setAncient(true);
         }
-
-        return dao.addBook(book);
     }
 
     public List<Book> getBooks(){
         return dao.getBooks();
     }
 
+    public Page<Book> getBooks(PageRequest request) {
+        return dao.getBooks(request);
+    }
+
+    public List<Book> findBooks(BookQuery query) {
+        return dao.findBooks(query);
+    }
+
+    public List<Book> searchBooks(String query, int limit) {
+        return dao.searchBooks(query, limit);
+    }
+
+    public List<SalesRow> getSalesReport(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        return dao.getSales(grouping, from, to, topN);
+    }
+
     public boolean addPurchase(Purchase p){
-        return dao.addPurchase(p);
+        // Szabály: csak raktáron lévõ könyv adható el, az eladás csökkenti a készletet
+        boolean isSold = dao.sellBook(p);
+        if (isSold) {
+            pollPurchaseChanges();
+        }
+        return isSold;
+    }
+
+    /**
+     * A vásárlást az író sorba teszi, ami a többi kassza vásárlásaival együtt,
+     * egy tranzakcióban rögzíti (és csökkenti a készletet, lásd {@link #addPurchase}).
+     * A sorba állítás is az {@link #executor}-on történik, így ha a sor tele
+     * van, nem a hívó (pl. a GUI) szála várakozik.
+     *
+     * @return Az írás eredménye: igaz, ha sikeresen tárolva, hamis, egyébként.
+     */
+    public CompletableFuture<Boolean> addPurchaseAsync(Purchase p) {
+        CompletableFuture<Boolean> result = async(() -> {
+            try {
+                return purchaseQueue.submit(p);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.completedFuture(false);
+            }
+        }).thenCompose(written -> written);
+
+        // az értesítés ne tartsa fel az író szálat
+        result.thenAcceptAsync(isSold -> {
+            if (isSold) {
+                pollPurchaseChanges();
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Leállítja a háttérszálakat: megvárja a már elindított mûveleteket
+     * (legfeljebb {@value #SHUTDOWN_TIMEOUT_SECONDS} másodpercig, utána
+     * megszakítja õket), köztük a sorba állításra váró vásárlásokat, majd
+     * a vásárlások sorát lezárva megvárja, hogy minden vásárlás kiírásra
+     * kerüljön. Az alkalmazás bezárásakor kell meghívni.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        purchaseQueue.close();
     }
 
     public List<Purchase> getPurchases(){
         return dao.getPurchases();
     }
 
+    public Page<Purchase> getPurchases(PageRequest request) {
+        return dao.getPurchases(request);
+    }
+
+    /**
+     * Feliratkoztatja a figyelõt az újonnan felvett sorokról szóló értesítésekre.
+     * Értesítés a controlleren keresztüli felvételek után, illetve a
+     * {@link #pollChanges()} hívásakor történik.
+     */
+    public void addChangeListener(BookShopChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(BookShopChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Lekéri az adattárból az utolsó értesítés óta felvett sorokat, és
+     * értesíti róluk a figyelõket. Így más folyamatok (pl. egy másik kassza)
+     * felvételei is eljutnak a figyelõkhöz. A figyelõ a már listázott sorokat
+     * is megkaphatja, ezeket (id alapján) neki kell kihagynia.
+     */
+    public void pollChanges() {
+        pollCustomerChanges();
+        pollBookChanges();
+        pollPurchaseChanges();
+    }
+
+    public CompletableFuture<Void> pollChangesAsync() {
+        return async(() -> {
+            pollChanges();
+            return null;
+        });
+    }
+
+    private void pollCustomerChanges() {
+        poll(customerWatermark, dao::getCustomersSince, Customer::getId, BookShopChangeListener::customersAdded);
+    }
+
+    private void pollBookChanges() {
+        poll(bookWatermark, dao::getBooksSince, Book::getId, BookShopChangeListener::booksAdded);
+    }
+
+    private void pollPurchaseChanges() {
+        poll(purchaseWatermark, dao::getPurchasesSince, Purchase::getId, BookShopChangeListener::purchasesAdded);
+    }
+
+    /**
+     * Lekéri a watermark utáni sorokat, továbblépteti a watermark-ot, és
+     * értesíti a figyelõket. A watermark-on szinkronizálunk, hogy ugyanaz a
+     * sor ne menjen ki kétszer.
+     */
+    private <T> void poll(AtomicInteger watermark, IntFunction<List<T>> since, ToIntFunction<T> id,
+                          BiConsumer<BookShopChangeListener, List<T>> event) {
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+
+        List<T> added;
+        synchronized (watermark) {
+            added = since.apply(watermark.get());
+            if (added.isEmpty()) {
+                return;
+            }
+            advance(watermark, added, id);
+        }
+
+        List<T> unmodifiable = Collections.unmodifiableList(added);
+        for (BookShopChangeListener listener : changeListeners) {
+            event.accept(listener, unmodifiable);
+        }
+    }
+
+    /**
+     * A watermark-ot a lista legnagyobb id-jára lépteti (visszafelé soha).
+     */
+    private static <T> List<T> advance(AtomicInteger watermark, List<T> items, ToIntFunction<T> id) {
+        int max = 0;
+        for (T item : items) {
+            max = Math.max(max, id.applyAsInt(item));
+        }
+        watermark.accumulateAndGet(max, Math::max);
+        return items;
+    }
+
+    /*
+     * Aszinkron változatok: ugyanazt csinálják, mint a fenti metódusok, de egy
+     * külön szálon, az eredményt pedig CompletableFuture-ként adják vissza.
+     * A future cancel() hívása megszakítja a még futó mûveletet.
+     */
+
+    public CompletableFuture<Boolean> addCustomerAsync(Customer c) {
+        return async(() -> addCustomer(c));
+    }
+
+    public CompletableFuture<List<Customer>> getCustomersAsync() {
+        return async(this::getCustomers);
+    }
+
+    public CompletableFuture<Page<Customer>> getCustomersAsync(PageRequest request) {
+        return async(() -> getCustomers(request));
+    }
+
+    public CompletableFuture<List<Customer>> findCustomersAsync(CustomerQuery query) {
+        return async(() -> findCustomers(query));
+    }
+
+    public CompletableFuture<Boolean> addBookAsync(Book book) {
+        return async(() -> addBook(book));
+    }
+
+    public CompletableFuture<List<Book>> getBooksAsync() {
+        return async(this::getBooks);
+    }
+
+    public CompletableFuture<Page<Book>> getBooksAsync(PageRequest request) {
+        return async(() -> getBooks(request));
+    }
+
+    public CompletableFuture<List<Book>> findBooksAsync(BookQuery query) {
+        return async(() -> findBooks(query));
+    }
+
+    public CompletableFuture<List<Book>> searchBooksAsync(String query, int limit) {
+        return async(() -> searchBooks(query, limit));
+    }
+
+    public CompletableFuture<List<SalesRow>> getSalesReportAsync(SalesGrouping grouping, LocalDate from,
+                                                                 LocalDate to, int topN) {
+        return async(() -> getSalesReport(grouping, from, to, topN));
+    }
+
+    public CompletableFuture<List<Purchase>> getPurchasesAsync() {
+        return async(this::getPurchases);
+    }
+
+    public CompletableFuture<Page<Purchase>> getPurchasesAsync(PageRequest request) {
+        return async(() -> getPurchases(request));
+    }
+
+    /**
+     * Elindítja a mûveletet az {@link #executor}-on. Ha a visszaadott
+     * future-t megszakítják, a futó szálat is megszakítjuk.
+     */
+    private <T> CompletableFuture<T> async(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Future<?> running = executor.submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Virtuális szálakat használ, ha a futtató JDK támogatja (Java 21+),
+     * egyébként egy kis, daemon szálakból álló pool-t.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(
+                    Math.max(2, Runtime.getRuntime().availableProcessors()),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "bookshop-worker-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
 }
@@ -0,0 +1,707 @@
+package hu.aradipatrik.alkfejl.bookshop.controller;
+
+import hu.aradipatrik.alkfejl.bookshop.model.BatchResult;
+import hu.aradipatrik.alkfejl.bookshop.model.BookShopDAO;
+import hu.aradipatrik.alkfejl.bookshop.model.BulkLoadable;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Könyvek és vásárlók tömeges betöltése CSV fájlból, a GUI nélkül.
+ * <p>
+ * A fájlt egy olvasó szál NIO-val, nagy darabokban (chunk) olvassa, és
+ * rekordhatáron vágja. A darabokat több szál dolgozza fel párhuzamosan
+ * (CSV értelmezés, a {@link BookShopController} üzleti szabályai), a hívó
+ * szál pedig a fájl sorrendjében, batch-ekben írja az adattárba. Egyszerre
+ * csak néhány darab lehet feldolgozás alatt, így a memóriaigény nem függ a
+ * fájl méretétõl.
+ * </p>
+ * <p>
+ * A fájl elsõ sora a fejléc, az oszlopnevek a bean mezõi (kis- és
+ * nagybetû nem számít, az oszlopok sorrendje tetszõleges). Könyveknél:
+ * {@code author, title, year, category, price} kötelezõ, {@code piece}
+ * opcionális. Vásárlóknál: {@code name, age} kötelezõ, {@code female,
+ * rented, student, grantee, qualification} opcionális. A hibás és az
+ * adattár által visszautasított (pl. már létezõ) sorok a megadott
+ * fájlba kerülnek, a sor számával és az okkal.
+ * </p>
+ * <p>
+ * Ha az adattár {@link BulkLoadable}, a betöltés annak tömeges betöltési
+ * módjában fut (adatbázisnál a keresõ indexet a végén, egyben építi fel).
+ * </p>
+ */
+public class CsvImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    /**
+     * A betöltés elõrehaladásáról kap értesítést, minden batch után.
+     */
+    public interface ProgressListener {
+        /**
+         * @param bytesDone  A feldolgozott bájtok száma.
+         * @param bytesTotal A fájl mérete.
+         * @param inserted   Az eddig tárolt sorok száma.
+         * @param rejected   Az eddig visszautasított sorok száma.
+         */
+        void progress(long bytesDone, long bytesTotal, long inserted, long rejected);
+    }
+
+    /**
+     * Egy betöltés eredménye.
+     */
+    public static class Result {
+        private final long rows;
+        private final long inserted;
+        private final long rejected;
+        private final long elapsedMillis;
+
+        Result(long rows, long inserted, long rejected, long elapsedMillis) {
+            this.rows = rows;
+            this.inserted = inserted;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return A fájl adatsorainak száma (a fejléc nélkül).
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return Feldolgozott sor / másodperc.
+         */
+        public long getRowsPerSecond() {
+            return elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [" +
+                    "rows=" + rows +
+                    ", inserted=" + inserted +
+                    ", rejected=" + rejected +
+                    ", elapsedMillis=" + elapsedMillis +
+                    ", rowsPerSecond=" + getRowsPerSecond() + "]";
+        }
+    }
+
+    private final BookShopDAO dao;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private char separator = ',';
+    private Path rejectedRowsFile;
+    private ProgressListener progressListener;
+
+    public CsvImporter(BookShopDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @param threads A CSV-t értelmezõ szálak száma.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param chunkSize Egyszerre ennyi bájtot olvasunk és adunk egy szálnak.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1024, chunkSize);
+    }
+
+    /**
+     * @param batchSize Egy tömeges felvétellel legfeljebb ennyi sort írunk az adattárba.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param separator A mezõk elválasztója (alapértelmezés: vesszõ).
+     */
+    public void setSeparator(char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * @param rejectedRowsFile Ide kerülnek a visszautasított sorok, null esetén sehova.
+     */
+    public void setRejectedRowsFile(Path rejectedRowsFile) {
+        this.rejectedRowsFile = rejectedRowsFile;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Betölti a könyveket. Az 1900 elõtti könyvek antikok lesznek.
+     *
+     * @throws IOException Ha a fájl nem olvasható, vagy hiányzik egy kötelezõ oszlop.
+     */
+    public Result importBooks(Path csv) throws IOException {
+        return run(csv, CsvImporter::bookParser, dao::addBooks);
+    }
+
+    /**
+     * Betölti a vásárlókat, a kor szerinti szabályokkal.
+     *
+     * @throws IOException Ha a fájl nem olvasható, vagy hiányzik egy kötelezõ oszlop.
+     */
+    public Result importCustomers(Path csv) throws IOException {
+        return run(csv, CsvImporter::customerParser, dao::addCustomers);
+    }
+
+    // Sorok értelmezése
+
+    /**
+     * Egy rekord mezõibõl állítja elõ a bean-t.
+     *
+     * @throws IllegalArgumentException Ha a rekord hibás, az okkal.
+     */
+    private interface RowParser<T> {
+        T parse(String[] fields);
+    }
+
+    private static RowParser<Book> bookParser(Columns columns) throws IOException {
+        int author = columns.require("author");
+        int title = columns.require("title");
+        int year = columns.require("year");
+        int category = columns.require("category");
+        int price = columns.require("price");
+        int piece = columns.optional("piece");
+
+        return fields -> {
+            Book book = new Book();
+            book.setAuthor(text(fields, author, "author"));
+            book.setTitle(text(fields, title, "title"));
+            book.setYear(number(fields, year, "year"));
+            book.setCategory(text(fields, category, "category"));
+            book.setPrice(number(fields, price, "price"));
+            book.setPiece(piece >= 0 && !fields[piece].isEmpty() ? number(fields, piece, "piece") : 0);
+            BookShopController.applyBookRules(book);
+            return book;
+        };
+    }
+
+    private static RowParser<Customer> customerParser(Columns columns) throws IOException {
+        int name = columns.require("name");
+        int age = columns.require("age");
+        int female = columns.optional("female");
+        int rented = columns.optional("rented");
+        int student = columns.optional("student");
+        int grantee = columns.optional("grantee");
+        int qualification = columns.optional("qualification");
+
+        return fields -> {
+            Customer customer = new Customer();
+            customer.setName(text(fields, name, "name"));
+            customer.setAge(number(fields, age, "age"));
+            customer.setFemale(flag(fields, female, "female"));
+            customer.setRented(flag(fields, rented, "rented"));
+            customer.setStudent(flag(fields, student, "student"));
+            customer.setGrantee(flag(fields, grantee, "grantee"));
+            if (qualification >= 0 && !fields[qualification].isEmpty()) {
+                customer.setQualification(fields[qualification]);
+            }
+            BookShopController.applyCustomerRules(customer);
+            return customer;
+        };
+    }
+
+    private static String text(String[] fields, int column, String name) {
+        String value = fields[column].trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static int number(String[] fields, int column, String name) {
+        try {
+            return Integer.parseInt(fields[column].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": '" + fields[column] + "'");
+        }
+    }
+
+    private static boolean flag(String[] fields, int column, String name) {
+        if (column < 0) {
+            return false;
+        }
+        switch (fields[column].trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "0":
+            case "false":
+            case "no":
+            case "nem":
+                return false;
+            case "1":
+            case "true":
+            case "yes":
+            case "igen":
+                return true;
+            default:
+                throw new IllegalArgumentException("Invalid " + name + ": '" + fields[column] + "'");
+        }
+    }
+
+    /**
+     * A fejléc: oszlopnév -> oszlop index.
+     */
+    private static final class Columns {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final int count;
+
+        Columns(String[] header) {
+            count = header.length;
+            for (int i = 0; i < header.length; i++) {
+                indexes.putIfAbsent(header[i].trim().toLowerCase(Locale.ROOT), i);
+            }
+        }
+
+        int require(String name) throws IOException {
+            Integer index = indexes.get(name);
+            if (index == null) {
+                throw new IOException("Missing CSV column: " + name);
+            }
+            return index;
+        }
+
+        int optional(String name) {
+            return indexes.getOrDefault(name, -1);
+        }
+    }
+
+    // A feldolgozás menete
+
+    private interface ParserFactory<T> {
+        RowParser<T> create(Columns columns) throws IOException;
+    }
+
+    /**
+     * Egy feldolgozott darab: a sikeresen értelmezett sorok, és a hibás sorok
+     * jelentése. A sorok szövegét a jelentéshez a darab szövegébõl vesszük.
+     */
+    private static final class Chunk<T> {
+        final int bytes;
+        final List<T> rows = new ArrayList<>();
+        final List<Long> rowLines = new ArrayList<>();
+        final List<String> rowTexts = new ArrayList<>();
+        final List<String> rejects = new ArrayList<>();
+        int records;
+
+        Chunk(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private <T> Result run(Path csv, ParserFactory<T> parsers, Function<List<T>, BatchResult> insert)
+            throws IOException {
+        if (!(dao instanceof BulkLoadable)) {
+            return load(csv, parsers, insert);
+        }
+
+        try {
+            return ((BulkLoadable) dao).bulkLoad(() -> {
+                try {
+                    return load(csv, parsers, insert);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> Result load(Path csv, ParserFactory<T> parsers, Function<List<T>, BatchResult> insert)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        long total = Files.size(csv);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "csv-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Ez korlátozza a memóriában lévõ darabok számát
+        BlockingQueue<Future<Chunk<T>>> chunks = new ArrayBlockingQueue<>(threads * 2);
+        executor.execute(() -> read(csv, parsers, executor, chunks));
+
+        long rows = 0;
+        long inserted = 0;
+        long rejected = 0;
+        long bytesDone = 0;
+
+        try (BufferedWriter rejects = rejectedRowsFile != null
+                ? Files.newBufferedWriter(rejectedRowsFile, StandardCharsets.UTF_8) : null) {
+            if (rejects != null) {
+                rejects.write("line,reason,record");
+                rejects.newLine();
+            }
+
+            List<T> batch = new ArrayList<>(batchSize);
+            List<Long> batchLines = new ArrayList<>(batchSize);
+            List<String> batchTexts = new ArrayList<>(batchSize);
+
+            while (true) {
+                Chunk<T> chunk = take(chunks);
+                if (chunk == null) {
+                    break;
+                }
+
+                rows += chunk.records;
+                rejected += chunk.rejects.size();
+                bytesDone += chunk.bytes;
+                if (rejects != null) {
+                    for (String reject : chunk.rejects) {
+                        rejects.write(reject);
+                        rejects.newLine();
+                    }
+                }
+
+                for (int i = 0; i < chunk.rows.size(); i++) {
+                    batch.add(chunk.rows.get(i));
+                    batchLines.add(chunk.rowLines.get(i));
+                    batchTexts.add(chunk.rowTexts.get(i));
+
+                    if (batch.size() == batchSize) {
+                        long stored = write(batch, batchLines, batchTexts, insert, rejects);
+                        inserted += stored;
+                        rejected += batchLines.size() - stored;
+                        batch.clear();
+                        batchLines.clear();
+                        batchTexts.clear();
+                        report(bytesDone, total, inserted, rejected);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                long stored = write(batch, batchLines, batchTexts, insert, rejects);
+                inserted += stored;
+                rejected += batchLines.size() - stored;
+            }
+            report(total, total, inserted, rejected);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Result(rows, inserted, rejected, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return A tárolt sorok száma. A többit a jelentésbe írja.
+     */
+    private <T> long write(List<T> batch, List<Long> lines, List<String> texts,
+                           Function<List<T>, BatchResult> insert, BufferedWriter rejects) throws IOException {
+        BatchResult result = insert.apply(batch);
+        long stored = 0;
+        for (int i = 0; i < result.size(); i++) {
+            BatchResult.Outcome outcome = result.getOutcome(i);
+            if (outcome == BatchResult.Outcome.INSERTED) {
+                stored++;
+            } else if (rejects != null) {
+                rejects.write(reject(lines.get(i), outcome.name(), texts.get(i)));
+                rejects.newLine();
+            }
+        }
+        return stored;
+    }
+
+    private void report(long bytesDone, long total, long inserted, long rejected) {
+        if (progressListener != null) {
+            progressListener.progress(bytesDone, total, inserted, rejected);
+        }
+    }
+
+    private static <T> Chunk<T> take(BlockingQueue<Future<Chunk<T>>> chunks) throws IOException {
+        try {
+            return chunks.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("CSV import failed", e.getCause());
+        }
+    }
+
+    /**
+     * Az olvasó szál: rekordhatáron vágott darabokra bontja a fájlt, és
+     * mindegyiket feldolgozásra adja. A sorba a végén egy null darab kerül.
+     */
+    private <T> void read(Path csv, ParserFactory<T> parsers, ExecutorService executor,
+                          BlockingQueue<Future<Chunk<T>>> chunks) {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            RowParser<T> parser = null;
+            int columnCount = 0;
+            long line = 1;
+            boolean eof = false;
+
+            while (!eof || buffer.position() > 0) {
+                if (!eof && buffer.hasRemaining()) {
+                    eof = channel.read(buffer) < 0;
+                    if (!eof && buffer.hasRemaining()) {
+                        continue;
+                    }
+                }
+
+                byte[] data = buffer.array();
+                int length = buffer.position();
+                int offset = 0;
+                if (line == 1 && length >= 3 && (data[0] & 0xFF) == 0xEF
+                        && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+                    // UTF-8 BOM
+                    offset = 3;
+                }
+
+                int[] lines = new int[1];
+                int end = eof ? length : lastRecordEnd(data, offset, length, lines);
+                if (end < 0) {
+                    // egy rekord nagyobb, mint a puffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put((ByteBuffer) buffer.flip());
+                    continue;
+                }
+                if (eof) {
+                    lines[0] = countLines(data, offset, end);
+                }
+
+                if (parser == null) {
+                    int headerEnd = firstRecordEnd(data, offset, end);
+                    String header = trimLineEnd(new String(data, offset, headerEnd - offset, StandardCharsets.UTF_8));
+                    Columns columns = new Columns(split(header, separator));
+                    parser = parsers.create(columns);
+                    columnCount = columns.count;
+                    lines[0] -= countLines(data, offset, headerEnd);
+                    offset = headerEnd;
+                    line++;
+                }
+
+                byte[] chunkData = Arrays.copyOfRange(data, offset, end);
+                long firstLine = line;
+                RowParser<T> chunkParser = parser;
+                int chunkColumns = columnCount;
+                chunks.put(executor.submit(() -> parse(chunkData, firstLine, chunkParser, chunkColumns)));
+                line += lines[0];
+
+                buffer.limit(length).position(end);
+                buffer.compact();
+            }
+            chunks.put(CompletableFuture.completedFuture(null));
+        } catch (Exception e) {
+            CompletableFuture<Chunk<T>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                chunks.put(failed);
+            } catch (InterruptedException interrupted) {
+                // a betöltés már leállt
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return Az utolsó teljes rekord utáni pozíció (idézõjelen kívüli sorvég
+     * után), vagy -1, ha nincs teljes rekord. A lines[0]-ba az addigi sorok
+     * számát írja.
+     */
+    private static int lastRecordEnd(byte[] data, int from, int to, int[] lines) {
+        boolean quoted = false;
+        int end = -1;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n') {
+                count++;
+                if (!quoted) {
+                    end = i + 1;
+                    lines[0] = count;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static int firstRecordEnd(byte[] data, int from, int to) {
+        boolean quoted = false;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '"') {
+                quoted = !quoted;
+            } else if (data[i] == '\n' && !quoted) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    private static int countLines(byte[] data, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Egy darab feldolgozása egy feldolgozó szálon.
+     */
+    private <T> Chunk<T> parse(byte[] data, long firstLine, RowParser<T> parser, int columnCount) {
+        Chunk<T> chunk = new Chunk<>(data.length);
+        String text = new String(data, StandardCharsets.UTF_8);
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+
+        long line = firstLine;
+        int position = 0;
+        while (position < text.length()) {
+            // egy rekord: [position, end), sorvég nélkül
+            int recordStart = position;
+            long recordLine = line;
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+
+            int i = position;
+            for (; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == separator) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r' || (i + 1 < text.length() && text.charAt(i + 1) != '\n')) {
+                    // a CRLF sorvég \r-jét elhagyjuk
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            // a hiányzó mezõk üresek, ezeket a parser hiányzó értékként jelzi
+            while (fields.size() < columnCount) {
+                fields.add("");
+            }
+            String record = trimLineEnd(text.substring(recordStart, i));
+            position = i + 1;
+            line++;
+
+            if (record.isEmpty()) {
+                continue;
+            }
+            chunk.records++;
+            try {
+                chunk.rows.add(parser.parse(fields.toArray(new String[0])));
+                chunk.rowLines.add(recordLine);
+                chunk.rowTexts.add(record);
+            } catch (IllegalArgumentException e) {
+                chunk.rejects.add(reject(recordLine, e.getMessage(), record));
+            }
+        }
+        return chunk;
+    }
+
+    private static String[] split(String line, char separator) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static String trimLineEnd(String line) {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * A jelentés egy sora: sorszám, ok, és az eredeti rekord, CSV-ként.
+     */
+    private static String reject(long line, String reason, String record) {
+        return line + "," + quote(reason) + "," + quote(record);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
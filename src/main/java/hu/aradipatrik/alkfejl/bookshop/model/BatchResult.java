@@ -0,0 +1,85 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.Arrays;
+
+/**
+ * Egy tömeges felvétel ({@link BookShopDAO#addBooks}, stb.) eredménye.
+ * Soronként, a bemenet sorrendjében megmondja, hogy mi történt az adott elemmel.
+ */
+public class BatchResult {
+
+    /**
+     * Egy sor felvételének kimenetele.
+     */
+    public enum Outcome {
+        /** A sor tárolásra került. */
+        INSERTED,
+        /** Egyediségi megszorítás miatt nem került tárolásra (pl. már létezõ cím vagy név). */
+        DUPLICATE,
+        /** Hiányzó kötelezõ adat vagy nem létezõ hivatkozás miatt nem került tárolásra. */
+        INVALID,
+        /** Eladásnál: a könyvbõl nincs több példány raktáron. */
+        OUT_OF_STOCK,
+        /** Adatelérési hiba miatt az egész tranzakció visszagörgetésre került. */
+        FAILED
+    }
+
+    private final Outcome[] outcomes;
+
+    BatchResult(int size) {
+        outcomes = new Outcome[size];
+        Arrays.fill(outcomes, Outcome.FAILED);
+    }
+
+    void set(int index, Outcome outcome) {
+        outcomes[index] = outcome;
+    }
+
+    void failAll() {
+        Arrays.fill(outcomes, Outcome.FAILED);
+    }
+
+    /**
+     * @return A bemenet elemeinek száma.
+     */
+    public int size() {
+        return outcomes.length;
+    }
+
+    /**
+     * @param index A sor indexe a bemenetben.
+     * @return A sor felvételének kimenetele.
+     */
+    public Outcome getOutcome(int index) {
+        return outcomes[index];
+    }
+
+    /**
+     * @param outcome A keresett kimenetel.
+     * @return Az adott kimenetelû sorok száma.
+     */
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (Outcome o : outcomes) {
+            if (o == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getInsertedCount() {
+        return count(Outcome.INSERTED);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [" +
+                "size=" + outcomes.length +
+                ", inserted=" + count(Outcome.INSERTED) +
+                ", duplicate=" + count(Outcome.DUPLICATE) +
+                ", invalid=" + count(Outcome.INVALID) +
+                ", outOfStock=" + count(Outcome.OUT_OF_STOCK) +
+                ", failed=" + count(Outcome.FAILED) + "]";
+    }
+}
@@ -0,0 +1,357 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A könyvkatalógus oszlopos, csak olvasható pillanatképe ár- és
+ * készletelemzésekhez. A könyvek mezõit primitív tömbökben tartja (év,
+ * ár, készlet), a kategóriát szótárkódolva, az ancient jelzõt bitmapben,
+ * így a bejárások nem ugrálnak a {@link Book} példányok között.
+ * <p>
+ * A szûrések ({@code select...}) egy bitmapet adnak vissza (soronként egy
+ * bit, {@code long[]}), ezek az {@link #and} mûvelettel kombinálhatók, és
+ * az összesítõ mûveletek megkapják (null esetén minden sorra
+ * számolnak). Sem a szûrés, sem az összesítés nem foglal soronként memóriát.
+ * </p>
+ */
+public final class BookColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int size;
+    private final int[] ids;
+    private final int[] years;
+    private final int[] prices;
+    private final int[] pieces;
+    private final int[] categoryCodes;
+    private final long[] ancient;
+    private final List<String> categories;
+
+    private BookColumns(Builder builder) {
+        size = builder.size;
+        ids = Arrays.copyOf(builder.ids, size);
+        years = Arrays.copyOf(builder.years, size);
+        prices = Arrays.copyOf(builder.prices, size);
+        pieces = Arrays.copyOf(builder.pieces, size);
+        categoryCodes = Arrays.copyOf(builder.categoryCodes, size);
+        ancient = Arrays.copyOf(builder.ancient, words(size));
+        categories = Collections.unmodifiableList(new ArrayList<>(builder.categoryDictionary.keySet()));
+    }
+
+    /**
+     * A megadott könyvekbõl (pl. {@link BookShopDAO#getBooks()}) építi fel.
+     */
+    public static BookColumns of(Iterable<Book> books) {
+        Builder builder = new Builder();
+        for (Book book : books) {
+            builder.add(book);
+        }
+        return new BookColumns(builder);
+    }
+
+    /**
+     * Az adattár bejárásával (adatbázisnál cursorral, újrahasznált bean-nel)
+     * építi fel, a könyvek listája nem kerül a memóriába.
+     *
+     * @throws DataAccessException Ha a könyvek olvasása nem sikerült.
+     */
+    public static BookColumns of(BookShopDAO dao) {
+        Builder builder = new Builder();
+        if (!dao.forEachBook(builder::add, true)) {
+            throw new DataAccessException("Failed to read books for the column snapshot", null);
+        }
+        return new BookColumns(builder);
+    }
+
+    /**
+     * @return A könyvek (sorok) száma.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A kategóriák szótára, a kategória kód a lista indexe (egy
+     * kategória lehet null is).
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    // Szûrések
+
+    /**
+     * @return Azon sorok, ahol a kiadás éve a [from, to] tartományba esik.
+     */
+    public long[] selectYears(int from, int to) {
+        return selectRange(years, from, to);
+    }
+
+    /**
+     * @return Azon sorok, ahol az ár a [from, to] tartományba esik.
+     */
+    public long[] selectPrices(int from, int to) {
+        return selectRange(prices, from, to);
+    }
+
+    /**
+     * @return Azon sorok, ahol van készlet.
+     */
+    public long[] selectInStock() {
+        return selectRange(pieces, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return Az adott kategóriájú sorok (üres, ha ilyen kategória nincs).
+     */
+    public long[] selectCategory(String category) {
+        int code = categories.indexOf(category);
+        long[] selection = new long[words(size)];
+        if (code < 0) {
+            return selection;
+        }
+        for (int i = 0; i < size; i++) {
+            selection[i >>> 6] |= (categoryCodes[i] == code ? 1L : 0L) << i;
+        }
+        return selection;
+    }
+
+    /**
+     * @return Az antik (vagy, ha az ancient hamis, a nem antik) könyvek sorai.
+     */
+    public long[] selectAncient(boolean ancient) {
+        long[] selection = Arrays.copyOf(this.ancient, this.ancient.length);
+        if (!ancient) {
+            for (int w = 0; w < selection.length; w++) {
+                selection[w] = ~selection[w];
+            }
+            clearTail(selection);
+        }
+        return selection;
+    }
+
+    /**
+     * @return A két szûrés metszete (az elsõ tömbbe írva).
+     */
+    public static long[] and(long[] selection, long[] other) {
+        for (int w = 0; w < selection.length; w++) {
+            selection[w] &= other[w];
+        }
+        return selection;
+    }
+
+    private long[] selectRange(int[] column, int from, int to) {
+        long[] selection = new long[words(size)];
+        // elõjel nélküli összehasonlítással a tartomány ellenõrzése elágazásmentes
+        long width = (long) to - from;
+        for (int w = 0; w < selection.length; w++) {
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            long word = 0;
+            for (int bit = 0; bit < end; bit++) {
+                long offset = (long) column[base + bit] - from;
+                word |= ((offset - width - 1) >>> 63 & ~offset >>> 63) << bit;
+            }
+            selection[w] = word;
+        }
+        return selection;
+    }
+
+    // Összesítések
+
+    /**
+     * @param selection A figyelembe vett sorok, vagy null, ha mind.
+     * @return A kiválasztott sorok száma.
+     */
+    public int count(long[] selection) {
+        if (selection == null) {
+            return size;
+        }
+        int count = 0;
+        for (long word : selection) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @param selection A figyelembe vett sorok, vagy null, ha mind.
+     * @return A készlet darabszáma összesen.
+     */
+    public long totalPieces(long[] selection) {
+        long total = 0;
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                total += pieces[i];
+            }
+            return total;
+        }
+        for (int w = 0; w < selection.length; w++) {
+            long word = selection[w];
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            for (int bit = 0; bit < end; bit++) {
+                total += pieces[base + bit] & -(int) (word >>> bit & 1L);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param selection A figyelembe vett sorok, vagy null, ha mind.
+     * @return A készlet értéke (ár * darabszám) összesen.
+     */
+    public long stockValue(long[] selection) {
+        long total = 0;
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                total += (long) prices[i] * pieces[i];
+            }
+            return total;
+        }
+        // a kiválasztott bit maszkként szerepel, így a ciklus elágazásmentes
+        for (int w = 0; w < selection.length; w++) {
+            long word = selection[w];
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            for (int bit = 0; bit < end; bit++) {
+                total += (long) prices[base + bit] * pieces[base + bit] & -(word >>> bit & 1L);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Ár szerinti hisztogram egyenlõ szélességû sávokkal. A min alatti árak
+     * az elsõ, a legfelsõ sáv feletti árak az utolsó sávba kerülnek.
+     *
+     * @param selection   A figyelembe vett sorok, vagy null, ha mind.
+     * @param min         Az elsõ sáv alsó határa.
+     * @param bucketWidth Egy sáv szélessége (pozitív).
+     * @param buckets     A sávok száma (pozitív).
+     * @return Sávonként a könyvek száma.
+     */
+    public int[] priceHistogram(long[] selection, int min, int bucketWidth, int buckets) {
+        if (bucketWidth <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException("Bucket width and count must be positive");
+        }
+        int[] histogram = new int[buckets];
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                histogram[bucket(prices[i], min, bucketWidth, buckets)]++;
+            }
+            return histogram;
+        }
+        for (int w = 0; w < selection.length; w++) {
+            for (long word = selection[w]; word != 0; word &= word - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                histogram[bucket(prices[i], min, bucketWidth, buckets)]++;
+            }
+        }
+        return histogram;
+    }
+
+    private static int bucket(int price, int min, int bucketWidth, int buckets) {
+        long bucket = ((long) price - min) / bucketWidth;
+        return (int) Math.max(0, Math.min(buckets - 1, bucket));
+    }
+
+    /**
+     * @param selection A figyelembe vett sorok, vagy null, ha mind.
+     * @return Kategória kódonként (lásd {@link #getCategories()}) a könyvek száma.
+     */
+    public int[] countByCategory(long[] selection) {
+        int[] counts = new int[categories.size()];
+        if (selection == null) {
+            for (int i = 0; i < size; i++) {
+                counts[categoryCodes[i]]++;
+            }
+            return counts;
+        }
+        for (int w = 0; w < selection.length; w++) {
+            for (long word = selection[w]; word != 0; word &= word - 1) {
+                counts[categoryCodes[(w << 6) + Long.numberOfTrailingZeros(word)]]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * A {@link #countByCategory} eredménye kategória névvel, a szótár sorrendjében.
+     */
+    public Map<String, Integer> countByCategoryName(long[] selection) {
+        int[] counts = countByCategory(selection);
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            byName.put(categories.get(code), counts[code]);
+        }
+        return byName;
+    }
+
+    private void clearTail(long[] selection) {
+        if ((size & 63) != 0) {
+            selection[selection.length - 1] &= (1L << size) - 1;
+        }
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Növekvõ oszlopokba gyûjti a könyveket. A bean-t nem tartja meg, így
+     * újrahasznált bean-nel is mûködik.
+     */
+    private static final class Builder {
+        private int size;
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int[] years = new int[INITIAL_CAPACITY];
+        private int[] prices = new int[INITIAL_CAPACITY];
+        private int[] pieces = new int[INITIAL_CAPACITY];
+        private int[] categoryCodes = new int[INITIAL_CAPACITY];
+        private long[] ancient = new long[words(INITIAL_CAPACITY)];
+        private final Map<String, Integer> categoryDictionary = new LinkedHashMap<>();
+
+        void add(Book book) {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                years = Arrays.copyOf(years, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                pieces = Arrays.copyOf(pieces, capacity);
+                categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+                ancient = Arrays.copyOf(ancient, words(capacity));
+            }
+
+            ids[size] = book.getId();
+            years[size] = book.getYear();
+            prices[size] = book.getPrice();
+            pieces[size] = book.getPiece();
+            categoryCodes[size] = categoryCode(book.getCategory());
+            if (book.isAncient()) {
+                ancient[size >>> 6] |= 1L << size;
+            }
+            size++;
+        }
+
+        private int categoryCode(String category) {
+            Integer code = categoryDictionary.get(category);
+            if (code == null) {
+                code = categoryDictionary.size();
+                categoryDictionary.put(category, code);
+            }
+            return code;
+        }
+    }
+}
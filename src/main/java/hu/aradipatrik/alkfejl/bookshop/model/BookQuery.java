@@ -0,0 +1,188 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+
+import java.util.Locale;
+
+/**
+ * Könyvkeresés feltételei ({@link BookShopDAO#findBooks}). Minden feltétel
+ * opcionális, a megadottaknak egyszerre kell teljesülniük. A szûrést,
+ * rendezést és a limitet az adattár végzi, így nem kell a teljes katalógust
+ * lekérni.
+ * <p>
+ * Példa: {@code new BookQuery().category("horror").inStock(true).sortBy("price").limit(20)}
+ * </p>
+ */
+public class BookQuery {
+
+    private String authorContains;
+    private String titleContains;
+    private String category;
+    private Integer minYear;
+    private Integer maxYear;
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Boolean ancient;
+    private boolean inStock;
+
+    private String sortKey = PageRequest.SORT_BY_ID;
+    private boolean descending;
+    private int limit;
+
+    /**
+     * A szerzõ neve tartalmazza a szöveget (kis- és nagybetûtõl függetlenül).
+     */
+    public BookQuery authorContains(String text) {
+        this.authorContains = text;
+        return this;
+    }
+
+    /**
+     * A cím tartalmazza a szöveget (kis- és nagybetûtõl függetlenül).
+     */
+    public BookQuery titleContains(String text) {
+        this.titleContains = text;
+        return this;
+    }
+
+    public BookQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    /**
+     * A kiadás éve a megadott zárt intervallumba esik. A null határ nem korlátoz.
+     */
+    public BookQuery yearBetween(Integer min, Integer max) {
+        this.minYear = min;
+        this.maxYear = max;
+        return this;
+    }
+
+    /**
+     * Az ár a megadott zárt intervallumba esik. A null határ nem korlátoz.
+     */
+    public BookQuery priceBetween(Integer min, Integer max) {
+        this.minPrice = min;
+        this.maxPrice = max;
+        return this;
+    }
+
+    public BookQuery ancient(Boolean ancient) {
+        this.ancient = ancient;
+        return this;
+    }
+
+    /**
+     * Csak a raktáron lévõ (legalább egy példány) könyvek.
+     */
+    public BookQuery inStock(boolean inStock) {
+        this.inStock = inStock;
+        return this;
+    }
+
+    /**
+     * @param sortKey A rendezési kulcs, ugyanazok engedélyezettek, mint
+     *                lapozásnál (pl. {@code "title"}, {@code "price"}).
+     */
+    public BookQuery sortBy(String sortKey) {
+        this.sortKey = sortKey;
+        return this;
+    }
+
+    public BookQuery descending(boolean descending) {
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * @param limit Legfeljebb ennyi találat, 0 esetén nincs korlát.
+     */
+    public BookQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public String getAuthorContains() {
+        return authorContains;
+    }
+
+    public String getTitleContains() {
+        return titleContains;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Boolean getAncient() {
+        return ancient;
+    }
+
+    public boolean isInStock() {
+        return inStock;
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Memóriában tárolt könyvek szûréséhez: megfelel-e a könyv a feltételeknek.
+     */
+    boolean matches(Book book) {
+        return contains(book.getAuthor(), authorContains)
+                && contains(book.getTitle(), titleContains)
+                && (category == null || category.equals(book.getCategory()))
+                && between(book.getYear(), minYear, maxYear)
+                && between(book.getPrice(), minPrice, maxPrice)
+                && (ancient == null || ancient == book.isAncient())
+                && (!inStock || book.getPiece() > 0);
+    }
+
+    static boolean contains(String value, String text) {
+        return text == null
+                || (value != null && value.toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT)));
+    }
+
+    static boolean between(int value, Integer min, Integer max) {
+        return (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    @Override
+    public String toString() {
+        return "BookQuery [" +
+                "authorContains=" + authorContains + ", titleContains=" + titleContains +
+                ", category=" + category + ", year=" + minYear + ".." + maxYear +
+                ", price=" + minPrice + ".." + maxPrice + ", ancient=" + ancient +
+                ", inStock=" + inStock + ", sortKey=" + sortKey +
+                ", descending=" + descending + ", limit=" + limit + "]";
+    }
+}
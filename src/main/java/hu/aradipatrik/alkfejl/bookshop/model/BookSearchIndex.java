@@ -0,0 +1,147 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Memóriában tárolt könyvek teljes szöveges keresõje (inverted index) a cím
+ * és a szerzõ szavaira. Az adatbázisban az FTS5 {@code BookSearch} tábla
+ * tölti be ugyanezt a szerepet.
+ * <p>
+ * A keresés minden szavának (elõtagként) szerepelnie kell a címben vagy a
+ * szerzõben. A találatok sorrendje: a teljes szó egyezés erõsebb az
+ * elõtagnál, a címben talált szó erõsebb a szerzõben találtnál. A
+ * szavakat kisbetûsítjük és az ékezeteket elhagyjuk, ahogy az FTS5
+ * alapértelmezett (unicode61) tokenizálója is.
+ * </p>
+ */
+final class BookSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    // Szó -> az azt tartalmazó könyvek. Rendezett, így az elõtagra illeszkedõ
+    // szavak egy összefüggõ tartományt adnak
+    private final NavigableMap<String, List<Book>> titleWords = new TreeMap<>();
+    private final NavigableMap<String, List<Book>> authorWords = new TreeMap<>();
+
+    void add(Book book) {
+        addWords(titleWords, book.getTitle(), book);
+        addWords(authorWords, book.getAuthor(), book);
+    }
+
+    /**
+     * @param query A keresett szavak (vagy szórészletek), szóközzel elválasztva.
+     * @param limit Legfeljebb ennyi találat, 0 esetén nincs korlát.
+     * @return A találatok, a legjobb elöl.
+     */
+    List<Book> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Book, Integer> scores = null;
+        for (String term : terms) {
+            Map<Book, Integer> termScores = new HashMap<>();
+            collect(titleWords, term, 2, termScores);
+            collect(authorWords, term, 1, termScores);
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // minden szónak illeszkednie kell
+                scores.keySet().retainAll(termScores.keySet());
+                for (Map.Entry<Book, Integer> entry : scores.entrySet()) {
+                    entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                }
+            }
+
+            if (scores.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        Map<Book, Integer> finalScores = scores;
+        Comparator<Book> order = Comparator.<Book>comparingInt(finalScores::get).reversed()
+                .thenComparingInt(Book::getId);
+
+        return KeysetPaging.top(finalScores.keySet(), book -> true, order, limit);
+    }
+
+    /**
+     * Az elõtagra illeszkedõ szavak könyveit gyûjti össze. Teljes szó
+     * egyezés kétszer annyit ér, mint az elõtag; egy könyv a legjobb
+     * egyezése pontszámát kapja.
+     */
+    private static void collect(NavigableMap<String, List<Book>> words, String term, int weight,
+                                Map<Book, Integer> scores) {
+        for (Map.Entry<String, List<Book>> entry : words.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int score = weight * (entry.getKey().equals(term) ? 2 : 1);
+            for (Book book : entry.getValue()) {
+                scores.merge(book, score, Math::max);
+            }
+        }
+    }
+
+    private static void addWords(NavigableMap<String, List<Book>> words, String text, Book book) {
+        // egy könyv egy szónál csak egyszer szerepel
+        for (String word : new LinkedHashSet<>(tokenize(text))) {
+            words.computeIfAbsent(word, k -> new ArrayList<>()).add(book);
+        }
+    }
+
+    /**
+     * Szavakra bontja a szöveget: kisbetûsít, elhagyja az ékezeteket, és a
+     * betûkön, számjegyeken kívüli karaktereknél vág.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Az FTS5 MATCH kifejezése a kereséshez: minden szó idézõjelben (így a
+     * felhasználó nem adhat meg FTS operátort) és elõtagként.
+     *
+     * @return A kifejezés, vagy null, ha a keresésben nincs szó.
+     */
+    static String toMatchExpression(String query) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String term : terms) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"').append(term).append("\"*");
+        }
+        return sb.toString();
+    }
+}
@@ -4,7 +4,11 @@ import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Az interfész a BookShop app adatelérési retegét reprezentálja.
@@ -26,6 +30,52 @@ public interface BookShopDAO {
      */
     public List<Customer> getCustomers();
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Customer}-t.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Customer}, vagy null, ha nincs ilyen.
+     */
+    public Customer getCustomer(int id);
+
+    /**
+     * Visszaadja a tárolt {@link Customer} példányok egy lapját (keyset lapozás).
+     * Rendezési kulcsok: {@code id}, {@code name}, {@code age}.
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    public Page<Customer> getCustomers(PageRequest request);
+
+    /**
+     * Visszaadja a megadott azonosítónál (watermark) nagyobb azonosítójú,
+     * tehát annál késõbb felvett {@link Customer} példányokat, azonosító
+     * szerint növekvõ sorrendben. A hívó a legnagyobb kapott azonosítót
+     * adja át a következõ hívásnál, így csak a változásokat kell lekérnie.
+     *
+     * @param watermark A hívó által már ismert legnagyobb azonosító (kezdetben 0).
+     * @return Az újabb {@link Customer}-ek listája.
+     */
+    public List<Customer> getCustomersSince(int watermark);
+
+    /**
+     * Megkeresi a feltételeknek megfelelõ {@link Customer}-eket. A szûrést,
+     * rendezést és a limitet az adattár végzi.
+     *
+     * @param query A keresés feltételei, rendezése és limitje.
+     * @return A találatok, a kért sorrendben.
+     * @throws IllegalArgumentException Ha a kért rendezési kulcs nem engedélyezett.
+     */
+    public List<Customer> findCustomers(CustomerQuery query);
+
+    /**
+     * Egyszerre több {@link Customer}-t ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param customers A tárolandó {@link Customer}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    public BatchResult addCustomers(Collection<Customer> customers);
+
     /**
      * Hozzáad egy {@link Book}-ot az adattárhoz.
      *
@@ -41,6 +91,64 @@ public interface BookShopDAO {
      */
     public List<Book> getBooks();
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Book}-ot.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Book}, vagy null, ha nincs ilyen.
+     */
+    public Book getBook(int id);
+
+    /**
+     * Visszaadja a tárolt {@link Book} példányok egy lapját (keyset lapozás).
+     * Rendezési kulcsok: {@code id}, {@code author}, {@code title},
+     * {@code year}, {@code category}, {@code price}.
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    public Page<Book> getBooks(PageRequest request);
+
+    /**
+     * Visszaadja a megadott azonosítónál (watermark) nagyobb azonosítójú,
+     * tehát annál késõbb felvett {@link Book} példányokat, azonosító
+     * szerint növekvõ sorrendben. A hívó a legnagyobb kapott azonosítót
+     * adja át a következõ hívásnál, így csak a változásokat kell lekérnie.
+     *
+     * @param watermark A hívó által már ismert legnagyobb azonosító (kezdetben 0).
+     * @return Az újabb {@link Book}-ok listája.
+     */
+    public List<Book> getBooksSince(int watermark);
+
+    /**
+     * Megkeresi a feltételeknek megfelelõ {@link Book}-okat. A szûrést,
+     * rendezést és a limitet az adattár végzi.
+     *
+     * @param query A keresés feltételei, rendezése és limitje.
+     * @return A találatok, a kért sorrendben.
+     * @throws IllegalArgumentException Ha a kért rendezési kulcs nem engedélyezett.
+     */
+    public List<Book> findBooks(BookQuery query);
+
+    /**
+     * Teljes szöveges keresés a könyvek címében és szerzõjében. A keresés
+     * minden szavának (szó elejeként) szerepelnie kell, kis- és nagybetûtõl,
+     * valamint ékezetektõl függetlenül.
+     *
+     * @param query A keresett szavak vagy szórészletek, pl. {@code "gyûr ura"}.
+     * @param limit Legfeljebb ennyi találat, 0 esetén nincs korlát.
+     * @return A találatok relevancia szerint csökkenõ sorrendben.
+     */
+    public List<Book> searchBooks(String query, int limit);
+
+    /**
+     * Egyszerre több {@link Book}-ot ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param books A tárolandó {@link Book}-ok.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    public BatchResult addBooks(Collection<Book> books);
+
     /**
      * Hozzáad egy {@link Purchase}-et az adattárhoz.
      *
@@ -55,4 +163,128 @@ public interface BookShopDAO {
      * @return A tárolt {@link Purchase}-ek listája.
      */
     public List<Purchase> getPurchases();
+
+    /**
+     * Visszaadja a tárolt {@link Purchase} példányok egy lapját (keyset lapozás).
+     * Rendezési kulcs: {@code id}.
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    public Page<Purchase> getPurchases(PageRequest request);
+
+    /**
+     * Visszaadja a megadott azonosítónál (watermark) nagyobb azonosítójú,
+     * tehát annál késõbb felvett {@link Purchase} példányokat, azonosító
+     * szerint növekvõ sorrendben. A hívó a legnagyobb kapott azonosítót
+     * adja át a következõ hívásnál, így csak a változásokat kell lekérnie.
+     *
+     * @param watermark A hívó által már ismert legnagyobb azonosító (kezdetben 0).
+     * @return Az újabb {@link Purchase}-ek listája.
+     */
+    public List<Purchase> getPurchasesSince(int watermark);
+
+    /**
+     * Egyszerre több {@link Purchase}-et ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param purchases A tárolandó {@link Purchase}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    public BatchResult addPurchases(Collection<Purchase> purchases);
+
+    /**
+     * Elad egy könyvet: egy tranzakcióban csökkenti a könyv raktárkészletét
+     * ({@code pieces}) és rögzíti a vásárlást. Ha a könyvbõl már nincs
+     * példány, semmi nem változik.
+     *
+     * @param purchase A rögzítendõ {@link Purchase}.
+     * @return Igaz, ha az eladás megtörtént, hamis, ha nincs készleten, vagy hiba történt.
+     */
+    public boolean sellBook(Purchase purchase);
+
+    /**
+     * Egyszerre több könyvet ad el ({@link #sellBook}), egy tranzakcióban.
+     * A készlet nélküli sorok {@link BatchResult.Outcome#OUT_OF_STOCK}
+     * kimenetelt kapnak, a többi eladást nem akadályozzák.
+     *
+     * @param purchases A rögzítendõ {@link Purchase}-ek.
+     * @return Soronként az eladás kimenetele, a bemenet sorrendjében.
+     */
+    public BatchResult sellBooks(Collection<Purchase> purchases);
+
+    /**
+     * Eladási kimutatás: a vásárlások száma és bevétele a megadott
+     * csoportosítás szerint. Minden vásárlás az eladáskori árával számít.
+     *
+     * @param grouping A csoportosítás.
+     * @param from     Az elsõ figyelembe vett nap, null esetén nincs alsó korlát.
+     * @param to       Az utolsó figyelembe vett nap, null esetén nincs felsõ korlát.
+     * @param topN     Legfeljebb ennyi sor, 0 esetén nincs korlát.
+     * @return A csoportok bevétel, majd darabszám szerint csökkenõ, azon belül
+     * felirat szerinti sorrendben.
+     */
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN);
+
+    /**
+     * Bejárja a tárolt {@link Customer} példányokat anélkül, hogy listába
+     * gyûjtené õket.
+     *
+     * @param action    Minden {@link Customer}-re meghívandó mûvelet.
+     * @param reuseBean Ha igaz, minden sorhoz ugyanazt a példányt töltjük fel,
+     *                  így az a mûveleten kívül nem tárolható el.
+     * @return Igaz, ha a bejárás hiba nélkül végigért, hamis, egyébként.
+     */
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean);
+
+    /**
+     * Bejárja a tárolt {@link Book} példányokat anélkül, hogy listába
+     * gyûjtené õket.
+     *
+     * @param action    Minden {@link Book}-ra meghívandó mûvelet.
+     * @param reuseBean Ha igaz, minden sorhoz ugyanazt a példányt töltjük fel,
+     *                  így az a mûveleten kívül nem tárolható el.
+     * @return Igaz, ha a bejárás hiba nélkül végigért, hamis, egyébként.
+     */
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean);
+
+    /**
+     * Bejárja a tárolt {@link Purchase} példányokat anélkül, hogy listába
+     * gyûjtené õket.
+     *
+     * @param action    Minden {@link Purchase}-re meghívandó mûvelet.
+     * @param reuseBean Ha igaz, minden sorhoz ugyanazt a példányt (és a hozzá
+     *                  tartozó {@link Book}-ot, {@link Customer}-t) töltjük fel.
+     * @return Igaz, ha a bejárás hiba nélkül végigért, hamis, egyébként.
+     */
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean);
+
+    /**
+     * Lusta {@link Stream}-ként adja vissza a tárolt {@link Customer}-eket.
+     * A stream erõforrást (pl. adatbázis kapcsolatot) foglal, ezért
+     * try-with-resources blokkban kell használni. Bejárás közbeni hiba esetén
+     * {@link DataAccessException}-t dob.
+     *
+     * @return A tárolt {@link Customer}-ek lezárandó stream-je.
+     */
+    public Stream<Customer> streamCustomers();
+
+    /**
+     * Lusta {@link Stream}-ként adja vissza a tárolt {@link Book}-okat.
+     * A stream erõforrást (pl. adatbázis kapcsolatot) foglal, ezért
+     * try-with-resources blokkban kell használni. Bejárás közbeni hiba esetén
+     * {@link DataAccessException}-t dob.
+     *
+     * @return A tárolt {@link Book}-ok lezárandó stream-je.
+     */
+    public Stream<Book> streamBooks();
+
+    /**
+     * Lusta {@link Stream}-ként adja vissza a tárolt {@link Purchase}-eket.
+     * A stream erõforrást (pl. adatbázis kapcsolatot) foglal, ezért
+     * try-with-resources blokkban kell használni. Bejárás közbeni hiba esetén
+     * {@link DataAccessException}-t dob.
+     *
+     * @return A tárolt {@link Purchase}-ek lezárandó stream-je.
+     */
+    public Stream<Purchase> streamPurchases();
 }
@@ -0,0 +1,475 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Szálbiztos, memóriában tároló adatelérés, több egyszerre dolgozó kassza
+ * számára. A {@link BookShopDAOMemImpl}-lel azonos viselkedésû, de:
+ * <ul>
+ * <li>az id-kat példányonként egy atomi számláló osztja ki;</li>
+ * <li>az elemeket id szerint rendezett konkurens map-ek tárolják, így a
+ * watermark és az id szerinti lapozás zár nélkül, a map egy szeletébõl megy;</li>
+ * <li>a név és a cím egyediségét egy konkurens map {@code putIfAbsent}-je
+ * dönti el, két egyszerre felvett azonos nevû elem közül csak az egyik nyer
+ * (a vásárlásoknál ugyanígy egy konkurens halmaz a könyv-vásárló párét);</li>
+ * <li>a lista lekérdezések módosíthatatlan pillanatképet adnak vissza, nem a
+ * belsõ tárolót;</li>
+ * <li>az eladás a könyv id-ja szerint csíkozott záron fut, így egy könyv
+ * készlete nem mehet nulla alá, a különbözõ könyvek eladásai pedig nem
+ * várnak egymásra.</li>
+ * </ul>
+ * A bejáró metódusok és a stream-ek gyengén konzisztensek: a bejárás közben
+ * felvett elemeket vagy látják, vagy nem, de hibát nem dobnak.
+ * <p>
+ * A párhuzamos felvételek az id-juk sorrendjétõl eltérõ sorrendben
+ * kerülhetnek be a map-ekbe. Hogy a watermark lekérdezések (pl.
+ * {@link #getCustomersSince}) ne ugorjanak át egy még folyamatban lévõ
+ * felvételt, csak a hézagmentesen közzétett id-kig adnak vissza elemeket.
+ * </p>
+ */
+public class BookShopDAOConcurrentMemImpl implements BookShopDAO {
+
+    private final AtomicInteger id = new AtomicInteger(1);
+
+    // A legnagyobb id, ameddig minden id-hoz tartozó elem már be van téve a
+    // map-ekbe (lásd publish)
+    private final AtomicInteger published = new AtomicInteger(1);
+
+    // id -> elem, id szerint rendezve (ez adja a felvétel sorrendjét is)
+    private final ConcurrentNavigableMap<Integer, Customer> customers = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, Book> books = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, Purchase> purchases = new ConcurrentSkipListMap<>();
+
+    // Egyediségi indexek: ezekbe kerül be elõször az elem, a putIfAbsent
+    // eredménye dönti el, hogy felvehetõ-e
+    private final Map<String, Customer> customersByName = new ConcurrentHashMap<>();
+    private final Map<String, Book> booksByTitle = new ConcurrentHashMap<>();
+
+    // A már rögzített (könyv, vásárló) párok (lásd InMemorySales.purchaseKey):
+    // egy vásárló egy könyvet csak egyszer vehet meg
+    private final Set<Long> purchasedPairs = ConcurrentHashMap.newKeySet();
+
+    // A keresõ index nem szálbiztos, az írások kizárólagosan, a keresések
+    // egymással párhuzamosan férnek hozzá
+    private final BookSearchIndex bookSearch = new BookSearchIndex();
+    private final ReadWriteLock bookSearchLock = new ReentrantReadWriteLock();
+
+    // A visszatöltött, de a keresõ indexbe még be nem tett könyvek (lásd indexRestored)
+    private final List<Book> unindexed = new ArrayList<>();
+    private volatile boolean hasUnindexed = false;
+
+    // Az azonos könyv eladásai ezeken a zárakon állnak sorba; a könyv
+    // készletét (piece) csak a hozzá tartozó zár alatt módosítjuk
+    private final StripedLocks stockLocks = new StripedLocks();
+
+    @Override
+    public boolean addCustomer(Customer customer) {
+        return insert(customer) == BatchResult.Outcome.INSERTED;
+    }
+
+    private BatchResult.Outcome insert(Customer customer) {
+        if (customer.getName() == null) {
+            return BatchResult.Outcome.INVALID;
+        }
+        if (customersByName.putIfAbsent(customer.getName(), customer) != null) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        customer.setId(id.incrementAndGet());
+        customers.put(customer.getId(), customer);
+        publish();
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public List<Customer> getCustomers() {
+        return snapshot(customers);
+    }
+
+    @Override
+    public Customer getCustomer(int id) {
+        return customers.get(id);
+    }
+
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        return page(customers, request, KeysetPaging.CUSTOMER_SORT_KEYS, Customer::getId);
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        return since(customers, watermark);
+    }
+
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        Comparator<Customer> order = KeysetPaging.order(
+                KeysetPaging.sortKey(KeysetPaging.CUSTOMER_SORT_KEYS, query.getSortKey()), Customer::getId);
+
+        return KeysetPaging.top(customers.values(), query::matches,
+                query.isDescending() ? order.reversed() : order, query.getLimit());
+    }
+
+    @Override
+    public BatchResult addCustomers(Collection<Customer> newCustomers) {
+        BatchResult result = new BatchResult(newCustomers.size());
+        int index = 0;
+
+        for (Customer customer : newCustomers) {
+            result.set(index++, insert(customer));
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        return insert(book) == BatchResult.Outcome.INSERTED;
+    }
+
+    private BatchResult.Outcome insert(Book book) {
+        if (book.getAuthor() == null || book.getTitle() == null || book.getCategory() == null) {
+            return BatchResult.Outcome.INVALID;
+        }
+        if (booksByTitle.putIfAbsent(book.getTitle(), book) != null) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        book.setId(id.incrementAndGet());
+        books.put(book.getId(), book);
+        publish();
+
+        bookSearchLock.writeLock().lock();
+        try {
+            bookSearch.add(book);
+        } finally {
+            bookSearchLock.writeLock().unlock();
+        }
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public List<Book> getBooks() {
+        return snapshot(books);
+    }
+
+    @Override
+    public Book getBook(int id) {
+        return books.get(id);
+    }
+
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        return page(books, request, KeysetPaging.BOOK_SORT_KEYS, Book::getId);
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        return since(books, watermark);
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        Comparator<Book> order = KeysetPaging.order(
+                KeysetPaging.sortKey(KeysetPaging.BOOK_SORT_KEYS, query.getSortKey()), Book::getId);
+
+        return KeysetPaging.top(books.values(), query::matches,
+                query.isDescending() ? order.reversed() : order, query.getLimit());
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        if (hasUnindexed) {
+            indexRestored();
+        }
+
+        bookSearchLock.readLock().lock();
+        try {
+            return bookSearch.search(query, limit);
+        } finally {
+            bookSearchLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BatchResult addBooks(Collection<Book> newBooks) {
+        BatchResult result = new BatchResult(newBooks.size());
+        int index = 0;
+
+        for (Book book : newBooks) {
+            result.set(index++, insert(book));
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean addPurchase(Purchase purchase) {
+        return insert(purchase) == BatchResult.Outcome.INSERTED;
+    }
+
+    private BatchResult.Outcome insert(Purchase purchase) {
+        if (!isStored(purchase.getCustomer()) || !isStored(purchase.getBook())) {
+            return BatchResult.Outcome.INVALID;
+        }
+        if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        purchase.setId(id.incrementAndGet());
+        InMemorySales.recordSale(purchase);
+        purchases.put(purchase.getId(), purchase);
+        publish();
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public List<Purchase> getPurchases() {
+        return snapshot(purchases);
+    }
+
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        return page(purchases, request, KeysetPaging.PURCHASE_SORT_KEYS, Purchase::getId);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        return since(purchases, watermark);
+    }
+
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> newPurchases) {
+        BatchResult result = new BatchResult(newPurchases.size());
+        int index = 0;
+
+        for (Purchase purchase : newPurchases) {
+            result.set(index++, insert(purchase));
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        return sell(purchase) == BatchResult.Outcome.INSERTED;
+    }
+
+    /**
+     * Az eladásokat egyenként végzi, a batch nem atomi: a többi szál a
+     * batch közben is láthatja a már eladott sorokat.
+     */
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> newPurchases) {
+        BatchResult result = new BatchResult(newPurchases.size());
+        int index = 0;
+
+        for (Purchase purchase : newPurchases) {
+            result.set(index++, sell(purchase));
+        }
+
+        return result;
+    }
+
+    private BatchResult.Outcome sell(Purchase purchase) {
+        if (!isStored(purchase.getCustomer()) || !isStored(purchase.getBook())) {
+            return BatchResult.Outcome.INVALID;
+        }
+
+        Book book = purchase.getBook();
+        Lock lock = stockLocks.get(book.getId());
+        lock.lock();
+        try {
+            if (book.getPiece() <= 0) {
+                return BatchResult.Outcome.OUT_OF_STOCK;
+            }
+            if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+                return BatchResult.Outcome.DUPLICATE;
+            }
+            book.setPiece(book.getPiece() - 1);
+        } finally {
+            lock.unlock();
+        }
+
+        purchase.setId(id.incrementAndGet());
+        InMemorySales.recordSale(purchase);
+        purchases.put(purchase.getId(), purchase);
+        publish();
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        return InMemorySales.aggregate(purchases.values(), grouping, from, to, topN);
+    }
+
+    /*
+     * A bejáró metódusoknál a reuseBean-nek nincs szerepe, hiszen a
+     * példányok már a memóriában vannak, azokat adjuk tovább.
+     */
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        customers.values().forEach(action);
+        return true;
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        books.values().forEach(action);
+        return true;
+    }
+
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        purchases.values().forEach(action);
+        return true;
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return customers.values().stream();
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return books.values().stream();
+    }
+
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        return purchases.values().stream();
+    }
+
+    /*
+     * Már id-val rendelkezõ elemek visszatöltése (pl. a DurableBookShopDAO
+     * napló visszajátszásakor). Nem ellenõriznek egyediséget, és a többi
+     * mûvelettel párhuzamosan nem hívhatók.
+     */
+
+    void restore(Customer customer) {
+        customersByName.put(customer.getName(), customer);
+        customers.put(customer.getId(), customer);
+        restored(customer.getId());
+    }
+
+    void restore(Book book) {
+        booksByTitle.put(book.getTitle(), book);
+        books.put(book.getId(), book);
+        unindexed.add(book);
+        hasUnindexed = true;
+        restored(book.getId());
+    }
+
+    void restore(Purchase purchase) {
+        purchasedPairs.add(InMemorySales.purchaseKey(purchase));
+        purchases.put(purchase.getId(), purchase);
+        restored(purchase.getId());
+    }
+
+    /**
+     * A visszatöltött könyveket egyben teszi a keresõ indexbe. A visszatöltés
+     * után egyszer kell meghívni (pl. a háttérben); ha addig keresés érkezik,
+     * az végzi el.
+     */
+    void indexRestored() {
+        bookSearchLock.writeLock().lock();
+        try {
+            for (Book book : unindexed) {
+                bookSearch.add(book);
+            }
+            unindexed.clear();
+            hasUnindexed = false;
+        } finally {
+            bookSearchLock.writeLock().unlock();
+        }
+    }
+
+    private void restored(int restoredId) {
+        id.accumulateAndGet(restoredId, Math::max);
+        published.accumulateAndGet(restoredId, Math::max);
+    }
+
+    /**
+     * @return True, ha pontosan ez a példány van tárolva.
+     */
+    private boolean isStored(Customer customer) {
+        return customer != null && customers.get(customer.getId()) == customer;
+    }
+
+    private boolean isStored(Book book) {
+        return book != null && books.get(book.getId()) == book;
+    }
+
+    /**
+     * Az elem map-be tétele után elõrébb lépteti a közzétett id-t, ameddig
+     * a következõ id is már be van téve. Ha egy kisebb id felvétele még
+     * folyamatban van, az léptet majd tovább a mi id-nkig is, mivel õ a saját
+     * elemének betétele után vizsgálja a következõket.
+     */
+    private void publish() {
+        while (true) {
+            int current = published.get();
+            int next = current + 1;
+            if (!customers.containsKey(next) && !books.containsKey(next) && !purchases.containsKey(next)) {
+                return;
+            }
+            published.compareAndSet(current, next);
+        }
+    }
+
+    private <T> List<T> since(ConcurrentNavigableMap<Integer, T> items, int watermark) {
+        int upTo = published.get();
+        if (watermark >= upTo) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(items.subMap(watermark, false, upTo, true).values());
+    }
+
+    private static <T> List<T> snapshot(ConcurrentNavigableMap<Integer, T> items) {
+        return Collections.unmodifiableList(new ArrayList<>(items.values()));
+    }
+
+    /**
+     * Azonosító szerinti rendezésnél a lapot közvetlenül a map megfelelõ
+     * szeletébõl olvassa, egyébként egy pillanatképbõl állítja elõ.
+     */
+    private static <T> Page<T> page(ConcurrentNavigableMap<Integer, T> items, PageRequest request,
+                                    Map<String, Function<T, Comparable<?>>> keys, ToIntFunction<T> id) {
+        if (!request.isSortedById()) {
+            return KeysetPaging.page(new ArrayList<>(items.values()), request, keys, id);
+        }
+
+        Map<Integer, T> range = request.isFirst() ? items : items.tailMap(request.getAfterId(), false);
+        List<T> rows = new ArrayList<>(request.getLimit() + 1);
+        for (T item : range.values()) {
+            if (rows.size() > request.getLimit()) {
+                break;
+            }
+            rows.add(item);
+        }
+        return KeysetPaging.toPage(rows, request, KeysetPaging.sortKey(keys, request), id);
+    }
+}
@@ -2,26 +2,44 @@ package hu.aradipatrik.alkfejl.bookshop.model;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+import hu.aradipatrik.alkfejl.bookshop.model.db.BookRowMapper;
+import hu.aradipatrik.alkfejl.bookshop.model.db.ConnectionPool;
+import hu.aradipatrik.alkfejl.bookshop.model.db.CustomerRowMapper;
+import hu.aradipatrik.alkfejl.bookshop.model.db.PooledConnection;
+import hu.aradipatrik.alkfejl.bookshop.model.db.PurchaseRowMapper;
+import hu.aradipatrik.alkfejl.bookshop.model.db.RowMapper;
+import hu.aradipatrik.alkfejl.bookshop.model.db.SchemaMigrator;
+import hu.aradipatrik.alkfejl.bookshop.model.db.SqlFunctions;
+import hu.aradipatrik.alkfejl.bookshop.model.db.StorageConfig;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Ez az osztály az adatelérést szolgálja. Tényleges perzisztens
  * tárolót, adatbázist használ.
  */
-public class BookShopDAODBImpl implements BookShopDAO {
-
-    List<Customer> customers = new ArrayList<>();
-    List<Book> books = new ArrayList<>();
-    List<Purchase> purchases = new ArrayList<>();
-
-    // Adatbázis fájlt reprezentáló string, melyet a
-    // BookShopDB környezeti változóból olvasunk ki (env.bat állítja be)
-    private static final String DATABASE_FILE = BookShopDAODBImpl.class.getResource("/bookshop.db").toString();
+public class BookShopDAODBImpl implements BookShopDAO, BulkLoadable {
 
     // SQL paraméterezhetõ INSERT utasítás Customer felvételére
     // Az egyes paramétereket utólagosan állíthatjuk be (PreparedStatement)
@@ -35,20 +53,149 @@ public class BookShopDAODBImpl implements BookShopDAO {
                     "(author, title, year, category, price, pieces, ancient)" +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
+    // A vásárlást csak létezõ könyvre és vásárlóra vesszük fel (a séma nem
+    // kapcsolja be a foreign_keys ellenõrzést), egyébként 0 sort érint. A
+    // ?1 és ?2 paraméter a könyv és a vásárló id-ja, lásd bindPurchase
+    private static final String SQL_PURCHASE_REFS_EXIST =
+            " WHERE EXISTS (SELECT 1 FROM Book WHERE id = ?1) AND EXISTS (SELECT 1 FROM Customer WHERE id = ?2)";
+
     private static final String SQL_ADD_PURCHASE =
             "INSERT INTO SoldBookInstances" +
-                    "(id_book, id_customer, sellDate)" +
-                    "VALUES (?, ?, ?)";
+                    "(id_book, id_customer, sellDate, price)" +
+                    "SELECT ?1, ?2, ?3, ?4" + SQL_PURCHASE_REFS_EXIST;
+
+    // Tömeges felvételnél az egyediséget sértõ sorokat kihagyjuk, így azok
+    // nem szakítják meg a batch-et (a kihagyott sor 0 érintett sort ad)
+    private static final String SQL_ADD_CUSTOMER_OR_IGNORE =
+            "INSERT OR IGNORE INTO Customer " +
+                    "(name, age, female, rented, student, grantee, qualification) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_ADD_BOOK_OR_IGNORE =
+            "INSERT OR IGNORE INTO BOOK " +
+                    "(author, title, year, category, price, pieces, ancient)" +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_ADD_PURCHASE_OR_IGNORE =
+            "INSERT OR IGNORE INTO SoldBookInstances" +
+                    "(id_book, id_customer, sellDate, price)" +
+                    "SELECT ?1, ?2, ?3, ?4" + SQL_PURCHASE_REFS_EXIST;
+
+    private static final String SQL_PURCHASE_REFS = "SELECT 1" + SQL_PURCHASE_REFS_EXIST;
+
+    // Eladásnál a készletet feltételesen csökkentjük: ha már nincs példány,
+    // 0 sort érint, így két kassza sem adhatja el ugyanazt az utolsó példányt
+    private static final String SQL_TAKE_FROM_STOCK =
+            "UPDATE Book SET pieces = pieces - 1 WHERE id = ? AND pieces > 0";
+
+    private static final String SQL_RETURN_TO_STOCK = "UPDATE Book SET pieces = pieces + 1 WHERE id = ?";
 
     // SQL lekérdezés, a Customerek lekérdezéséhez
-    private static final String SQL_LIST_CUSTOMERS = "SELECT * FROM Customer";
+    // Az oszlopokat explicit felsoroljuk, a mapperek ezek indexét egyszer,
+    // a lekérdezés elején oldják fel
+    private static final String SQL_LIST_CUSTOMERS = "SELECT " + CustomerRowMapper.projection() + " FROM Customer";
+
+    private static final String SQL_LIST_BOOKS = "SELECT " + BookRowMapper.projection() + " FROM Book";
+
+    // A joinban minden oszlop elõtagot kap (pl. book_id, customer_id), így
+    // nincs kétértelmû id oszlop
+    private static final String SQL_LIST_PURCHASES =
+            "SELECT " + PurchaseRowMapper.projection("p", "b", "c") + " FROM SoldBookInstances p " +
+                    "INNER JOIN Book b ON p.id_book = b.id INNER JOIN Customer c ON p.id_customer = c.id";
+
+    // Keyset lapozás: a rendezési kulcs oszlopát (%1$s) a DAO illeszti be,
+    // miután ellenõrizte, hogy engedélyezett kulcs. A %2$s a tábla lista
+    // lekérdezése (SQL_LIST_*). A folytatás sor-érték összehasonlítás, így
+    // az SQLite a kulcs indexében (ami az id-t is tartalmazza) közvetlenül
+    // az elõzõ lap utáni sorra ugrik, nem olvassa végig az elejétõl
+    private static final String SQL_PAGE_FIRST = "%2$s ORDER BY %1$s, id LIMIT ?";
+
+    private static final String SQL_PAGE_AFTER = "%2$s WHERE (%1$s, id) > (?, ?) ORDER BY %1$s, id LIMIT ?";
+
+    private static final String SQL_PAGE_BY_ID = "%s WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String SQL_GET_CUSTOMER = SQL_LIST_CUSTOMERS + " WHERE id = ?";
+
+    private static final String SQL_GET_BOOK = SQL_LIST_BOOKS + " WHERE id = ?";
+
+    private static final String SQL_PAGE_PURCHASES = SQL_LIST_PURCHASES + " WHERE p.id > ? ORDER BY p.id LIMIT ?";
+
+    // A watermark utáni (késõbb felvett) sorok
+    private static final String SQL_CUSTOMERS_SINCE = SQL_LIST_CUSTOMERS + " WHERE id > ? ORDER BY id";
+
+    private static final String SQL_BOOKS_SINCE = SQL_LIST_BOOKS + " WHERE id > ? ORDER BY id";
+
+    private static final String SQL_PURCHASES_SINCE = SQL_LIST_PURCHASES + " WHERE p.id > ? ORDER BY p.id";
+
+    // Kereséseknél a WHERE feltételeket a DAO fûzi össze (lásd Conditions),
+    // az értékek mindig paraméterként kerülnek be. A rendezési kulcsot
+    // (%1$s) csak ellenõrzés után illesztjük be
+    private static final String SQL_FIND_ORDER = " ORDER BY %1$s %2$s, id %2$s";
+
+    // Teljes szöveges keresés az FTS5 BookSearch táblában (lásd V4 migráció),
+    // a címben talált szó kétszer annyit ér, mint a szerzõben talált.
+    // LIMIT -1: nincs korlát
+    private static final String SQL_SEARCH_BOOKS =
+            "SELECT " + BookRowMapper.projection("b", "") + " FROM BookSearch " +
+                    "INNER JOIN Book b ON b.id = BookSearch.rowid " +
+                    "WHERE BookSearch MATCH ? ORDER BY bm25(BookSearch, 2.0, 1.0) LIMIT ?";
 
-    private static final String SQL_LIST_BOOKS = "SELECT * FROM Book";
+    // Az FTS5 index soronkénti frissítése (lásd V4 migráció). Tömeges
+    // betöltésnél ezt kikapcsoljuk, és a végén egyben újraépítjük az indexet
+    private static final String SQL_HAS_SEARCH_TRIGGER =
+            "SELECT 1 FROM sqlite_master WHERE type = 'trigger' AND name = 'BookSearch_insert'";
 
-    private static final String SQL_LIST_PURCHASES = "SELECT * FROM SoldBookInstances INNER JOIN Book ON id_book = Book.id INNER JOIN Customer ON id_customer = Customer.id";
+    private static final String SQL_DROP_SEARCH_TRIGGER = "DROP TRIGGER IF EXISTS BookSearch_insert";
+
+    private static final String SQL_CREATE_SEARCH_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS BookSearch_insert AFTER INSERT ON Book " +
+                    "BEGIN " +
+                    "INSERT INTO BookSearch (rowid, title, author) VALUES (new.id, new.title, new.author); " +
+                    "END";
+
+    private static final String SQL_REBUILD_SEARCH = "INSERT INTO BookSearch (BookSearch) VALUES ('rebuild')";
+
+    // Eladási kimutatás: a csoport kulcsát (%1$s), feliratát (%2$s) és a
+    // szükséges joint (%3$s) a csoportosítás alapján illesztjük be, a
+    // WHERE feltételeket a DAO fûzi hozzá (lásd Conditions)
+    private static final String SQL_SALES =
+            "SELECT %1$s AS sales_key, %2$s AS sales_label, count(*) AS sales_count, " +
+                    "coalesce(sum(p.price), 0) AS sales_revenue FROM SoldBookInstances p%3$s";
+
+    private static final String SQL_SALES_ORDER =
+            " GROUP BY %1$s ORDER BY sales_revenue DESC, sales_count DESC, sales_label";
+
+    private static final String SQL_JOIN_BOOK = " INNER JOIN Book b ON p.id_book = b.id";
+
+    private static final String SQL_JOIN_CUSTOMER = " INNER JOIN Customer c ON p.id_customer = c.id";
+
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 1000;
+
+    // Teljes táblák bejárásánál a drivernek adott fetch size javaslat
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    // A kapcsolatokat nem nyitjuk meg minden hívásnál, hanem a pool-ból kérjük
+    private final ConnectionPool pool;
+
+    // Az azonos könyv eladásai ezeken a zárakon állnak sorba, nem az
+    // adatbázis zárján (busy timeout), a különbözõ könyveké nem várnak egymásra
+    private final StripedLocks stockLocks = new StripedLocks();
+
+    // Tömeges felvételnél ennyi sort küldünk egyszerre az adatbázisnak
+    private int batchChunkSize = DEFAULT_BATCH_CHUNK_SIZE;
 
     // A konstruktorban inicializáljuk az adatbázist
+    // Az adatbázis fájl helyét és beállításait a rendszer tulajdonságokból
+    // olvassuk ki (lásd StorageConfig)
     public BookShopDAODBImpl() {
+        this(StorageConfig.fromSystemProperties());
+    }
+
+    /**
+     * @param config Az adatbázis fájl helye, a PRAGMA profil és a pool beállításai.
+     * @throws IllegalStateException Ha az adatbázis sémája nem hozható létre vagy frissíthetõ.
+     */
+    public BookShopDAODBImpl(StorageConfig config) {
         try {
             // Betoltjuk az SQLite JDBC drivert, ennek segítségével érjük majd
             // el az SQLite adatbázist
@@ -61,6 +208,149 @@ public class BookShopDAODBImpl implements BookShopDAO {
             System.out.println("Failed to load SQLite JDBC driver.");
             e.printStackTrace();
         }
+
+        // A pool minden új kapcsolatára alkalmazza a PRAGMA profilt
+        pool = new ConnectionPool(config.getJdbcUrl(), config.getPoolSize(), config.getIdleTimeoutMillis(),
+                ConnectionPool.DEFAULT_BORROW_TIMEOUT_MILLIS, ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE,
+                config.getConnectionInitializer());
+
+        initializeDatabase(config.getDatabasePath());
+    }
+
+    /**
+     * Elsõ induláskor létrehozza az adatbázis fájl könyvtárát, majd
+     * lefuttatja a még hiányzó séma migrációkat (lásd {@link SchemaMigrator}).
+     *
+     * @throws IllegalStateException Ha a séma nem hozható naprakész állapotba:
+     *                               régi sémán az adatelérés hibás eredményt adna.
+     */
+    private void initializeDatabase(Path databasePath) {
+        try {
+            Path parent = databasePath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to create database directory.");
+            e.printStackTrace();
+        }
+
+        try (PooledConnection conn = pool.borrow()) {
+            for (SchemaMigrator.Migration migration : SchemaMigrator.migrate(conn.getConnection())) {
+                System.out.println("Applied schema migration " + migration + " to " + databasePath);
+            }
+            // egy félbeszakadt tömeges betöltés után a keresõ index hiányos
+            if (!hasSearchTrigger(conn)) {
+                System.out.println("Rebuilding book search index after an interrupted bulk load.");
+                restoreSearchIndex(conn);
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw new IllegalStateException("Failed to initialize database " + databasePath, e);
+        }
+    }
+
+    /**
+     * Tömeges betöltés: a betöltés idejére kikapcsolja a könyvek teljes
+     * szöveges keresõ indexének (FTS5) soronkénti frissítését, a végén
+     * pedig egyben újraépíti az indexet, ami nagyságrenddel gyorsabb.
+     */
+    @Override
+    public <T> T bulkLoad(Supplier<T> load) {
+        try (PooledConnection conn = pool.borrow();
+             Statement st = conn.getConnection().createStatement()) {
+            st.execute(SQL_DROP_SEARCH_TRIGGER);
+        } catch (SQLException e) {
+            System.out.println("Failed to prepare bulk load.");
+            e.printStackTrace();
+        }
+
+        try {
+            return load.get();
+        } finally {
+            try (PooledConnection conn = pool.borrow()) {
+                restoreSearchIndex(conn);
+            } catch (SQLException e) {
+                System.out.println("Failed to rebuild book search index.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static boolean hasSearchTrigger(PooledConnection conn) throws SQLException {
+        try (Statement st = conn.getConnection().createStatement();
+             ResultSet rs = st.executeQuery(SQL_HAS_SEARCH_TRIGGER)) {
+            return rs.next();
+        }
+    }
+
+    private static void restoreSearchIndex(PooledConnection conn) throws SQLException {
+        try (Statement st = conn.getConnection().createStatement()) {
+            st.execute(SQL_CREATE_SEARCH_TRIGGER);
+            st.execute(SQL_REBUILD_SEARCH);
+        }
+    }
+
+    /**
+     * Lezárja a DAO által nyitva tartott adatbázis kapcsolatokat.
+     */
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Diagnosztika: lekéri az SQLite végrehajtási tervét a DAO lekérdezéseihez,
+     * így ellenõrizhetõ, hogy melyik használ indexet és melyik olvassa végig
+     * a táblát. A lapozó lekérdezéseknél egy-egy jellemzõ rendezési kulcsot
+     * használ.
+     *
+     * @return A lekérdezések neve és a hozzájuk tartozó terv, vagy üres map hiba esetén.
+     */
+    public Map<String, List<String>> explainQueries() {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("listCustomers", SQL_LIST_CUSTOMERS);
+        queries.put("listBooks", SQL_LIST_BOOKS);
+        queries.put("listPurchases", SQL_LIST_PURCHASES);
+        queries.put("getCustomer", SQL_GET_CUSTOMER);
+        queries.put("getBook", SQL_GET_BOOK);
+        queries.put("pageBooksById", String.format(SQL_PAGE_BY_ID, SQL_LIST_BOOKS));
+        queries.put("pageBooksByCategory", String.format(SQL_PAGE_AFTER, "category", SQL_LIST_BOOKS));
+        queries.put("pageBooksByAuthor", String.format(SQL_PAGE_AFTER, "author", SQL_LIST_BOOKS));
+        queries.put("pageCustomersByName", String.format(SQL_PAGE_AFTER, "name", SQL_LIST_CUSTOMERS));
+        queries.put("pagePurchases", SQL_PAGE_PURCHASES);
+        queries.put("purchasesSince", SQL_PURCHASES_SINCE);
+        queries.put("findBooksByCategoryAndPrice", SQL_LIST_BOOKS +
+                " WHERE category = ? AND price <= ? AND pieces > 0" + String.format(SQL_FIND_ORDER, "price", "ASC"));
+        queries.put("searchBooks", SQL_SEARCH_BOOKS);
+        queries.put("findBooksByYear", SQL_LIST_BOOKS +
+                " WHERE year >= ? AND year <= ?" + String.format(SQL_FIND_ORDER, "year", "ASC"));
+        queries.put("salesByCategory", String.format(SQL_SALES, "b.category", "b.category", SQL_JOIN_BOOK) +
+                " WHERE p.sellDate >= ? AND p.sellDate < ?" + String.format(SQL_SALES_ORDER, "b.category"));
+        Map<String, List<String>> plans = new LinkedHashMap<>();
+        try (PooledConnection conn = pool.borrow()) {
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                plans.put(query.getKey(), SchemaMigrator.explainQueryPlan(conn.getConnection(), query.getValue()));
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to explain queries.");
+            e.printStackTrace();
+        }
+        return plans;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    /**
+     * Beállítja, hogy tömeges felvételnél hány sort küldjünk egyszerre az
+     * adatbázisnak. A tranzakció ettõl függetlenül egy marad.
+     */
+    public void setBatchChunkSize(int batchChunkSize) {
+        if (batchChunkSize < 1) {
+            throw new IllegalArgumentException("Batch chunk size must be positive: " + batchChunkSize);
+        }
+        this.batchChunkSize = batchChunkSize;
     }
 
     /**
@@ -73,26 +363,15 @@ public class BookShopDAODBImpl implements BookShopDAO {
     public boolean addCustomer(Customer customer) {
         boolean rvSucceeded = false;
 
-        // Az adatbázis kapcsolatunkat a DriverManager segítségével hozzuk létre
-        // Megadjuk hogy a JDBC milyen driveren keresztül milyen fájlt keressen
+        // Az adatbázis kapcsolatot a pool-ból kérjük, a try blokk végén
+        // visszakerül oda (nem záródik le)
         //
         // új Customer felvétele esetén egy PreparedStatement objektumot kérünk a kapcsolat objektumtól
         // Ez egy paraméterezhetõ SQL utasitást vár, a paraméterek ?-ként jelennek meg
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             PreparedStatement pst = conn.prepareStatement(SQL_ADD_CUSTOMER);) {
-
-            // Az egyes parametéreket sorban kell megadni, pozíció alapján, ami
-            // 1-tõl indul
-            // Célszerû egy indexet inkrementálni, mivel ha az egyik paraméter
-            // kiesik, akkor nem kell az utána következõeket újra számozni...
-            int index = 1;
-            pst.setString(index++, customer.getName());
-            pst.setInt(index++, customer.getAge());
-            pst.setInt(index++, customer.isFemale() ? 1 : 0);
-            pst.setInt(index++, customer.isRented() ? 1 : 0);
-            pst.setInt(index++, customer.isStudent() ? 1 : 0);
-            pst.setInt(index++, customer.isGrantee() ? 1 : 0);
-            pst.setString(index++, customer.getQualification());
+        // A kapcsolat cache-eli a lefordított utasítást, ezért ezt nem zárjuk le
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(SQL_ADD_CUSTOMER);
+            bindCustomer(pst, customer);
 
             // Az ExecuteUpdate paranccsal végrehajtjuk az utasítást
             // Az executeUpdate visszaadja, hogy hány sort érintett az SQL ha
@@ -101,6 +380,8 @@ public class BookShopDAODBImpl implements BookShopDAO {
 
             // csak akkor sikeres, ha valóban volt érintett sor
             if (rowsAffected == 1) {
+                // az adatbázis által kiosztott id-t visszaírjuk az objektumba
+                customer.setId(generatedId(pst));
                 rvSucceeded = true;
             }
         } catch (SQLException e) {
@@ -117,36 +398,22 @@ public class BookShopDAODBImpl implements BookShopDAO {
      */
     public List<Customer> getCustomers(){
 
-        // Töröljük a memóriából a customereket (azért tartjuk bennt, mert
-        // lehetnek késõbb olyan mûveletek, melyekhez nem kell frissíteni)
-        customers.clear();
+        // Minden hívás saját listát kap: a listázások párhuzamosan is
+        // futhatnak (pl. a háttérszálon), egy közös lista ürítése a másik
+        // hívó alól venné ki az elemeket
+        List<Customer> customers = new ArrayList<>();
+
+        // Az adatbázis kapcsolatot a pool-ból kérjük
+        try (PooledConnection conn = pool.borrow();
+             // A kapcsolat cache-elt utasításán keresztül indítunk egy query-t (az eredményeket egy ResultSet objektumban kapjuk vissza)
+             ResultSet rs = conn.prepare(SQL_LIST_CUSTOMERS).executeQuery()) {
 
-        // Az adatbázis kapcsolatunkat a DriverManager segítségével hozzuk létre
-        // Megadjuk, hogy a JDBC milyen driveren keresztul milyen fájlt keressen
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             // A kapcsolat (conn) objektumtól kérünk egy egyszerû (nem paraméterezhetõ) utasítást
-             Statement st = conn.createStatement();
-             // Az utasítás objektumon keresztül indítunk egy query-t (az eredményeket egy ResultSet objektumban kapjuk vissza)
-             ResultSet rs = st.executeQuery(SQL_LIST_CUSTOMERS);) {
+            // Az oszlopok indexét egyszer oldjuk fel, nem minden sornál
+            CustomerRowMapper mapper = new CustomerRowMapper(rs);
 
             // Bejárjuk a visszakapott ResultSet-et (ami a customereket tartalmazza)
             while (rs.next()) {
-                // új Customert hozunk létre
-                Customer customer = new Customer();
-
-                // A customer nevét a ResultSet aktuális sorából olvassuk (name column)
-                customer.setId(rs.getInt("id"));
-                customer.setName(rs.getString("name"));
-
-                // A customer korát a ResultSet aktuális sorából olvassuk (age column)
-                customer.setAge(rs.getInt("age"));
-                customer.setFemale(rs.getInt("female") == 1);
-                customer.setRented(rs.getInt("rented") == 1);
-                customer.setStudent(rs.getInt("student") == 1);
-                customer.setGrantee(rs.getInt("grantee") == 1);
-                customer.setQualification(rs.getString("qualification"));
-
-                customers.add(customer);
+                customers.add(mapper.map(rs, null));
             }
         } catch (SQLException e) {
             System.out.println("Failed to execute listing customers.");
@@ -155,6 +422,73 @@ public class BookShopDAODBImpl implements BookShopDAO {
         return customers;
     }
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Customer}-t.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Customer}, vagy null, ha nincs ilyen.
+     */
+    @Override
+    public Customer getCustomer(int id) {
+        return queryById(SQL_GET_CUSTOMER, id, CustomerRowMapper::new);
+    }
+
+    /**
+     * Visszaadja a tárolt {@link Customer} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        return queryPage(SQL_LIST_CUSTOMERS, KeysetPaging.CUSTOMER_SORT_KEYS, request,
+                CustomerRowMapper::new, Customer::getId);
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        return querySince(SQL_CUSTOMERS_SINCE, watermark, CustomerRowMapper::new);
+    }
+
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        KeysetPaging.sortKey(KeysetPaging.CUSTOMER_SORT_KEYS, query.getSortKey());
+
+        Conditions where = new Conditions();
+        where.like("name", query.getNameContains());
+        where.add("age >= ?", query.getMinAge());
+        where.add("age <= ?", query.getMaxAge());
+        where.add("female = ?", query.getFemale());
+        where.add("student = ?", query.getStudent());
+        where.add("rented = ?", query.getRented());
+        where.add("grantee = ?", query.getGrantee());
+        where.add("qualification = ?", query.getQualification());
+
+        return find(SQL_LIST_CUSTOMERS, where, query.getSortKey(), query.isDescending(), query.getLimit(),
+                CustomerRowMapper::new);
+    }
+
+    /**
+     * Egyszerre több {@link Customer}-t ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param customers A tárolandó {@link Customer}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addCustomers(Collection<Customer> customers) {
+        return addAll(customers, SQL_ADD_CUSTOMER_OR_IGNORE, new StatementBinder<Customer>() {
+            @Override
+            public boolean isValid(Customer customer) {
+                return customer.getName() != null;
+            }
+
+            @Override
+            public void bind(PreparedStatement pst, Customer customer) throws SQLException {
+                bindCustomer(pst, customer);
+            }
+        });
+    }
+
     /**
      * Hozzáad egy {@link Book}-ot az adattárhoz.
      *
@@ -164,21 +498,14 @@ public class BookShopDAODBImpl implements BookShopDAO {
     public boolean addBook(Book book) {
         boolean rvSucceeded = false;
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             PreparedStatement pst = conn.prepareStatement(SQL_ADD_BOOK)) {
-
-            int index = 1;
-            pst.setString(index++, book.getAuthor());
-            pst.setString(index++, book.getTitle());
-            pst.setInt(index++, book.getYear());
-            pst.setString(index++, book.getCategory());
-            pst.setInt(index++, book.getPrice());
-            pst.setInt(index++, book.getPiece());
-            pst.setBoolean(index, book.isAncient());
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(SQL_ADD_BOOK);
+            bindBook(pst, book);
 
             int rowsAffected = pst.executeUpdate();
 
             if (rowsAffected == 1) {
+                book.setId(generatedId(pst));
                 rvSucceeded = true;
             }
         } catch (SQLException e) {
@@ -194,23 +521,14 @@ public class BookShopDAODBImpl implements BookShopDAO {
      * @return A tárolt {@link Book}-ek listája.
      */
     public List<Book> getBooks() {
-        books.clear();
+        List<Book> books = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SQL_LIST_BOOKS)) {
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare(SQL_LIST_BOOKS).executeQuery()) {
 
+            BookRowMapper mapper = new BookRowMapper(rs);
             while (rs.next()) {
-                Book book = new Book();
-                book.setId(rs.getInt("id"));
-                book.setAuthor(rs.getString("author"));
-                book.setTitle(rs.getString("title"));
-                book.setYear(rs.getInt("year"));
-                book.setCategory(rs.getString("category"));
-                book.setPrice(rs.getInt("price"));
-                book.setPiece(rs.getInt("pieces"));
-                book.setAncient(rs.getInt("ancient") == 1);
-                books.add(book);
+                books.add(mapper.map(rs, null));
             }
         } catch (SQLException e) {
             System.out.println("Failed to execute listing customers.");
@@ -219,6 +537,104 @@ public class BookShopDAODBImpl implements BookShopDAO {
         return books;
     }
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Book}-ot.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Book}, vagy null, ha nincs ilyen.
+     */
+    @Override
+    public Book getBook(int id) {
+        return queryById(SQL_GET_BOOK, id, BookRowMapper::new);
+    }
+
+    /**
+     * Visszaadja a tárolt {@link Book} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        return queryPage(SQL_LIST_BOOKS, KeysetPaging.BOOK_SORT_KEYS, request,
+                BookRowMapper::new, Book::getId);
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        return querySince(SQL_BOOKS_SINCE, watermark, BookRowMapper::new);
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        KeysetPaging.sortKey(KeysetPaging.BOOK_SORT_KEYS, query.getSortKey());
+
+        Conditions where = new Conditions();
+        where.like("author", query.getAuthorContains());
+        where.like("title", query.getTitleContains());
+        where.add("category = ?", query.getCategory());
+        where.add("year >= ?", query.getMinYear());
+        where.add("year <= ?", query.getMaxYear());
+        where.add("price >= ?", query.getMinPrice());
+        where.add("price <= ?", query.getMaxPrice());
+        where.add("ancient = ?", query.getAncient());
+        if (query.isInStock()) {
+            where.add("pieces > 0");
+        }
+
+        return find(SQL_LIST_BOOKS, where, query.getSortKey(), query.isDescending(), query.getLimit(),
+                BookRowMapper::new);
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        List<Book> rows = new ArrayList<>();
+
+        // a felhasználó szövegébõl csak szavak kerülnek a MATCH kifejezésbe
+        String match = BookSearchIndex.toMatchExpression(query);
+        if (match == null) {
+            return rows;
+        }
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(SQL_SEARCH_BOOKS);
+            pst.setString(1, match);
+            pst.setInt(2, limit > 0 ? limit : -1);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                BookRowMapper mapper = new BookRowMapper(rs);
+                while (rs.next()) {
+                    rows.add(mapper.map(rs, null));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute searching books.");
+            e.printStackTrace();
+        }
+        return rows;
+    }
+
+    /**
+     * Egyszerre több {@link Book}-ot ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param books A tárolandó {@link Book}-ok.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addBooks(Collection<Book> books) {
+        return addAll(books, SQL_ADD_BOOK_OR_IGNORE, new StatementBinder<Book>() {
+            @Override
+            public boolean isValid(Book book) {
+                return book.getAuthor() != null && book.getTitle() != null && book.getCategory() != null;
+            }
+
+            @Override
+            public void bind(PreparedStatement pst, Book book) throws SQLException {
+                bindBook(pst, book);
+            }
+        });
+    }
+
     /**
      * Hozzáad egy {@link Purchase}-et az adattárhoz.
      *
@@ -229,23 +645,18 @@ public class BookShopDAODBImpl implements BookShopDAO {
     public boolean addPurchase(Purchase purchase) {
         boolean rvSucceeded = false;
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             PreparedStatement pst = conn.prepareStatement(SQL_ADD_PURCHASE)) {
-
-            //(id_book, id_customer, sellDate)
-            int index = 1;
-            pst.setInt(index++, purchase.getBook().getId());
-            pst.setInt(index++, purchase.getCustomer().getId());
-
-            pst.setTimestamp(index, Timestamp.from(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(SQL_ADD_PURCHASE);
+            bindPurchase(pst, purchase);
 
             int rowsAffected = pst.executeUpdate();
 
             if (rowsAffected == 1) {
+                purchase.setId(generatedId(pst));
                 rvSucceeded = true;
             }
         } catch (SQLException e) {
-            System.out.println("Failed to execute adding book.");
+            System.out.println("Failed to execute adding purchase.");
             e.printStackTrace();
         }
         return rvSucceeded;
@@ -258,23 +669,14 @@ public class BookShopDAODBImpl implements BookShopDAO {
      */
     @Override
     public List<Purchase> getPurchases() {
-        purchases.clear();
+        List<Purchase> purchases = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + DATABASE_FILE);
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(SQL_LIST_PURCHASES)) {
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare(SQL_LIST_PURCHASES).executeQuery()) {
 
+            PurchaseRowMapper mapper = new PurchaseRowMapper(rs);
             while (rs.next()) {
-                Purchase purchase = new Purchase();
-                Book book = new Book();
-                Customer customer = new Customer();
-                purchase.setBook(book);
-                purchase.setCustomer(customer);
-                customer.setName(rs.getString("name"));
-                customer.setFemale(rs.getInt("female") == 1);
-                book.setTitle(rs.getString("title"));
-                book.setPrice(rs.getInt("price"));
-                purchases.add(purchase);
+                purchases.add(mapper.map(rs, null));
             }
         } catch (SQLException e) {
             System.out.println("Failed to execute listing customers.");
@@ -283,4 +685,636 @@ public class BookShopDAODBImpl implements BookShopDAO {
         return purchases;
     }
 
+    /**
+     * Visszaadja a tárolt {@link Purchase} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        Function<Purchase, Comparable<?>> key = KeysetPaging.sortKey(KeysetPaging.PURCHASE_SORT_KEYS, request);
+        List<Purchase> rows = new ArrayList<>();
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(SQL_PAGE_PURCHASES);
+            pst.setInt(1, request.getAfterId());
+            pst.setInt(2, request.getLimit() + 1);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                PurchaseRowMapper mapper = new PurchaseRowMapper(rs);
+                while (rs.next()) {
+                    rows.add(mapper.map(rs, null));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute listing purchases page.");
+            e.printStackTrace();
+        }
+        return KeysetPaging.toPage(rows, request, key, Purchase::getId);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        return querySince(SQL_PURCHASES_SINCE, watermark, PurchaseRowMapper::new);
+    }
+
+    /**
+     * Egyszerre több {@link Purchase}-et ad hozzá az adattárhoz, egy tranzakcióban.
+     *
+     * @param purchases A tárolandó {@link Purchase}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> purchases) {
+        return addAll(purchases, SQL_ADD_PURCHASE_OR_IGNORE, new StatementBinder<Purchase>() {
+            @Override
+            public boolean isValid(Purchase purchase) {
+                return purchase.getBook() != null && purchase.getCustomer() != null;
+            }
+
+            @Override
+            public void bind(PreparedStatement pst, Purchase purchase) throws SQLException {
+                bindPurchase(pst, purchase);
+            }
+
+            @Override
+            public BatchResult.Outcome skipped(PooledConnection conn, Purchase purchase) throws SQLException {
+                return isStored(conn, purchase) ? BatchResult.Outcome.DUPLICATE : BatchResult.Outcome.INVALID;
+            }
+        });
+    }
+
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        if (purchase.getBook() == null || purchase.getCustomer() == null) {
+            return false;
+        }
+
+        boolean rvSucceeded = false;
+
+        Lock lock = stockLocks.get(purchase.getBook().getId());
+        lock.lock();
+        try (PooledConnection conn = pool.borrow()) {
+            // a készlet csökkentése és a vásárlás egy tranzakcióban történik,
+            // sikertelen eladásnál a pool visszagörgeti a tranzakciót
+            conn.getConnection().setAutoCommit(false);
+
+            if (sell(conn, purchase) == BatchResult.Outcome.INSERTED) {
+                conn.getConnection().commit();
+                rvSucceeded = true;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute selling book.");
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+        return rvSucceeded;
+    }
+
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> purchases) {
+        BatchResult result = new BatchResult(purchases.size());
+
+        // A könyvenkénti zárakat itt nem használjuk: az egész batch egy írási
+        // tranzakció, amit az SQLite amúgy is sorosít, a feltételes UPDATE
+        // pedig zár nélkül is kizárja a túladást
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().setAutoCommit(false);
+
+            int index = 0;
+            for (Purchase purchase : purchases) {
+                result.set(index++, sell(conn, purchase));
+            }
+
+            conn.getConnection().commit();
+        } catch (SQLException e) {
+            System.out.println("Failed to execute selling books.");
+            e.printStackTrace();
+            result.failAll();
+        }
+        return result;
+    }
+
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        String key;
+        String label;
+        String join;
+        switch (grouping) {
+            case BOOK:
+                key = "b.id";
+                label = "b.title";
+                join = SQL_JOIN_BOOK;
+                break;
+            case CATEGORY:
+                key = "b.category";
+                label = "b.category";
+                join = SQL_JOIN_BOOK;
+                break;
+            case CUSTOMER:
+                key = "c.id";
+                label = "c.name";
+                join = SQL_JOIN_CUSTOMER;
+                break;
+            default:
+                // a sellDate a nap kezdete (epoch millis), így napra
+                // csoportosításhoz nem kell dátumfüggvény
+                key = "p.sellDate";
+                label = "p.sellDate";
+                join = "";
+                break;
+        }
+
+        // a napokat a nap kezdetével tároljuk, így a sellDate indexe használható
+        Conditions where = new Conditions();
+        if (grouping == SalesGrouping.DAY) {
+            where.add("p.sellDate IS NOT NULL");
+        }
+        where.add("p.sellDate >= ?", from == null ? null : startOfDay(from));
+        where.add("p.sellDate < ?", to == null ? null : startOfDay(to.plusDays(1)));
+
+        StringBuilder sql = new StringBuilder(String.format(SQL_SALES, key, label, join));
+        if (!where.conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where.conditions));
+        }
+        sql.append(String.format(SQL_SALES_ORDER, key));
+        if (topN > 0) {
+            sql.append(" LIMIT ?");
+        }
+
+        List<SalesRow> rows = new ArrayList<>();
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(sql.toString());
+            int index = 1;
+            for (Object param : where.params) {
+                pst.setObject(index++, param);
+            }
+            if (topN > 0) {
+                pst.setInt(index, topN);
+            }
+
+            try (ResultSet rs = pst.executeQuery()) {
+                int keyColumn = RowMapper.findColumn(rs, "sales_key");
+                int labelColumn = RowMapper.findColumn(rs, "sales_label");
+                int countColumn = RowMapper.findColumn(rs, "sales_count");
+                int revenueColumn = RowMapper.findColumn(rs, "sales_revenue");
+                while (rs.next()) {
+                    if (grouping == SalesGrouping.DAY) {
+                        String day = Instant.ofEpochMilli(rs.getLong(keyColumn))
+                                .atZone(ZoneId.systemDefault()).toLocalDate().toString();
+                        rows.add(new SalesRow(day, day, rs.getLong(countColumn), rs.getLong(revenueColumn)));
+                    } else {
+                        rows.add(new SalesRow(rs.getString(keyColumn), rs.getString(labelColumn),
+                                rs.getLong(countColumn), rs.getLong(revenueColumn)));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute sales report.");
+            e.printStackTrace();
+        }
+        return rows;
+    }
+
+    private static long startOfDay(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        return forEach(SQL_LIST_CUSTOMERS, CustomerRowMapper::new,
+                reuseBean ? new Customer() : null, action);
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        return forEach(SQL_LIST_BOOKS, BookRowMapper::new,
+                reuseBean ? new Book() : null, action);
+    }
+
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        return forEach(SQL_LIST_PURCHASES, PurchaseRowMapper::new,
+                reuseBean ? new Purchase() : null, action);
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return stream(SQL_LIST_CUSTOMERS, CustomerRowMapper::new);
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return stream(SQL_LIST_BOOKS, BookRowMapper::new);
+    }
+
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        return stream(SQL_LIST_PURCHASES, PurchaseRowMapper::new);
+    }
+
+    /**
+     * Végigmegy a lekérdezés sorain egy csak elõre haladó {@link ResultSet}-tel,
+     * és minden sorra meghívja a mûveletet. Ha a reused nem null, minden sort
+     * abba olvas be, így a bejárás memóriaigénye nem függ a sorok számától.
+     */
+    private <T> boolean forEach(String sql, RowMapper.Factory<T> mappers, T reused, Consumer<? super T> action) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(sql);
+            pst.setFetchSize(STREAM_FETCH_SIZE);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                RowMapper<T> mapper = mappers.create(rs);
+                while (rs.next()) {
+                    action.accept(mapper.map(rs, reused));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Failed to execute scanning rows.");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * A lekérdezés sorait lusta stream-ként adja vissza. A kapcsolatot és a
+     * {@link ResultSet}-et a stream lezárásakor adjuk vissza.
+     */
+    private <T> Stream<T> stream(String sql, RowMapper.Factory<T> mappers) {
+        final PooledConnection conn;
+        final ResultSet rs;
+        final RowMapper<T> mapper;
+
+        try {
+            conn = pool.borrow();
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to open stream.", e);
+        }
+
+        try {
+            PreparedStatement pst = conn.prepare(sql);
+            pst.setFetchSize(STREAM_FETCH_SIZE);
+            rs = pst.executeQuery();
+            mapper = mappers.create(rs);
+        } catch (SQLException e) {
+            conn.close();
+            throw new DataAccessException("Failed to open stream.", e);
+        }
+
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rs, null));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Failed to read next row.", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                System.out.println("Failed to close result set.");
+                e.printStackTrace();
+            } finally {
+                conn.close();
+            }
+        });
+    }
+
+    /**
+     * Egy tranzakcióban, {@link #batchChunkSize} méretû batch-ekben felveszi
+     * az elemeket. Adatelérési hiba esetén az egész tranzakció visszagörgetésre
+     * kerül (ezt a pool a kapcsolat visszaadásakor elvégzi).
+     */
+    private <T> BatchResult addAll(Collection<T> items, String sql, StatementBinder<T> binder) {
+        BatchResult result = new BatchResult(items.size());
+
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().setAutoCommit(false);
+            PreparedStatement pst = conn.prepare(sql);
+
+            // a batch-be került sorok indexe a bemenetben
+            int[] chunkRows = new int[batchChunkSize];
+            List<T> chunkItems = new ArrayList<>(batchChunkSize);
+            int chunkLength = 0;
+            int index = 0;
+
+            for (T item : items) {
+                if (!binder.isValid(item)) {
+                    result.set(index++, BatchResult.Outcome.INVALID);
+                    continue;
+                }
+
+                binder.bind(pst, item);
+                pst.addBatch();
+                chunkItems.add(item);
+                chunkRows[chunkLength++] = index++;
+
+                if (chunkLength == batchChunkSize) {
+                    executeChunk(conn, pst, chunkRows, chunkItems, binder, result);
+                    chunkItems.clear();
+                    chunkLength = 0;
+                }
+            }
+
+            if (chunkLength > 0) {
+                executeChunk(conn, pst, chunkRows, chunkItems, binder, result);
+            }
+
+            conn.getConnection().commit();
+        } catch (SQLException e) {
+            System.out.println("Failed to execute batch insert.");
+            e.printStackTrace();
+            result.failAll();
+        }
+        return result;
+    }
+
+    /**
+     * Egy eladás a hívó által nyitott tranzakción belül: nem létezõ könyvre
+     * vagy vásárlóra INVALID, egyébként levesz egy példányt a készletrõl,
+     * majd rögzíti a vásárlást. Ha a vásárlás már létezik, a
+     * példányt visszateszi, így a tranzakció többi eladása megmaradhat.
+     */
+    private BatchResult.Outcome sell(PooledConnection conn, Purchase purchase) throws SQLException {
+        if (purchase.getBook() == null || purchase.getCustomer() == null || !isStored(conn, purchase)) {
+            return BatchResult.Outcome.INVALID;
+        }
+
+        PreparedStatement take = conn.prepare(SQL_TAKE_FROM_STOCK);
+        take.setInt(1, purchase.getBook().getId());
+        if (take.executeUpdate() == 0) {
+            return BatchResult.Outcome.OUT_OF_STOCK;
+        }
+
+        PreparedStatement insert = conn.prepare(SQL_ADD_PURCHASE_OR_IGNORE);
+        bindPurchase(insert, purchase);
+        if (insert.executeUpdate() == 0) {
+            PreparedStatement giveBack = conn.prepare(SQL_RETURN_TO_STOCK);
+            giveBack.setInt(1, purchase.getBook().getId());
+            giveBack.executeUpdate();
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        purchase.setId(generatedId(insert));
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    /**
+     * Lefuttat egy keresést: a lista lekérdezéshez hozzáfûzi a feltételeket,
+     * a rendezést és a limitet, majd beállítja a paramétereket.
+     */
+    private <T> List<T> find(String listSql, Conditions where, String sortKey, boolean descending, int limit,
+                             RowMapper.Factory<T> mappers) {
+        StringBuilder sql = new StringBuilder(listSql);
+        if (!where.conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where.conditions));
+        }
+        sql.append(String.format(SQL_FIND_ORDER, sortKey, descending ? "DESC" : "ASC"));
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+        }
+
+        List<T> rows = new ArrayList<>();
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(sql.toString());
+            int index = 1;
+            for (Object param : where.params) {
+                pst.setObject(index++, param);
+            }
+            if (limit > 0) {
+                pst.setInt(index, limit);
+            }
+
+            try (ResultSet rs = pst.executeQuery()) {
+                RowMapper<T> mapper = mappers.create(rs);
+                while (rs.next()) {
+                    rows.add(mapper.map(rs, null));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute search.");
+            e.printStackTrace();
+        }
+        return rows;
+    }
+
+    private <T> List<T> querySince(String sql, int watermark, RowMapper.Factory<T> mappers) {
+        List<T> rows = new ArrayList<>();
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(sql);
+            pst.setInt(1, watermark);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                RowMapper<T> mapper = mappers.create(rs);
+                while (rs.next()) {
+                    rows.add(mapper.map(rs, null));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute listing changes.");
+            e.printStackTrace();
+        }
+        return rows;
+    }
+
+    private <T> T queryById(String sql, int id, RowMapper.Factory<T> mappers) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst = conn.prepare(sql);
+            pst.setInt(1, id);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? mappers.create(rs).map(rs, null) : null;
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute querying by id.");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Lekérdezi egy tábla egy lapját. Az elsõ lapnál csak rendezünk, a
+     * továbbiaknál a (kulcs, id) pár alapján folytatjuk az elõzõ lap után.
+     * A lap méreténél eggyel több sort kérünk, ebbõl tudjuk, hogy van-e
+     * következõ lap.
+     */
+    private <T> Page<T> queryPage(String listSql, Map<String, Function<T, Comparable<?>>> keys,
+                                  PageRequest request, RowMapper.Factory<T> mappers, ToIntFunction<T> id) {
+        // a kulcsot csak ellenõrzés után illesztjük be az SQL-be
+        Function<T, Comparable<?>> key = KeysetPaging.sortKey(keys, request);
+        List<T> rows = new ArrayList<>();
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pst;
+            int index = 1;
+
+            if (request.isSortedById()) {
+                pst = conn.prepare(String.format(SQL_PAGE_BY_ID, listSql));
+                pst.setInt(index++, request.getAfterId());
+            } else if (request.isFirst()) {
+                pst = conn.prepare(String.format(SQL_PAGE_FIRST, request.getSortKey(), listSql));
+            } else {
+                pst = conn.prepare(String.format(SQL_PAGE_AFTER, request.getSortKey(), listSql));
+                pst.setObject(index++, request.getAfterValue());
+                pst.setInt(index++, request.getAfterId());
+            }
+            pst.setInt(index, request.getLimit() + 1);
+
+            try (ResultSet rs = pst.executeQuery()) {
+                RowMapper<T> mapper = mappers.create(rs);
+                while (rs.next()) {
+                    rows.add(mapper.map(rs, null));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Failed to execute listing page.");
+            e.printStackTrace();
+        }
+        return KeysetPaging.toPage(rows, request, key, id);
+    }
+
+    /**
+     * Visszaadja az utolsó INSERT által kiosztott (AUTOINCREMENT) id-t.
+     */
+    private static int generatedId(PreparedStatement pst) throws SQLException {
+        try (ResultSet keys = pst.getGeneratedKeys()) {
+            return keys.next() ? keys.getInt(1) : 0;
+        }
+    }
+
+    private static <T> void executeChunk(PooledConnection conn, PreparedStatement pst, int[] chunkRows,
+                                         List<T> chunkItems, StatementBinder<T> binder,
+                                         BatchResult result) throws SQLException {
+        int[] rowsAffected = pst.executeBatch();
+
+        for (int i = 0; i < chunkItems.size(); i++) {
+            result.set(chunkRows[i], rowsAffected[i] > 0
+                    ? BatchResult.Outcome.INSERTED
+                    : binder.skipped(conn, chunkItems.get(i)));
+        }
+    }
+
+    /**
+     * @return True, ha a vásárlás könyve és vásárlója is szerepel az adatbázisban.
+     */
+    private static boolean isStored(PooledConnection conn, Purchase purchase) throws SQLException {
+        PreparedStatement pst = conn.prepare(SQL_PURCHASE_REFS);
+        pst.setInt(1, purchase.getBook().getId());
+        pst.setInt(2, purchase.getCustomer().getId());
+        try (ResultSet rs = pst.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    private static void bindCustomer(PreparedStatement pst, Customer customer) throws SQLException {
+        // Az egyes parametéreket sorban kell megadni, pozíció alapján, ami
+        // 1-tõl indul
+        // Célszerû egy indexet inkrementálni, mivel ha az egyik paraméter
+        // kiesik, akkor nem kell az utána következõeket újra számozni...
+        int index = 1;
+        pst.setString(index++, customer.getName());
+        pst.setInt(index++, customer.getAge());
+        pst.setInt(index++, customer.isFemale() ? 1 : 0);
+        pst.setInt(index++, customer.isRented() ? 1 : 0);
+        pst.setInt(index++, customer.isStudent() ? 1 : 0);
+        pst.setInt(index++, customer.isGrantee() ? 1 : 0);
+        pst.setString(index, customer.getQualification());
+    }
+
+    private static void bindBook(PreparedStatement pst, Book book) throws SQLException {
+        int index = 1;
+        pst.setString(index++, book.getAuthor());
+        pst.setString(index++, book.getTitle());
+        pst.setInt(index++, book.getYear());
+        pst.setString(index++, book.getCategory());
+        pst.setInt(index++, book.getPrice());
+        pst.setInt(index++, book.getPiece());
+        pst.setBoolean(index, book.isAncient());
+    }
+
+    private static void bindPurchase(PreparedStatement pst, Purchase purchase) throws SQLException {
+        //(id_book, id_customer, sellDate, price)
+        // Ha a hívó nem adta meg, az eladás napja a mai nap, az ára a könyv
+        // jelenlegi ára; ezeket a bean-be is visszaírjuk
+        if (purchase.getSellDate() == null) {
+            purchase.setSellDate(LocalDate.now());
+        }
+        if (!purchase.isPriceSet()) {
+            purchase.setPrice(purchase.getBook().getPrice());
+        }
+
+        int index = 1;
+        pst.setInt(index++, purchase.getBook().getId());
+        pst.setInt(index++, purchase.getCustomer().getId());
+
+        pst.setTimestamp(index++, Timestamp.from(purchase.getSellDate().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        pst.setInt(index, purchase.getPrice());
+    }
+
+    /**
+     * Egy keresés WHERE feltételei és a hozzájuk tartozó paraméterek. A null
+     * értékû (meg nem adott) feltételek kimaradnak.
+     */
+    private static class Conditions {
+        final List<String> conditions = new ArrayList<>();
+        final List<Object> params = new ArrayList<>();
+
+        void add(String condition) {
+            conditions.add(condition);
+        }
+
+        void add(String condition, Object value) {
+            if (value != null) {
+                conditions.add(condition);
+                // a logikai értékeket 0/1-ként tároljuk
+                params.add(value instanceof Boolean ? ((Boolean) value ? 1 : 0) : value);
+            }
+        }
+
+        /**
+         * Kis-nagybetû független részszöveg keresés: a LIKE helyettesítõ
+         * karaktereit escape-eljük. A LIKE csak az ASCII betûkre kis-nagybetû
+         * független, ezért az oszlopot a Java {@link SqlFunctions#UNICODE_LOWER}
+         * függvénnyel, a keresett szöveget itt kisbetûsítjük.
+         */
+        void like(String column, String text) {
+            if (text != null) {
+                String escaped = text.toLowerCase(Locale.ROOT)
+                        .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+                add(SqlFunctions.UNICODE_LOWER + "(" + column + ") LIKE ? ESCAPE '\\'", "%" + escaped + "%");
+            }
+        }
+    }
+
+    /**
+     * Egy elem ellenõrzése és paramétereinek beállítása tömeges felvételnél.
+     */
+    private interface StatementBinder<T> {
+        boolean isValid(T item);
+
+        void bind(PreparedStatement pst, T item) throws SQLException;
+
+        /**
+         * Egy érvényes, de be nem szúrt (0 sort érintõ) sor kimenetele.
+         */
+        default BatchResult.Outcome skipped(PooledConnection conn, T item) throws SQLException {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+    }
+
 }
@@ -4,8 +4,20 @@ import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Ez az osztály az adatelérést szolgálja. Mivel nincs mögötte tényleges
@@ -20,6 +32,27 @@ public class BookShopDAOMemImpl implements BookShopDAO {
     List<Book> books = new ArrayList<Book>();
     List<Purchase> purchases = new ArrayList<Purchase>();
 
+    // Hash indexek a listák mellett (a listák õrzik a felvétel sorrendjét):
+    // az egyediség ellenõrzése, az id szerinti keresés és a tagság
+    // ellenõrzése így konstans idejû, nem kell a listát végigolvasni
+    private Map<String, Customer> customersByName = new HashMap<>();
+    private Map<Integer, Customer> customersById = new HashMap<>();
+    private Map<String, Book> booksByTitle = new HashMap<>();
+    private Map<Integer, Book> booksById = new HashMap<>();
+
+    // A már rögzített (könyv, vásárló) párok (lásd InMemorySales.purchaseKey): az
+    // adatbázishoz hasonlóan egy vásárló egy könyvet csak egyszer vehet meg
+    private Set<Long> purchasedPairs = new HashSet<>();
+
+    // Keresési indexek (findBooks, findCustomers): egyenlõségre hash map,
+    // intervallumra rendezett map, kulcsonként az elemek listájával
+    private Map<String, List<Book>> booksByCategory = new HashMap<>();
+    private NavigableMap<Integer, List<Book>> booksByYear = new TreeMap<>();
+    private NavigableMap<Integer, List<Book>> booksByPrice = new TreeMap<>();
+    private Map<String, List<Customer>> customersByQualification = new HashMap<>();
+    private NavigableMap<Integer, List<Customer>> customersByAge = new TreeMap<>();
+    private BookSearchIndex bookSearch = new BookSearchIndex();
+
     /**
      * Hozzáad egy {@link Customer}-t az adattárhoz.
      *
@@ -40,8 +73,7 @@ public class BookShopDAOMemImpl implements BookShopDAO {
 
         // eltároljuk
         boolean isStored = customers.add(customer);
-
-        System.out.println("Ügyfelek:" + customers.toString());
+        indexCustomer(customer);
 
         return isStored;
     }
@@ -54,16 +86,14 @@ public class BookShopDAOMemImpl implements BookShopDAO {
      * @return True, ha a név egyedi, false egyébként.
      */
     private boolean checkCustomerNameUnique(Customer newCustomer) {
-        boolean rvIsValid = true;
-
-        for (Customer customer : customers) {
-            if (customer.getName().equals(newCustomer.getName())) {
-                rvIsValid = false;
-                break;
-            }
-        }
+        return !customersByName.containsKey(newCustomer.getName());
+    }
 
-        return rvIsValid;
+    /**
+     * @return True, ha pontosan ez a {@link Customer} példány van tárolva.
+     */
+    private boolean isStored(Customer customer) {
+        return customer != null && customersById.get(customer.getId()) == customer;
     }
 
     /**
@@ -76,6 +106,91 @@ public class BookShopDAOMemImpl implements BookShopDAO {
         return customers;
     }
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Customer}-t.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Customer}, vagy null, ha nincs ilyen.
+     */
+    @Override
+    public Customer getCustomer(int id) {
+        return customersById.get(id);
+    }
+
+    /**
+     * Visszaadja a tárolt {@link Customer} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        return KeysetPaging.page(customers, request, KeysetPaging.CUSTOMER_SORT_KEYS, Customer::getId);
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        // az id számláló csak nõ, így a lista id szerint rendezett
+        return KeysetPaging.since(customers, watermark, Customer::getId);
+    }
+
+    /**
+     * A jelölteket az indexek közül a legszûkebbel választja ki, a többi
+     * feltételt csak ezeken ellenõrzi, a rendezést és limitet kupaccal végzi.
+     */
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        Comparator<Customer> order = KeysetPaging.order(
+                KeysetPaging.sortKey(KeysetPaging.CUSTOMER_SORT_KEYS, query.getSortKey()), Customer::getId);
+
+        Collection<Customer> candidates = customers;
+        if (query.getQualification() != null) {
+            candidates = narrow(candidates,
+                    customersByQualification.getOrDefault(query.getQualification(), Collections.emptyList()));
+        }
+        candidates = narrow(candidates, customersByAge, query.getMinAge(), query.getMaxAge());
+
+        return KeysetPaging.top(candidates, query::matches,
+                query.isDescending() ? order.reversed() : order, query.getLimit());
+    }
+
+    private void indexCustomer(Customer customer) {
+        customersByName.put(customer.getName(), customer);
+        customersById.put(customer.getId(), customer);
+        if (customer.getQualification() != null) {
+            customersByQualification.computeIfAbsent(customer.getQualification(), k -> new ArrayList<>()).add(customer);
+        }
+        customersByAge.computeIfAbsent(customer.getAge(), k -> new ArrayList<>()).add(customer);
+    }
+
+    /**
+     * Egyszerre több {@link Customer}-t ad hozzá az adattárhoz.
+     *
+     * @param newCustomers A tárolandó {@link Customer}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addCustomers(Collection<Customer> newCustomers) {
+        BatchResult result = new BatchResult(newCustomers.size());
+        int index = 0;
+
+        for (Customer customer : newCustomers) {
+            if (customer.getName() == null) {
+                result.set(index++, BatchResult.Outcome.INVALID);
+            } else if (!checkCustomerNameUnique(customer)) {
+                result.set(index++, BatchResult.Outcome.DUPLICATE);
+            } else {
+                id++;
+                customer.setId(id);
+                customers.add(customer);
+                indexCustomer(customer);
+                result.set(index++, BatchResult.Outcome.INSERTED);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Hozzáad egy {@link Book}-ot az adattárhoz.
      *
@@ -94,8 +209,7 @@ public class BookShopDAOMemImpl implements BookShopDAO {
         book.setId(id);
 
         boolean isStored = books.add(book);
-
-        System.out.println("Könyvek:" + books.toString());
+        indexBook(book);
 
         return isStored;
     }
@@ -108,16 +222,14 @@ public class BookShopDAOMemImpl implements BookShopDAO {
      * @return True, ha a cím egyedi, false egyébként.
      */
     private boolean checkBookTitleUnique(Book newBook){
-        boolean rvIsValid = true;
-
-        for (Book book : books) {
-            if (book.getTitle().equals(newBook.getTitle())) {
-                rvIsValid = false;
-                break;
-            }
-        }
+        return !booksByTitle.containsKey(newBook.getTitle());
+    }
 
-        return rvIsValid;
+    /**
+     * @return True, ha pontosan ez a {@link Book} példány van tárolva.
+     */
+    private boolean isStored(Book book) {
+        return book != null && booksById.get(book.getId()) == book;
     }
 
     /**
@@ -129,9 +241,139 @@ public class BookShopDAOMemImpl implements BookShopDAO {
         return books;
     }
 
+    /**
+     * Visszaadja az adott azonosítójú {@link Book}-ot.
+     *
+     * @param id A keresett azonosító.
+     * @return A {@link Book}, vagy null, ha nincs ilyen.
+     */
+    @Override
+    public Book getBook(int id) {
+        return booksById.get(id);
+    }
+
+    /**
+     * Visszaadja a tárolt {@link Book} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        return KeysetPaging.page(books, request, KeysetPaging.BOOK_SORT_KEYS, Book::getId);
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        // az id számláló csak nõ, így a lista id szerint rendezett
+        return KeysetPaging.since(books, watermark, Book::getId);
+    }
+
+    /**
+     * A jelölteket az indexek közül a legszûkebbel választja ki, a többi
+     * feltételt csak ezeken ellenõrzi, a rendezést és limitet kupaccal végzi.
+     */
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        Comparator<Book> order = KeysetPaging.order(
+                KeysetPaging.sortKey(KeysetPaging.BOOK_SORT_KEYS, query.getSortKey()), Book::getId);
+
+        Collection<Book> candidates = books;
+        if (query.getCategory() != null) {
+            candidates = narrow(candidates, booksByCategory.getOrDefault(query.getCategory(), Collections.emptyList()));
+        }
+        candidates = narrow(candidates, booksByYear, query.getMinYear(), query.getMaxYear());
+        candidates = narrow(candidates, booksByPrice, query.getMinPrice(), query.getMaxPrice());
+
+        return KeysetPaging.top(candidates, query::matches,
+                query.isDescending() ? order.reversed() : order, query.getLimit());
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return bookSearch.search(query, limit);
+    }
+
+    private void indexBook(Book book) {
+        booksByTitle.put(book.getTitle(), book);
+        booksById.put(book.getId(), book);
+        booksByCategory.computeIfAbsent(book.getCategory(), k -> new ArrayList<>()).add(book);
+        booksByYear.computeIfAbsent(book.getYear(), k -> new ArrayList<>()).add(book);
+        booksByPrice.computeIfAbsent(book.getPrice(), k -> new ArrayList<>()).add(book);
+        bookSearch.add(book);
+    }
+
+    /**
+     * A két jelölthalmaz közül a kisebbet adja vissza.
+     */
+    private static <T> Collection<T> narrow(Collection<T> current, Collection<T> indexed) {
+        return indexed.size() < current.size() ? indexed : current;
+    }
+
+    /**
+     * Az intervallum index alapján szûkíti a jelölteket, ha az kevesebb
+     * elemet ad. Az elemeket csak akkor gyûjti össze, ha tényleg szûkít.
+     */
+    private static <T> Collection<T> narrow(Collection<T> current, NavigableMap<Integer, List<T>> index,
+                                            Integer min, Integer max) {
+        if (min == null && max == null) {
+            return current;
+        }
+
+        NavigableMap<Integer, List<T>> range = index;
+        if (min != null) {
+            range = range.tailMap(min, true);
+        }
+        if (max != null) {
+            range = range.headMap(max, true);
+        }
+
+        int size = 0;
+        for (List<T> items : range.values()) {
+            size += items.size();
+            if (size >= current.size()) {
+                return current;
+            }
+        }
+
+        List<T> candidates = new ArrayList<>(size);
+        for (List<T> items : range.values()) {
+            candidates.addAll(items);
+        }
+        return candidates;
+    }
+
+    /**
+     * Egyszerre több {@link Book}-ot ad hozzá az adattárhoz.
+     *
+     * @param newBooks A tárolandó {@link Book}-ok.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addBooks(Collection<Book> newBooks) {
+        BatchResult result = new BatchResult(newBooks.size());
+        int index = 0;
+
+        for (Book book : newBooks) {
+            if (book.getAuthor() == null || book.getTitle() == null || book.getCategory() == null) {
+                result.set(index++, BatchResult.Outcome.INVALID);
+            } else if (!checkBookTitleUnique(book)) {
+                result.set(index++, BatchResult.Outcome.DUPLICATE);
+            } else {
+                id++;
+                book.setId(id);
+                books.add(book);
+                indexBook(book);
+                result.set(index++, BatchResult.Outcome.INSERTED);
+            }
+        }
+
+        return result;
+    }
+
     public boolean addPurchase(Purchase purchase){
-        if (!customers.contains(purchase.getCustomer()) ||
-                !books.contains(purchase.getBook())) {
+        if (!isStored(purchase.getCustomer()) || !isStored(purchase.getBook())
+                || !purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
             return false;
         }
 
@@ -140,11 +382,10 @@ public class BookShopDAOMemImpl implements BookShopDAO {
 
         // az adattároló id-t oszt az objektumnak
         purchase.setId(id);
+        InMemorySales.recordSale(purchase);
 
         boolean isStored = purchases.add(purchase);
 
-        System.out.println("Vásárlások:" + purchases.toString());
-
         return isStored;
     }
 
@@ -152,4 +393,139 @@ public class BookShopDAOMemImpl implements BookShopDAO {
         return purchases;
     }
 
+    /**
+     * Visszaadja a tárolt {@link Purchase} példányok egy lapját (keyset lapozás).
+     *
+     * @param request A kért lap.
+     * @return A lap, benne a következõ lap lekérdezésével.
+     */
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        return KeysetPaging.page(purchases, request, KeysetPaging.PURCHASE_SORT_KEYS, Purchase::getId);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        // az id számláló csak nõ, így a lista id szerint rendezett
+        return KeysetPaging.since(purchases, watermark, Purchase::getId);
+    }
+
+    /**
+     * Egyszerre több {@link Purchase}-et ad hozzá az adattárhoz.
+     *
+     * @param newPurchases A tárolandó {@link Purchase}-ek.
+     * @return Soronként a felvétel kimenetele, a bemenet sorrendjében.
+     */
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> newPurchases) {
+        BatchResult result = new BatchResult(newPurchases.size());
+        int index = 0;
+
+        for (Purchase purchase : newPurchases) {
+            if (!isStored(purchase.getCustomer()) || !isStored(purchase.getBook())) {
+                result.set(index++, BatchResult.Outcome.INVALID);
+            } else if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+                result.set(index++, BatchResult.Outcome.DUPLICATE);
+            } else {
+                id++;
+                purchase.setId(id);
+                InMemorySales.recordSale(purchase);
+                purchases.add(purchase);
+                result.set(index++, BatchResult.Outcome.INSERTED);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Elad egy könyvet: csökkenti a tárolt könyv készletét és rögzíti a
+     * vásárlást. A többi metódushoz hasonlóan nem szálbiztos.
+     *
+     * @param purchase A rögzítendõ {@link Purchase}.
+     * @return Igaz, ha az eladás megtörtént, hamis, ha nincs készleten vagy érvénytelen.
+     */
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        return sell(purchase) == BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> newPurchases) {
+        BatchResult result = new BatchResult(newPurchases.size());
+        int index = 0;
+
+        for (Purchase purchase : newPurchases) {
+            result.set(index++, sell(purchase));
+        }
+
+        return result;
+    }
+
+    private BatchResult.Outcome sell(Purchase purchase) {
+        if (!isStored(purchase.getCustomer()) || !isStored(purchase.getBook())) {
+            return BatchResult.Outcome.INVALID;
+        }
+
+        Book book = purchase.getBook();
+        if (book.getPiece() <= 0) {
+            return BatchResult.Outcome.OUT_OF_STOCK;
+        }
+        if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        book.setPiece(book.getPiece() - 1);
+
+        id++;
+        purchase.setId(id);
+        InMemorySales.recordSale(purchase);
+        purchases.add(purchase);
+
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        return InMemorySales.aggregate(purchases, grouping, from, to, topN);
+    }
+
+    /*
+     * A bejáró metódusoknál a reuseBean-nek nincs szerepe, hiszen a
+     * példányok már a memóriában vannak, azokat adjuk tovább.
+     */
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        customers.forEach(action);
+        return true;
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        books.forEach(action);
+        return true;
+    }
+
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        purchases.forEach(action);
+        return true;
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return customers.stream();
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return books.stream();
+    }
+
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        return purchases.stream();
+    }
+
 }
@@ -0,0 +1,20 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.function.Supplier;
+
+/**
+ * Olyan adattár, amely a tömeges betöltést gyorsabban tudja végezni, ha
+ * tudja, hogy az mikor kezdõdik és ér véget (pl. a másodlagos indexeket
+ * csak a végén, egyben építi fel).
+ */
+public interface BulkLoadable {
+
+    /**
+     * Lefuttatja a betöltést. A betöltés alatt a többi lekérdezés (pl. a
+     * teljes szöveges keresés) még nem feltétlenül látja az új sorokat.
+     *
+     * @param load A betöltés, amely az adattár tömeges felvételeit hívja.
+     * @return A betöltés eredménye.
+     */
+    <T> T bulkLoad(Supplier<T> load);
+}
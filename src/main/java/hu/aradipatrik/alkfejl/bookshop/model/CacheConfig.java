@@ -0,0 +1,64 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CachingBookShopDAO} beállításai.
+ * <p>
+ * A {@link #fromSystemProperties()} a következõ rendszer tulajdonságokat olvassa:
+ * </p>
+ * <ul>
+ * <li>{@code bookshop.cache.enabled} - bekapcsolja a cache-t, alapértelmezés: false</li>
+ * <li>{@code bookshop.cache.maxSize} - táblánként legfeljebb ennyi bejegyzés, alapértelmezés: 10000</li>
+ * <li>{@code bookshop.cache.ttl} - egy bejegyzés élettartama (ms), alapértelmezés: 60000</li>
+ * </ul>
+ */
+public class CacheConfig {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private boolean enabled = false;
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    public static CacheConfig fromSystemProperties() {
+        CacheConfig config = new CacheConfig();
+        config.setEnabled(Boolean.getBoolean("bookshop.cache.enabled"));
+        config.setMaxSize(Integer.getInteger("bookshop.cache.maxSize", config.getMaxSize()));
+        config.setTtlMillis(Long.getLong("bookshop.cache.ttl", config.getTtlMillis()));
+        return config;
+    }
+
+    /**
+     * Ha a cache be van kapcsolva, becsomagolja vele a DAO-t, egyébként
+     * változatlanul visszaadja.
+     */
+    public BookShopDAO apply(BookShopDAO dao) {
+        return enabled ? new CachingBookShopDAO(dao, maxSize, ttlMillis) : dao;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+}
@@ -0,0 +1,56 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+/**
+ * Egy cache találati statisztikája egy adott pillanatban.
+ */
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return A méret- vagy idõkorlát miatt kidobott bejegyzések száma.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return A cache-ben lévõ bejegyzések száma.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return A találatok aránya az összes kéréshez képest (0, ha még nem volt kérés).
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats [" +
+                "hits=" + hits + ", misses=" + misses +
+                ", evictions=" + evictions + ", size=" + size + "]";
+    }
+}
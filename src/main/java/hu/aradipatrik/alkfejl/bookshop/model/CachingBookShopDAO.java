@@ -0,0 +1,305 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Egy másik {@link BookShopDAO} elé tehetõ cache. A {@link Book} és
+ * {@link Customer} példányokat id szerint, méret- és idõkorlátosan tartja a
+ * memóriában, így a gyakori listázások és id szerinti lekérdezések nem
+ * mennek le minden alkalommal az adattárig.
+ * <p>
+ * Az írások (write-through) elõbb az adattárba kerülnek, majd siker esetén a
+ * cache-be. Más folyamat által végzett írásokat a cache csak a bejegyzések
+ * lejárta után lát. A vásárlásokat, lapokat és stream-eket nem cache-eli,
+ * eladáskor pedig az érintett könyvet eldobja a cache-bõl.
+ * </p>
+ */
+public class CachingBookShopDAO implements BookShopDAO, BulkLoadable {
+
+    private final BookShopDAO delegate;
+    private final EntityCache<Book> bookCache;
+    private final EntityCache<Customer> customerCache;
+
+    /**
+     * @param delegate  A tényleges adattár.
+     * @param maxSize   Táblánként legfeljebb ennyi bejegyzést tartunk.
+     * @param ttlMillis Egy bejegyzés ennyi ideig érvényes a betöltése után.
+     */
+    public CachingBookShopDAO(BookShopDAO delegate, int maxSize, long ttlMillis) {
+        this.delegate = delegate;
+        this.bookCache = new EntityCache<>(maxSize, ttlMillis, Book::getId);
+        this.customerCache = new EntityCache<>(maxSize, ttlMillis, Customer::getId);
+    }
+
+    /**
+     * @return A {@link Book} cache statisztikája.
+     */
+    public CacheStats getBookCacheStats() {
+        return bookCache.stats();
+    }
+
+    /**
+     * @return A {@link Customer} cache statisztikája.
+     */
+    public CacheStats getCustomerCacheStats() {
+        return customerCache.stats();
+    }
+
+    @Override
+    public boolean addCustomer(Customer customer) {
+        boolean isStored = delegate.addCustomer(customer);
+        if (isStored) {
+            cacheAdded(customerCache, customer, customer.getId());
+        }
+        return isStored;
+    }
+
+    @Override
+    public List<Customer> getCustomers() {
+        List<Customer> customers = customerCache.getAll();
+        if (customers == null) {
+            customers = delegate.getCustomers();
+            customerCache.putAll(customers);
+        }
+        return customers;
+    }
+
+    @Override
+    public Customer getCustomer(int id) {
+        Customer customer = customerCache.get(id);
+        if (customer == null) {
+            customer = delegate.getCustomer(id);
+            if (customer != null) {
+                customerCache.put(customer);
+            }
+        }
+        return customer;
+    }
+
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        Page<Customer> page = delegate.getCustomers(request);
+        page.getItems().forEach(customerCache::put);
+        return page;
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        List<Customer> customers = delegate.getCustomersSince(watermark);
+        customers.forEach(customerCache::put);
+        return customers;
+    }
+
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        List<Customer> customers = delegate.findCustomers(query);
+        customers.forEach(customerCache::put);
+        return customers;
+    }
+
+    @Override
+    public BatchResult addCustomers(Collection<Customer> customers) {
+        BatchResult result = delegate.addCustomers(customers);
+        int index = 0;
+        for (Customer customer : customers) {
+            if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                cacheAdded(customerCache, customer, customer.getId());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        boolean isStored = delegate.addBook(book);
+        if (isStored) {
+            cacheAdded(bookCache, book, book.getId());
+        }
+        return isStored;
+    }
+
+    @Override
+    public List<Book> getBooks() {
+        List<Book> books = bookCache.getAll();
+        if (books == null) {
+            books = delegate.getBooks();
+            bookCache.putAll(books);
+        }
+        return books;
+    }
+
+    @Override
+    public Book getBook(int id) {
+        Book book = bookCache.get(id);
+        if (book == null) {
+            book = delegate.getBook(id);
+            if (book != null) {
+                bookCache.put(book);
+            }
+        }
+        return book;
+    }
+
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        Page<Book> page = delegate.getBooks(request);
+        page.getItems().forEach(bookCache::put);
+        return page;
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        List<Book> books = delegate.getBooksSince(watermark);
+        books.forEach(bookCache::put);
+        return books;
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        List<Book> books = delegate.findBooks(query);
+        books.forEach(bookCache::put);
+        return books;
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        List<Book> books = delegate.searchBooks(query, limit);
+        books.forEach(bookCache::put);
+        return books;
+    }
+
+    @Override
+    public BatchResult addBooks(Collection<Book> books) {
+        BatchResult result = delegate.addBooks(books);
+        int index = 0;
+        for (Book book : books) {
+            if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                cacheAdded(bookCache, book, book.getId());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean addPurchase(Purchase purchase) {
+        return delegate.addPurchase(purchase);
+    }
+
+    @Override
+    public List<Purchase> getPurchases() {
+        return delegate.getPurchases();
+    }
+
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        return delegate.getPurchases(request);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        return delegate.getPurchasesSince(watermark);
+    }
+
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> purchases) {
+        return delegate.addPurchases(purchases);
+    }
+
+    /**
+     * Az eladás után a könyv készlete megváltozott, ezért a cache-elt
+     * példányt eldobjuk (sikertelen eladásnál is, mert az is jelezheti,
+     * hogy a cache-elt készlet elavult).
+     */
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        try {
+            return delegate.sellBook(purchase);
+        } finally {
+            if (purchase.getBook() != null) {
+                bookCache.invalidate(purchase.getBook().getId());
+            }
+        }
+    }
+
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> purchases) {
+        try {
+            return delegate.sellBooks(purchases);
+        } finally {
+            for (Purchase purchase : purchases) {
+                if (purchase.getBook() != null) {
+                    bookCache.invalidate(purchase.getBook().getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        return delegate.getSales(grouping, from, to, topN);
+    }
+
+    /**
+     * Ha a tényleges adattár támogatja, az végzi a tömeges betöltést. A
+     * betöltött sorok a szokásos módon (write-through) kerülnek a cache-be.
+     */
+    @Override
+    public <T> T bulkLoad(Supplier<T> load) {
+        if (delegate instanceof BulkLoadable) {
+            return ((BulkLoadable) delegate).bulkLoad(load);
+        }
+        return load.get();
+    }
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        return delegate.forEachCustomer(action, reuseBean);
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        return delegate.forEachBook(action, reuseBean);
+    }
+
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        return delegate.forEachPurchase(action, reuseBean);
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return delegate.streamCustomers();
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return delegate.streamBooks();
+    }
+
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        return delegate.streamPurchases();
+    }
+
+    /**
+     * Egy sikeresen felvett elemet a cache-be tesz. Ha az adattár nem adott
+     * neki id-t (pl. tömeges felvételnél), a cache nem tudja követni a
+     * változást, ezért a teljes listát legközelebb újra betölti.
+     */
+    private static <V> void cacheAdded(EntityCache<V> cache, V value, int id) {
+        if (id > 0) {
+            cache.put(value);
+        } else {
+            cache.markIncomplete();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A könyvesbolt adatainak (vásárlók, könyvek, vásárlások) tömör, bináris,
+ * verziózott fájlformátuma, és az export / import egy {@link BookShopDAO}
+ * és a fájl között. A fájl olvasása: {@link CatalogFileReader}.
+ * <p>
+ * A fájl felépítése, sorban:
+ * </p>
+ * <ul>
+ * <li>fejléc ({@value #HEADER_SIZE} bájt): azonosító, verzió, jelzõk, a
+ * rekordok és szövegek száma, és a szakaszok kezdõpozíciói,</li>
+ * <li>a vásárlók, könyvek és vásárlások fix hosszú rekordjai,</li>
+ * <li>a szövegtábla indexe: szövegenként a kezdõpozíció (plusz egy záró
+ * pozíció, így a hossz a következõ pozícióból adódik),</li>
+ * <li>a szövegek UTF-8 bájtjai. Minden szöveg egyszer szerepel, a rekordok
+ * a sorszámával (-1, ha null) hivatkoznak rá.</li>
+ * </ul>
+ * <p>
+ * A vásárlás rekordok a könyvre és a vásárlóra a fájlbeli id-jukkal
+ * hivatkoznak. A számok big-endian sorrendûek, a dátum epoch nap.
+ * </p>
+ */
+public final class CatalogFile {
+
+    static final int MAGIC = 0x42534346; // "BSCF"
+    static final int VERSION = 1;
+
+    // Jelzõk: az adott szakasz rekordjai id szerint növekvõ sorrendûek
+    static final int CUSTOMERS_SORTED = 1;
+    static final int BOOKS_SORTED = 2;
+
+    static final int HEADER_SIZE = 80;
+
+    // id, név, kor, végzettség, jelzõk (+ 3 bájt igazítás)
+    static final int CUSTOMER_SIZE = 20;
+    // id, szerzõ, cím, kategória, év, ár, készlet, jelzõk (+ 3 bájt igazítás)
+    static final int BOOK_SIZE = 32;
+    // id, könyv id, vásárló id, eladás napja, ár
+    static final int PURCHASE_SIZE = 20;
+
+    static final int NO_STRING = -1;
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
+    private CatalogFile() {
+    }
+
+    /**
+     * Kiírja az adattár teljes tartalmát a fájlba (egy már létezõt felülír).
+     * A sorokat az adattár bejárásával (újrahasznált bean-nel) olvassa, csak
+     * a szövegtábla van a memóriában.
+     *
+     * @param dao  A kiírandó adattár.
+     * @param path A célfájl.
+     * @throws IOException Ha a fájl nem írható, vagy az adattár olvasása nem sikerült.
+     */
+    public static void export(BookShopDAO dao, Path path) throws IOException {
+        try (Writer writer = new Writer(path)) {
+            writer.startSection(Writer.CUSTOMERS);
+            check(dao.forEachCustomer(writer::write, true), "customers");
+            writer.startSection(Writer.BOOKS);
+            check(dao.forEachBook(writer::write, true), "books");
+            writer.startSection(Writer.PURCHASES);
+            check(dao.forEachPurchase(writer::write, true), "purchases");
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            // a bejáró lambdákból így jut ki az írási hiba
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Betölti a fájl tartalmát az adattárba, tömeges felvételekkel. A
+     * vásárlók és könyvek új id-t kapnak, a már létezõ (azonos nevû / címû)
+     * elemek kimaradnak. A vásárlások az adattárban azonos nevû vásárlóra
+     * és azonos címû könyvre hivatkoznak, a készletet nem módosítják.
+     *
+     * @param path A betöltendõ fájl.
+     * @param dao  A céladattár.
+     * @return Az egyes szakaszok felvételének összesített eredménye
+     * (vásárlók, könyvek, vásárlások), soronként a fájl sorrendjében.
+     * @throws IOException Ha a fájl nem olvasható vagy hibás.
+     */
+    public static BatchResult[] importInto(Path path, BookShopDAO dao) throws IOException {
+        CatalogFileReader reader = CatalogFileReader.open(path);
+
+        BatchResult customers = new BatchResult(reader.getCustomerCount());
+        List<Customer> customerChunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        for (int i = 0; i < reader.getCustomerCount(); i++) {
+            customerChunk.add(reader.getCustomer(i));
+            if (customerChunk.size() == IMPORT_CHUNK_SIZE || i == reader.getCustomerCount() - 1) {
+                copyOutcomes(dao.addCustomers(customerChunk), customers, i + 1 - customerChunk.size());
+                customerChunk.clear();
+            }
+        }
+
+        BatchResult books = new BatchResult(reader.getBookCount());
+        List<Book> bookChunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        for (int i = 0; i < reader.getBookCount(); i++) {
+            bookChunk.add(reader.getBook(i));
+            if (bookChunk.size() == IMPORT_CHUNK_SIZE || i == reader.getBookCount() - 1) {
+                copyOutcomes(dao.addBooks(bookChunk), books, i + 1 - bookChunk.size());
+                bookChunk.clear();
+            }
+        }
+
+        BatchResult purchases = new BatchResult(reader.getPurchaseCount());
+        if (reader.getPurchaseCount() > 0) {
+            importPurchases(reader, dao, purchases);
+        }
+
+        return new BatchResult[]{customers, books, purchases};
+    }
+
+    /**
+     * A vásárlásokhoz a tárolt példányok kellenek (a memóriabeli adattár
+     * ezeket fogadja el), ezeket név, illetve cím szerint keressük meg.
+     */
+    private static void importPurchases(CatalogFileReader reader, BookShopDAO dao, BatchResult result)
+            throws IOException {
+        Map<String, Customer> customersByName = new HashMap<>();
+        Map<String, Book> booksByTitle = new HashMap<>();
+        check(dao.forEachCustomer(customer -> customersByName.put(customer.getName(), customer), false),
+                "customers");
+        check(dao.forEachBook(book -> booksByTitle.put(book.getTitle(), book), false), "books");
+
+        List<Purchase> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        List<Integer> chunkRows = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        for (int i = 0; i < reader.getPurchaseCount(); i++) {
+            Purchase purchase = reader.getPurchase(i, customersByName, booksByTitle);
+            if (purchase == null) {
+                result.set(i, BatchResult.Outcome.INVALID);
+            } else {
+                chunk.add(purchase);
+                chunkRows.add(i);
+            }
+
+            if (chunk.size() == IMPORT_CHUNK_SIZE || (i == reader.getPurchaseCount() - 1 && !chunk.isEmpty())) {
+                BatchResult chunkResult = dao.addPurchases(chunk);
+                for (int j = 0; j < chunkRows.size(); j++) {
+                    result.set(chunkRows.get(j), chunkResult.getOutcome(j));
+                }
+                chunk.clear();
+                chunkRows.clear();
+            }
+        }
+    }
+
+    private static void copyOutcomes(BatchResult chunk, BatchResult result, int offset) {
+        for (int i = 0; i < chunk.size(); i++) {
+            result.set(offset + i, chunk.getOutcome(i));
+        }
+    }
+
+    private static void check(boolean succeeded, String table) throws IOException {
+        if (!succeeded) {
+            throw new IOException("Failed to read " + table + " from the data store");
+        }
+    }
+
+    /**
+     * A fájl szekvenciális írója. A rekordokat egy pufferen keresztül írja a
+     * {@link FileChannel}-re, a szövegtáblát a végén, a fejlécet legutoljára.
+     */
+    private static final class Writer implements AutoCloseable {
+
+        static final int CUSTOMERS = 0;
+        static final int BOOKS = 1;
+        static final int PURCHASES = 2;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final long[] offsets = new long[3];
+        private final int[] counts = new int[3];
+        private final int[] lastIds = new int[3];
+        private int flags = CUSTOMERS_SORTED | BOOKS_SORTED;
+        private int section = -1;
+        private long position = HEADER_SIZE;
+
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        private int[] stringOffsets = new int[1024];
+
+        Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        void startSection(int section) {
+            this.section = section;
+            offsets[section] = position;
+            lastIds[section] = Integer.MIN_VALUE;
+        }
+
+        void write(Customer customer) {
+            reserve(CUSTOMER_SIZE);
+            buffer.putInt(customer.getId());
+            buffer.putInt(string(customer.getName()));
+            buffer.putInt(customer.getAge());
+            buffer.putInt(string(customer.getQualification()));
+            buffer.put((byte) ((customer.isFemale() ? 1 : 0)
+                    | (customer.isRented() ? 2 : 0)
+                    | (customer.isStudent() ? 4 : 0)
+                    | (customer.isGrantee() ? 8 : 0)));
+            buffer.putShort((short) 0).put((byte) 0);
+            written(customer.getId(), CUSTOMER_SIZE, CUSTOMERS_SORTED);
+        }
+
+        void write(Book book) {
+            reserve(BOOK_SIZE);
+            buffer.putInt(book.getId());
+            buffer.putInt(string(book.getAuthor()));
+            buffer.putInt(string(book.getTitle()));
+            buffer.putInt(string(book.getCategory()));
+            buffer.putInt(book.getYear());
+            buffer.putInt(book.getPrice());
+            buffer.putInt(book.getPiece());
+            buffer.put((byte) (book.isAncient() ? 1 : 0));
+            buffer.putShort((short) 0).put((byte) 0);
+            written(book.getId(), BOOK_SIZE, BOOKS_SORTED);
+        }
+
+        void write(Purchase purchase) {
+            reserve(PURCHASE_SIZE);
+            buffer.putInt(purchase.getId());
+            buffer.putInt(purchase.getBook() != null ? purchase.getBook().getId() : 0);
+            buffer.putInt(purchase.getCustomer() != null ? purchase.getCustomer().getId() : 0);
+            buffer.putInt(purchase.getSellDate() != null ? (int) purchase.getSellDate().toEpochDay() : NO_DATE);
+            buffer.putInt(purchase.getPrice());
+            written(purchase.getId(), PURCHASE_SIZE, 0);
+        }
+
+        private void written(int id, int size, int sortedFlag) {
+            if (id <= lastIds[section]) {
+                flags &= ~sortedFlag;
+            }
+            lastIds[section] = id;
+            counts[section]++;
+            position += size;
+        }
+
+        private int string(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = stringIds.size();
+                if (id + 1 >= stringOffsets.length) {
+                    stringOffsets = Arrays.copyOf(stringOffsets, stringOffsets.length * 2);
+                }
+                stringOffsets[id] = stringData.size();
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if ((long) stringData.size() + bytes.length > Integer.MAX_VALUE) {
+                    throw new UncheckedIOException(new IOException("Catalog string table too large"));
+                }
+                stringData.write(bytes, 0, bytes.length);
+                stringIds.put(value, id);
+            }
+            return id;
+        }
+
+        /**
+         * A szövegtáblát és a fejlécet írja ki, majd lemezre kényszeríti a fájlt.
+         */
+        void finish() throws IOException {
+            int stringCount = stringIds.size();
+            stringOffsets[stringCount] = stringData.size();
+
+            long stringIndexOffset = position;
+            for (int i = 0; i <= stringCount; i++) {
+                reserve(4);
+                buffer.putInt(stringOffsets[i]);
+            }
+            position += 4L * (stringCount + 1);
+            flush();
+
+            long stringDataOffset = position;
+            write(ByteBuffer.wrap(stringData.toByteArray()));
+            position += stringData.size();
+
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Catalog file too large to map: " + position + " bytes");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(flags);
+            header.putInt(counts[CUSTOMERS]);
+            header.putInt(counts[BOOKS]);
+            header.putInt(counts[PURCHASES]);
+            header.putInt(stringCount);
+            header.putInt(0);
+            header.putLong(offsets[CUSTOMERS]);
+            header.putLong(offsets[BOOKS]);
+            header.putLong(offsets[PURCHASES]);
+            header.putLong(stringIndexOffset);
+            header.putLong(stringDataOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        private void reserve(int size) {
+            if (buffer.remaining() < size) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
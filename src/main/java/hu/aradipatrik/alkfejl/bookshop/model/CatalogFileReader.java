@@ -0,0 +1,320 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Egy {@link CatalogFile} formátumú fájl olvasója. A fájlt a memóriába
+ * képezi ({@link MappedByteBuffer}), a rekordokat közvetlenül onnan,
+ * másolás nélkül olvassa: csak a szövegeket kell dekódolni.
+ * <p>
+ * Az olvasás szálbiztos (csak abszolút pozíciós olvasásokat végez). A
+ * rekordokat a fájlbeli sorszámuk (index) alapján lehet lekérni, illetve
+ * bejárni, a {@link BookShopDAO} bejáróihoz hasonlóan.
+ * </p>
+ */
+public final class CatalogFileReader {
+
+    private final Path path;
+    private final ByteBuffer data;
+
+    private final int flags;
+    private final int customerCount;
+    private final int bookCount;
+    private final int purchaseCount;
+    private final int stringCount;
+    private final int customersOffset;
+    private final int booksOffset;
+    private final int purchasesOffset;
+    private final int stringIndexOffset;
+    private final int stringDataOffset;
+
+    private CatalogFileReader(Path path, ByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data;
+
+        if (data.getInt(0) != CatalogFile.MAGIC) {
+            throw new IOException("Not a catalog file: " + path);
+        }
+        if (data.getInt(4) != CatalogFile.VERSION) {
+            throw new IOException("Unsupported catalog file version " + data.getInt(4) + ": " + path);
+        }
+        flags = data.getInt(8);
+        customerCount = data.getInt(12);
+        bookCount = data.getInt(16);
+        purchaseCount = data.getInt(20);
+        stringCount = data.getInt(24);
+        customersOffset = section(data.getLong(32), customerCount, CatalogFile.CUSTOMER_SIZE);
+        booksOffset = section(data.getLong(40), bookCount, CatalogFile.BOOK_SIZE);
+        purchasesOffset = section(data.getLong(48), purchaseCount, CatalogFile.PURCHASE_SIZE);
+        stringIndexOffset = section(data.getLong(56), stringCount + 1, 4);
+        stringDataOffset = section(data.getLong(64), data.getInt(stringIndexOffset + 4 * stringCount), 1);
+    }
+
+    /**
+     * Megnyitja és a memóriába képezi a fájlt.
+     *
+     * @throws IOException Ha a fájl nem olvasható, nem ilyen formátumú, vagy sérült.
+     */
+    public static CatalogFileReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < CatalogFile.HEADER_SIZE) {
+                throw new IOException("Not a catalog file: " + path);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Catalog file too large to map: " + path);
+            }
+            // a leképezés a csatorna lezárása után is érvényes marad
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new CatalogFileReader(path, data);
+        }
+    }
+
+    private int section(long offset, int count, int recordSize) throws IOException {
+        if (count < 0 || offset < CatalogFile.HEADER_SIZE
+                || offset + (long) count * recordSize > data.capacity()) {
+            throw new IOException("Corrupt catalog file: " + path);
+        }
+        return (int) offset;
+    }
+
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public int getPurchaseCount() {
+        return purchaseCount;
+    }
+
+    /**
+     * @param index A rekord sorszáma a fájlban (0-tól).
+     * @return A rekordból felépített új {@link Customer}.
+     */
+    public Customer getCustomer(int index) {
+        return readCustomer(index, new Customer());
+    }
+
+    public Book getBook(int index) {
+        return readBook(index, new Book());
+    }
+
+    /**
+     * A vásárlás könyve és vásárlója a fájlban tárolt példány (egy új bean)
+     * lesz, vagy null, ha a fájlban nincs ilyen id-jú.
+     */
+    public Purchase getPurchase(int index) {
+        Purchase purchase = readPurchase(index, new Purchase());
+        int bookIndex = findBook(purchaseBookId(index));
+        int customerIndex = findCustomer(purchaseCustomerId(index));
+        purchase.setBook(bookIndex >= 0 ? getBook(bookIndex) : null);
+        purchase.setCustomer(customerIndex >= 0 ? getCustomer(customerIndex) : null);
+        return purchase;
+    }
+
+    /**
+     * Egy másik adattárba való betöltéshez: a vásárlás könyvét és vásárlóját
+     * a fájlbeli cím, illetve név alapján a megadott példányokból választja.
+     *
+     * @return A vásárlás, vagy null, ha a könyv vagy a vásárló nem található.
+     */
+    Purchase getPurchase(int index, Map<String, Customer> customersByName, Map<String, Book> booksByTitle) {
+        int bookIndex = findBook(purchaseBookId(index));
+        int customerIndex = findCustomer(purchaseCustomerId(index));
+        if (bookIndex < 0 || customerIndex < 0) {
+            return null;
+        }
+
+        Book book = booksByTitle.get(string(bookRecord(bookIndex) + 8));
+        Customer customer = customersByName.get(string(customerRecord(customerIndex) + 4));
+        if (book == null || customer == null) {
+            return null;
+        }
+
+        Purchase purchase = readPurchase(index, new Purchase());
+        purchase.setBook(book);
+        purchase.setCustomer(customer);
+        return purchase;
+    }
+
+    /**
+     * Végigmegy a vásárlókon. Ha a reuseBean igaz, minden rekordot ugyanabba
+     * a példányba olvas, így a bejárás nem foglal soronként új objektumot.
+     */
+    public void forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        Customer reused = reuseBean ? new Customer() : null;
+        for (int i = 0; i < customerCount; i++) {
+            action.accept(readCustomer(i, reused != null ? reused : new Customer()));
+        }
+    }
+
+    public void forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        Book reused = reuseBean ? new Book() : null;
+        for (int i = 0; i < bookCount; i++) {
+            action.accept(readBook(i, reused != null ? reused : new Book()));
+        }
+    }
+
+    /**
+     * A vásárlásoknál a könyv és a vásárló csak az id-t tartalmazza.
+     */
+    public void forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        Purchase reused = reuseBean ? newPurchase() : null;
+        for (int i = 0; i < purchaseCount; i++) {
+            Purchase purchase = reused != null ? reused : newPurchase();
+            readPurchase(i, purchase);
+            purchase.getBook().setId(purchaseBookId(i));
+            purchase.getCustomer().setId(purchaseCustomerId(i));
+            action.accept(purchase);
+        }
+    }
+
+    /**
+     * @return A vásárló rekord sorszáma a fájlban, vagy -1, ha nincs ilyen id-jú.
+     */
+    public int findCustomer(int id) {
+        return find(id, customersOffset, customerCount, CatalogFile.CUSTOMER_SIZE,
+                (flags & CatalogFile.CUSTOMERS_SORTED) != 0);
+    }
+
+    public int findBook(int id) {
+        return find(id, booksOffset, bookCount, CatalogFile.BOOK_SIZE,
+                (flags & CatalogFile.BOOKS_SORTED) != 0);
+    }
+
+    /**
+     * Id szerint rendezett szakaszban bináris, egyébként lineáris keresés.
+     */
+    private int find(int id, int offset, int count, int recordSize, boolean sorted) {
+        if (!sorted) {
+            for (int i = 0; i < count; i++) {
+                if (data.getInt(offset + i * recordSize) == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = data.getInt(offset + mid * recordSize);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Customer readCustomer(int index, Customer customer) {
+        int record = customerRecord(index);
+        customer.setId(data.getInt(record));
+        customer.setName(string(record + 4));
+        customer.setAge(data.getInt(record + 8));
+        customer.setQualification(string(record + 12));
+        byte flags = data.get(record + 16);
+        customer.setFemale((flags & 1) != 0);
+        customer.setRented((flags & 2) != 0);
+        customer.setStudent((flags & 4) != 0);
+        customer.setGrantee((flags & 8) != 0);
+        return customer;
+    }
+
+    private Book readBook(int index, Book book) {
+        int record = bookRecord(index);
+        book.setId(data.getInt(record));
+        book.setAuthor(string(record + 4));
+        book.setTitle(string(record + 8));
+        book.setCategory(string(record + 12));
+        book.setYear(data.getInt(record + 16));
+        book.setPrice(data.getInt(record + 20));
+        book.setPiece(data.getInt(record + 24));
+        book.setAncient((data.get(record + 28) & 1) != 0);
+        return book;
+    }
+
+    private Purchase readPurchase(int index, Purchase purchase) {
+        int record = purchaseRecord(index);
+        purchase.setId(data.getInt(record));
+        int day = data.getInt(record + 12);
+        purchase.setSellDate(day != CatalogFile.NO_DATE ? LocalDate.ofEpochDay(day) : null);
+        purchase.setPrice(data.getInt(record + 16));
+        return purchase;
+    }
+
+    private static Purchase newPurchase() {
+        Purchase purchase = new Purchase();
+        purchase.setBook(new Book());
+        purchase.setCustomer(new Customer());
+        return purchase;
+    }
+
+    private int purchaseBookId(int index) {
+        return data.getInt(purchaseRecord(index) + 4);
+    }
+
+    private int purchaseCustomerId(int index) {
+        return data.getInt(purchaseRecord(index) + 8);
+    }
+
+    private int customerRecord(int index) {
+        return customersOffset + checkIndex(index, customerCount) * CatalogFile.CUSTOMER_SIZE;
+    }
+
+    private int bookRecord(int index) {
+        return booksOffset + checkIndex(index, bookCount) * CatalogFile.BOOK_SIZE;
+    }
+
+    private int purchaseRecord(int index) {
+        return purchasesOffset + checkIndex(index, purchaseCount) * CatalogFile.PURCHASE_SIZE;
+    }
+
+    private static int checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", count: " + count);
+        }
+        return index;
+    }
+
+    /**
+     * A megadott pozíción tárolt szöveghivatkozás feloldása.
+     */
+    private String string(int referencePosition) {
+        int id = data.getInt(referencePosition);
+        if (id == CatalogFile.NO_STRING) {
+            return null;
+        }
+        if (id < 0 || id >= stringCount) {
+            throw new DataAccessException("Corrupt catalog file: string " + id + " in " + path, null);
+        }
+
+        int start = data.getInt(stringIndexOffset + 4 * id);
+        int end = data.getInt(stringIndexOffset + 4 * (id + 1));
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = data.duplicate();
+        view.position(stringDataOffset + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,159 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+
+/**
+ * Vásárlókeresés feltételei ({@link BookShopDAO#findCustomers}). Minden
+ * feltétel opcionális, a megadottaknak egyszerre kell teljesülniük.
+ * <p>
+ * Példa: {@code new CustomerQuery().ageBetween(null, 14).sortBy("name").limit(50)}
+ * </p>
+ */
+public class CustomerQuery {
+
+    private String nameContains;
+    private Integer minAge;
+    private Integer maxAge;
+    private Boolean female;
+    private Boolean student;
+    private Boolean rented;
+    private Boolean grantee;
+    private String qualification;
+
+    private String sortKey = PageRequest.SORT_BY_ID;
+    private boolean descending;
+    private int limit;
+
+    /**
+     * A név tartalmazza a szöveget (kis- és nagybetûtõl függetlenül).
+     */
+    public CustomerQuery nameContains(String text) {
+        this.nameContains = text;
+        return this;
+    }
+
+    /**
+     * A kor a megadott zárt intervallumba esik. A null határ nem korlátoz.
+     */
+    public CustomerQuery ageBetween(Integer min, Integer max) {
+        this.minAge = min;
+        this.maxAge = max;
+        return this;
+    }
+
+    public CustomerQuery female(Boolean female) {
+        this.female = female;
+        return this;
+    }
+
+    public CustomerQuery student(Boolean student) {
+        this.student = student;
+        return this;
+    }
+
+    public CustomerQuery rented(Boolean rented) {
+        this.rented = rented;
+        return this;
+    }
+
+    public CustomerQuery grantee(Boolean grantee) {
+        this.grantee = grantee;
+        return this;
+    }
+
+    public CustomerQuery qualification(String qualification) {
+        this.qualification = qualification;
+        return this;
+    }
+
+    /**
+     * @param sortKey A rendezési kulcs, ugyanazok engedélyezettek, mint
+     *                lapozásnál (pl. {@code "name"}, {@code "age"}).
+     */
+    public CustomerQuery sortBy(String sortKey) {
+        this.sortKey = sortKey;
+        return this;
+    }
+
+    public CustomerQuery descending(boolean descending) {
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * @param limit Legfeljebb ennyi találat, 0 esetén nincs korlát.
+     */
+    public CustomerQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public String getNameContains() {
+        return nameContains;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public Boolean getFemale() {
+        return female;
+    }
+
+    public Boolean getStudent() {
+        return student;
+    }
+
+    public Boolean getRented() {
+        return rented;
+    }
+
+    public Boolean getGrantee() {
+        return grantee;
+    }
+
+    public String getQualification() {
+        return qualification;
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Memóriában tárolt vásárlók szûréséhez: megfelel-e a vásárló a feltételeknek.
+     */
+    boolean matches(Customer customer) {
+        return BookQuery.contains(customer.getName(), nameContains)
+                && BookQuery.between(customer.getAge(), minAge, maxAge)
+                && (female == null || female == customer.isFemale())
+                && (student == null || student == customer.isStudent())
+                && (rented == null || rented == customer.isRented())
+                && (grantee == null || grantee == customer.isGrantee())
+                && (qualification == null || qualification.equals(customer.getQualification()));
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerQuery [" +
+                "nameContains=" + nameContains + ", age=" + minAge + ".." + maxAge +
+                ", female=" + female + ", student=" + student + ", rented=" + rented +
+                ", grantee=" + grantee + ", qualification=" + qualification +
+                ", sortKey=" + sortKey + ", descending=" + descending + ", limit=" + limit + "]";
+    }
+}
@@ -0,0 +1,14 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+/**
+ * Adatelérési hiba, amit ott dobunk, ahol a hibát nem tudjuk visszatérési
+ * értékkel jelezni (pl. egy {@link java.util.stream.Stream} bejárása közben).
+ */
+public class DataAccessException extends RuntimeException {
+
+    private static final long serialVersionUID = -4475131244640473226L;
+
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,464 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A könyvek, vásárlók és vásárlások (a könyvvel és a vásárlóval együtt)
+ * exportálása CSV vagy JSON Lines fájlokba, pl. adattárházba töltéshez.
+ * <p>
+ * A sorokat az adattár bejárásával (adatbázisnál cursorral, újrahasznált
+ * bean-nel) olvassa, és pufferelt {@link FileChannel}-re írja, így a
+ * teljes tábla sosem kerül a memóriába. A kimenet opcionálisan gzip
+ * tömörített, és megadott méretû fájlokra bontható: ekkor minden fájl
+ * teljes sorokat (CSV-nél fejlécet is) tartalmaz.
+ * </p>
+ * <p>
+ * A {@link #fromSystemProperties} a következõ rendszer tulajdonságokat olvassa:
+ * </p>
+ * <ul>
+ * <li>{@code bookshop.export.format} - {@code csv} vagy {@code jsonl}, alapértelmezés: csv</li>
+ * <li>{@code bookshop.export.gzip} - gzip tömörítés, alapértelmezés: false</li>
+ * <li>{@code bookshop.export.maxFileBytes} - egy fájl legfeljebb ennyi (tömörítésnél
+ * tömörítetlen) bájt, 0: nincs bontás</li>
+ * </ul>
+ */
+public class DataExporter {
+
+    /**
+     * A kimenet formátuma.
+     */
+    public enum Format {
+        CSV("csv"),
+        JSON_LINES("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, Function<Customer, Object>> CUSTOMER_COLUMNS = new LinkedHashMap<>();
+    private static final Map<String, Function<Book, Object>> BOOK_COLUMNS = new LinkedHashMap<>();
+    private static final Map<String, Function<Purchase, Object>> PURCHASE_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        CUSTOMER_COLUMNS.put("id", Customer::getId);
+        CUSTOMER_COLUMNS.put("name", Customer::getName);
+        CUSTOMER_COLUMNS.put("age", Customer::getAge);
+        CUSTOMER_COLUMNS.put("female", Customer::isFemale);
+        CUSTOMER_COLUMNS.put("rented", Customer::isRented);
+        CUSTOMER_COLUMNS.put("student", Customer::isStudent);
+        CUSTOMER_COLUMNS.put("grantee", Customer::isGrantee);
+        CUSTOMER_COLUMNS.put("qualification", Customer::getQualification);
+
+        BOOK_COLUMNS.put("id", Book::getId);
+        BOOK_COLUMNS.put("author", Book::getAuthor);
+        BOOK_COLUMNS.put("title", Book::getTitle);
+        BOOK_COLUMNS.put("year", Book::getYear);
+        BOOK_COLUMNS.put("category", Book::getCategory);
+        BOOK_COLUMNS.put("price", Book::getPrice);
+        BOOK_COLUMNS.put("piece", Book::getPiece);
+        BOOK_COLUMNS.put("ancient", Book::isAncient);
+
+        PURCHASE_COLUMNS.put("id", Purchase::getId);
+        PURCHASE_COLUMNS.put("sellDate", Purchase::getSellDate);
+        PURCHASE_COLUMNS.put("price", Purchase::getPrice);
+        PURCHASE_COLUMNS.put("bookId", purchase -> purchase.getBook().getId());
+        PURCHASE_COLUMNS.put("bookTitle", purchase -> purchase.getBook().getTitle());
+        PURCHASE_COLUMNS.put("bookCategory", purchase -> purchase.getBook().getCategory());
+        PURCHASE_COLUMNS.put("customerId", purchase -> purchase.getCustomer().getId());
+        PURCHASE_COLUMNS.put("customerName", purchase -> purchase.getCustomer().getName());
+    }
+
+    private final BookShopDAO dao;
+    private Format format = Format.CSV;
+    private boolean gzip = false;
+    private long maxFileBytes = 0;
+
+    public DataExporter(BookShopDAO dao) {
+        this.dao = dao;
+    }
+
+    public static DataExporter fromSystemProperties(BookShopDAO dao) {
+        DataExporter exporter = new DataExporter(dao);
+        String format = System.getProperty("bookshop.export.format", "csv").trim().toLowerCase(Locale.ROOT);
+        exporter.setFormat(format.equals("jsonl") ? Format.JSON_LINES : Format.CSV);
+        exporter.setGzip(Boolean.getBoolean("bookshop.export.gzip"));
+        exporter.setMaxFileBytes(Long.getLong("bookshop.export.maxFileBytes", 0));
+        return exporter;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    /**
+     * @param maxFileBytes Ha pozitív, egy fájl legfeljebb ennyi bájt lesz (kivéve,
+     *                     ha egyetlen sor is nagyobb ennél): a határt átlépõ sor
+     *                     már új fájlba kerül. Tömörítésnél a határ a
+     *                     tömörítetlen adatra vonatkozik, a .gz fájl ennél
+     *                     kisebb. 0: nincs bontás.
+     */
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = Math.max(0, maxFileBytes);
+    }
+
+    /**
+     * A vásárlókat a könyvtár {@code customers.csv} (bontásnál {@code
+     * customers-0001.csv}, ...; tömörítve {@code .gz} végû) fájljaiba írja.
+     *
+     * @return A létrehozott fájlok, sorrendben.
+     * @throws IOException Ha a fájlok nem írhatók, vagy az adattár olvasása nem sikerült.
+     */
+    public List<Path> exportCustomers(Path directory) throws IOException {
+        try (Output<Customer> output = new Output<>(directory, "customers", CUSTOMER_COLUMNS)) {
+            return output.finish(dao.forEachCustomer(output::write, true));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public List<Path> exportBooks(Path directory) throws IOException {
+        try (Output<Book> output = new Output<>(directory, "books", BOOK_COLUMNS)) {
+            return output.finish(dao.forEachBook(output::write, true));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A vásárlásokat az eladás napjával, és a könyv, illetve a vásárló
+     * azonosító adataival együtt írja ki ({@code purchases.*} fájlok).
+     */
+    public List<Path> exportPurchases(Path directory) throws IOException {
+        try (Output<Purchase> output = new Output<>(directory, "purchases", PURCHASE_COLUMNS)) {
+            return output.finish(dao.forEachPurchase(output::write, true));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Mindhárom táblát exportálja.
+     *
+     * @return A létrehozott fájlok.
+     */
+    public List<Path> exportAll(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        files.addAll(exportCustomers(directory));
+        files.addAll(exportBooks(directory));
+        files.addAll(exportPurchases(directory));
+        return files;
+    }
+
+    // Sorok kódolása
+
+    private void encode(StringBuilder line, Map<String, ? extends Function<?, Object>> columns, Object row) {
+        line.setLength(0);
+        if (format == Format.CSV) {
+            boolean first = true;
+            for (Function<?, Object> column : columns.values()) {
+                if (!first) {
+                    line.append(',');
+                }
+                first = false;
+                appendCsv(line, value(column, row));
+            }
+        } else {
+            line.append('{');
+            boolean first = true;
+            for (Map.Entry<String, ? extends Function<?, Object>> column : columns.entrySet()) {
+                if (!first) {
+                    line.append(',');
+                }
+                first = false;
+                appendJsonString(line, column.getKey());
+                line.append(':');
+                appendJson(line, value(column.getValue(), row));
+            }
+            line.append('}');
+        }
+        line.append('\n');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object value(Function<?, Object> column, Object row) {
+        return ((Function<Object, Object>) column).apply(row);
+    }
+
+    private static String header(Map<String, ?> columns) {
+        return String.join(",", columns.keySet()) + "\n";
+    }
+
+    private static void appendCsv(StringBuilder line, Object value) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private static void appendJson(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        } else {
+            appendJsonString(line, value.toString());
+        }
+    }
+
+    private static void appendJsonString(StringBuilder line, String text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    // Kimenet
+
+    /**
+     * Egy tábla kimenete: a sorokat kódolja, és szükség esetén új fájlt kezd.
+     * A fájlok írás közben {@code .part} végûek, és csak lezáráskor kapják
+     * meg a végleges nevüket; hiba esetén a félkész fájlokat törli.
+     */
+    private final class Output<T> implements AutoCloseable {
+        private final Path directory;
+        private final String name;
+        private final Map<String, Function<T, Object>> columns;
+        private final StringBuilder line = new StringBuilder(256);
+        private final List<Path> files = new ArrayList<>();
+        private FileSink sink;
+        private boolean finished;
+
+        Output(Path directory, String name, Map<String, Function<T, Object>> columns) throws IOException {
+            this.directory = directory;
+            this.name = name;
+            this.columns = columns;
+            Files.createDirectories(directory);
+            next();
+        }
+
+        void write(T row) {
+            try {
+                encode(line, columns, row);
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                if (maxFileBytes > 0 && sink.rows > 0 && sink.size() + bytes.length > maxFileBytes) {
+                    sink.close();
+                    next();
+                }
+                sink.write(bytes);
+                sink.rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void next() throws IOException {
+            String suffix = maxFileBytes > 0 ? String.format("-%04d", files.size() + 1) : "";
+            Path file = directory.resolve(name + suffix + "." + format.extension + (gzip ? ".gz" : ""));
+            files.add(file);
+            sink = new FileSink(file, gzip);
+            if (format == Format.CSV) {
+                sink.write(header(columns).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        List<Path> finish(boolean succeeded) throws IOException {
+            if (!succeeded) {
+                throw new IOException("Failed to read " + name + " from the data store");
+            }
+            sink.close();
+            finished = true;
+            return files;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            // hiba: a félkész és a már elkészült fájlok sem használhatók
+            try {
+                sink.close();
+            } catch (IOException e) {
+                // a fájlokat mindenképp töröljük
+            }
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(FileSink.partFile(file));
+            }
+        }
+    }
+
+    /**
+     * Egy kimeneti fájl. Tömörítés nélkül a bájtokat egy pufferen keresztül
+     * közvetlenül a {@link FileChannel}-re írja, tömörítéskor egy gzip
+     * stream-en át.
+     */
+    private static final class FileSink {
+        private final Path file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final OutputStream gzip;
+        private boolean closed;
+        // A fájlba írt tömörítetlen bájtok száma
+        private long written;
+        long rows;
+
+        FileSink(Path file, boolean compress) throws IOException {
+            this.file = file;
+            channel = FileChannel.open(partFile(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            if (compress) {
+                buffer = null;
+                gzip = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            } else {
+                buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                gzip = null;
+            }
+        }
+
+        static Path partFile(Path file) {
+            return file.resolveSibling(file.getFileName() + ".part");
+        }
+
+        void write(byte[] bytes) throws IOException {
+            written += bytes.length;
+            if (gzip != null) {
+                gzip.write(bytes);
+                return;
+            }
+            if (buffer.remaining() < bytes.length) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        /**
+         * @return A fájlba írt tömörítetlen bájtok száma (tömörítés nélkül a
+         * fájl mérete). A tömörítõ a kimenetét késleltetve írja ki, ezért
+         * tömörítésnél a bontás a tömörítetlen méretet nézi.
+         */
+        long size() {
+            return written;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        /**
+         * Kiírja a maradékot, és a fájlt a végleges nevére nevezi át.
+         */
+        void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (gzip != null) {
+                    gzip.close();
+                } else {
+                    flush();
+                }
+            } finally {
+                channel.close();
+            }
+            Files.move(partFile(file), file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
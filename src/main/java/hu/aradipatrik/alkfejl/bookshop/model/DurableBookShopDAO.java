@@ -0,0 +1,566 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Tartós, memóriában tároló adatelérés. Az adatokat egy
+ * {@link BookShopDAOConcurrentMemImpl} tartja, minden írást pedig egy
+ * bináris, csak hozzáfûzhetõ naplóba (write-ahead journal) is rögzít.
+ * <p>
+ * Ha a napló elér egy méretet, a háttérben egy snapshot készül a teljes
+ * állapotról, és az új írások egy új naplóba kerülnek; a snapshot elkészülte
+ * után a régi napló és snapshot törlõdik. Induláskor a legutolsó snapshotot
+ * tölti be, majd visszajátssza az utána írt naplókat. A napló félbeszakadt
+ * utolsó rekordját (pl. áramszünet írás közben) eldobja.
+ * </p>
+ * <p>
+ * Az írások egy zár alatt módosítják a tárolót és kerülnek a naplóba, így a
+ * napló sorrendje megegyezik a módosítások sorrendjével. Az fsync a záron
+ * kívül, csoportosan történik: {@code syncIntervalMillis} = 0 esetén minden
+ * írás megvárja, hogy rekordja lemezre kerüljön (az egyszerre várakozó írások
+ * egy fsync-en osztoznak), egyébként egy háttérszál ennyi idõnként fsync-el,
+ * és az utolsó legfeljebb ennyi idõ alatti írások veszhetnek el. Az olvasások
+ * zár nélkül, közvetlenül a tárolóból mennek.
+ * </p>
+ * <p>
+ * Könyvtár tartalma: {@code snapshot-<generáció>.bin} és
+ * {@code journal-<generáció>.log}; egy snapshot a vele azonos és a késõbbi
+ * generációjú naplókkal együtt adja a teljes állapotot.
+ * </p>
+ */
+public class DurableBookShopDAO implements BookShopDAO, AutoCloseable {
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 0;
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD_BYTES = 64L * 1024 * 1024;
+
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern JOURNAL_FILE = Pattern.compile("journal-(\\d+)\\.log");
+
+    private final Path directory;
+    private final long syncIntervalMillis;
+    private final long snapshotThresholdBytes;
+
+    private final BookShopDAOConcurrentMemImpl store = new BookShopDAOConcurrentMemImpl();
+
+    // Az írások (a tároló módosítása és a naplózás) és a napló cseréje
+    private final Object writeLock = new Object();
+    private Journal journal;
+    private int generation;
+
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    // Snapshot írás és keresõ index építés; ezek másodpercekig is tarthatnak
+    private final ExecutorService background;
+    // Az idõzített fsync külön szálon fut, hogy egy hosszú snapshot alatt se
+    // maradjon el (null, ha minden írás maga vár az fsync-re)
+    private final ScheduledExecutorService syncer;
+
+    public DurableBookShopDAO(Path directory) {
+        this(directory, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_SNAPSHOT_THRESHOLD_BYTES);
+    }
+
+    /**
+     * @param directory              A snapshotok és naplók könyvtára.
+     * @param syncIntervalMillis     0: minden írás megvárja az fsync-et, egyébként ennyi idõnként fsync-elünk.
+     * @param snapshotThresholdBytes Ekkora napló után snapshotot készítünk.
+     * @throws DataAccessException Ha a korábbi állapot nem tölthetõ be.
+     */
+    public DurableBookShopDAO(Path directory, long syncIntervalMillis, long snapshotThresholdBytes) {
+        this.directory = directory;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+
+        try {
+            recover();
+            journal = new Journal(journalPath(generation));
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to recover book shop journal from " + directory, e);
+        }
+
+        background = Executors.newSingleThreadExecutor(daemon("journal-background"));
+        // a keresõ index felépítése nem tartja fel az indulást
+        background.execute(store::indexRestored);
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(daemon("journal-sync"));
+            syncer.scheduleWithFixedDelay(this::syncQuietly,
+                    syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Betölti a legutolsó snapshotot, majd sorban visszajátssza a vele
+     * azonos és késõbbi generációjú naplókat.
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        long records = 0;
+
+        TreeMap<Integer, Path> snapshots = list(SNAPSHOT_FILE);
+        TreeMap<Integer, Path> journals = list(JOURNAL_FILE);
+
+        generation = 0;
+        if (!snapshots.isEmpty()) {
+            generation = snapshots.lastKey();
+            records += Journal.read(snapshots.lastEntry().getValue(), this::apply);
+        }
+        for (Map.Entry<Integer, Path> entry : journals.tailMap(generation, true).entrySet()) {
+            records += Journal.read(entry.getValue(), this::apply);
+            generation = entry.getKey();
+        }
+
+        if (records > 0) {
+            System.out.println("Recovered " + records + " records from " + directory + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    private void apply(byte[] record) throws IOException {
+        JournalRecords.apply(record, store);
+    }
+
+    /**
+     * Snapshotot készít a jelenlegi állapotról, és törli a feleslegessé vált
+     * régebbi snapshotokat és naplókat. Az írások csak a napló cseréjéig és az
+     * állapot lemásolásáig várnak, a snapshot kiírása alatt már nem.
+     *
+     * @throws DataAccessException Ha a snapshot nem írható ki.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            int snapshotGeneration;
+            List<Customer> customers;
+            List<Book> books;
+            int[] pieces;
+            List<Purchase> purchases;
+
+            try {
+                synchronized (writeLock) {
+                    // az új írások már az új naplóba kerülnek
+                    Journal next = new Journal(journalPath(generation + 1));
+                    journal.close();
+                    journal = next;
+                    snapshotGeneration = ++generation;
+
+                    customers = store.getCustomers();
+                    books = store.getBooks();
+                    purchases = store.getPurchases();
+                    // a készlet az egyetlen késõbb változó mezõ
+                    pieces = new int[books.size()];
+                    for (int i = 0; i < pieces.length; i++) {
+                        pieces[i] = books.get(i).getPiece();
+                    }
+                }
+
+                Path temp = directory.resolve(String.format("snapshot-%08d.tmp", snapshotGeneration));
+                Files.deleteIfExists(temp);
+                try (Journal snapshot = new Journal(temp)) {
+                    for (Customer customer : customers) {
+                        snapshot.append(JournalRecords.customer(customer));
+                    }
+                    for (int i = 0; i < pieces.length; i++) {
+                        snapshot.append(JournalRecords.book(books.get(i), pieces[i]));
+                    }
+                    for (Purchase purchase : purchases) {
+                        snapshot.append(JournalRecords.purchase(purchase));
+                    }
+                }
+                Files.move(temp, snapshotPath(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory();
+
+                deleteBefore(SNAPSHOT_FILE, snapshotGeneration);
+                deleteBefore(JOURNAL_FILE, snapshotGeneration);
+            } catch (IOException e) {
+                throw new DataAccessException("Failed to write book shop snapshot to " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Megvárja a futó snapshotot, leállítja a háttérszálakat, majd lemezre
+     * írja és lezárja a naplót.
+     */
+    @Override
+    public void close() {
+        background.shutdown();
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+            if (syncer != null) {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writeLock) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close book shop journal.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public boolean addCustomer(Customer customer) {
+        long position;
+        synchronized (writeLock) {
+            if (!store.addCustomer(customer)) {
+                return false;
+            }
+            position = append(JournalRecords.customer(customer));
+        }
+        return commit(position);
+    }
+
+    @Override
+    public List<Customer> getCustomers() {
+        return store.getCustomers();
+    }
+
+    @Override
+    public Customer getCustomer(int id) {
+        return store.getCustomer(id);
+    }
+
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        return store.getCustomers(request);
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        return store.getCustomersSince(watermark);
+    }
+
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        return store.findCustomers(query);
+    }
+
+    @Override
+    public BatchResult addCustomers(Collection<Customer> customers) {
+        BatchResult result;
+        long position = 0;
+        synchronized (writeLock) {
+            result = store.addCustomers(customers);
+            int index = 0;
+            for (Customer customer : customers) {
+                if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                    position = append(JournalRecords.customer(customer));
+                }
+            }
+        }
+        commit(position);
+        return result;
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        long position;
+        synchronized (writeLock) {
+            if (!store.addBook(book)) {
+                return false;
+            }
+            position = append(JournalRecords.book(book));
+        }
+        return commit(position);
+    }
+
+    @Override
+    public List<Book> getBooks() {
+        return store.getBooks();
+    }
+
+    @Override
+    public Book getBook(int id) {
+        return store.getBook(id);
+    }
+
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        return store.getBooks(request);
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        return store.getBooksSince(watermark);
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        return store.findBooks(query);
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return store.searchBooks(query, limit);
+    }
+
+    @Override
+    public BatchResult addBooks(Collection<Book> books) {
+        BatchResult result;
+        long position = 0;
+        synchronized (writeLock) {
+            result = store.addBooks(books);
+            int index = 0;
+            for (Book book : books) {
+                if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                    position = append(JournalRecords.book(book));
+                }
+            }
+        }
+        commit(position);
+        return result;
+    }
+
+    @Override
+    public boolean addPurchase(Purchase purchase) {
+        long position;
+        synchronized (writeLock) {
+            if (!store.addPurchase(purchase)) {
+                return false;
+            }
+            position = append(JournalRecords.purchase(purchase));
+        }
+        return commit(position);
+    }
+
+    @Override
+    public List<Purchase> getPurchases() {
+        return store.getPurchases();
+    }
+
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        return store.getPurchases(request);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        return store.getPurchasesSince(watermark);
+    }
+
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> purchases) {
+        BatchResult result;
+        long position = 0;
+        synchronized (writeLock) {
+            result = store.addPurchases(purchases);
+            int index = 0;
+            for (Purchase purchase : purchases) {
+                if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                    position = append(JournalRecords.purchase(purchase));
+                }
+            }
+        }
+        commit(position);
+        return result;
+    }
+
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        long position;
+        synchronized (writeLock) {
+            if (!store.sellBook(purchase)) {
+                return false;
+            }
+            position = append(JournalRecords.sale(purchase));
+        }
+        return commit(position);
+    }
+
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> purchases) {
+        BatchResult result;
+        long position = 0;
+        synchronized (writeLock) {
+            result = store.sellBooks(purchases);
+            // a rekord a könyv készletét tárolja: egy könyv több eladásánál
+            // mindegyikbe a batch utáni érték kerül, de visszajátszás után
+            // így is ez marad érvényben
+            int index = 0;
+            for (Purchase purchase : purchases) {
+                if (result.getOutcome(index++) == BatchResult.Outcome.INSERTED) {
+                    position = append(JournalRecords.sale(purchase));
+                }
+            }
+        }
+        commit(position);
+        return result;
+    }
+
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        return store.getSales(grouping, from, to, topN);
+    }
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        return store.forEachCustomer(action, reuseBean);
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        return store.forEachBook(action, reuseBean);
+    }
+
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        return store.forEachPurchase(action, reuseBean);
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return store.streamCustomers();
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return store.streamBooks();
+    }
+
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        return store.streamPurchases();
+    }
+
+    /**
+     * A rekordot a naplóhoz fûzi; csak a writeLock alatt hívható. Ha a
+     * napló elérte a küszöböt, a háttérben snapshotot ütemez.
+     */
+    private long append(byte[] record) {
+        try {
+            long position = journal.append(record);
+            if (position >= snapshotThresholdBytes && snapshotScheduled.compareAndSet(false, true)) {
+                background.execute(() -> {
+                    try {
+                        snapshot();
+                    } catch (DataAccessException e) {
+                        System.out.println("Failed to write book shop snapshot.");
+                        e.printStackTrace();
+                    } finally {
+                        snapshotScheduled.set(false);
+                    }
+                });
+            }
+            return position;
+        } catch (IOException e) {
+            // a tároló már módosult, a hívónak tudnia kell, hogy az írás nem tartós
+            throw new DataAccessException("Failed to append to book shop journal.", e);
+        }
+    }
+
+    /**
+     * Megvárja, hogy a napló a megadott pozícióig lemezre kerüljön (ha
+     * minden írásnál fsync-elünk).
+     */
+    private boolean commit(long position) {
+        if (syncIntervalMillis > 0 || position == 0) {
+            return true;
+        }
+
+        Journal current;
+        synchronized (writeLock) {
+            current = journal;
+        }
+        try {
+            // ha közben naplót cseréltünk, a régit a lezárása már lemezre írta
+            current.sync(position);
+            return true;
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to sync book shop journal.", e);
+        }
+    }
+
+    private void syncQuietly() {
+        Journal current;
+        synchronized (writeLock) {
+            current = journal;
+        }
+        try {
+            current.sync();
+        } catch (IOException e) {
+            System.out.println("Failed to sync book shop journal.");
+            e.printStackTrace();
+        }
+    }
+
+    private Path journalPath(int journalGeneration) {
+        return directory.resolve(String.format("journal-%08d.log", journalGeneration));
+    }
+
+    private Path snapshotPath(int snapshotGeneration) {
+        return directory.resolve(String.format("snapshot-%08d.bin", snapshotGeneration));
+    }
+
+    private TreeMap<Integer, Path> list(Pattern pattern) throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                Matcher matcher = pattern.matcher(entry.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Integer.parseInt(matcher.group(1)), entry);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void deleteBefore(Pattern pattern, int keepFrom) throws IOException {
+        for (Path path : list(pattern).headMap(keepFrom, false).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Az átnevezés tartósságához a könyvtárat is fsync-eljük (ahol a
+     * platform ezt nem támogatja, kihagyjuk).
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // pl. Windows-on könyvtár nem nyitható meg
+        }
+    }
+}
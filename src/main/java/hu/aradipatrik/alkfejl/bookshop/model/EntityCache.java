@@ -0,0 +1,155 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Id alapján kulcsolt, méret- és idõkorlátos (LRU) cache a
+ * {@link CachingBookShopDAO} számára.
+ * <p>
+ * A cache azt is nyilvántartja, hogy a teljes tábla benne van-e: ha a
+ * legutóbbi teljes betöltés óta nem dobott ki bejegyzést és nem járt le, a
+ * teljes lista is kiszolgálható belõle.
+ * </p>
+ *
+ * @param <V> A tárolt bean típusa.
+ */
+class EntityCache<V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final ToIntFunction<V> id;
+
+    // hozzáférési sorrendû map, a legrégebben használt bejegyzés van elöl
+    private final LinkedHashMap<Integer, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private boolean complete = false;
+    private long completeLoadedAt;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    EntityCache(int maxSize, long ttlMillis, ToIntFunction<V> id) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.id = id;
+    }
+
+    /**
+     * @return A bejegyzés, vagy null, ha nincs a cache-ben vagy lejárt.
+     */
+    synchronized V get(int key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry.loadedAt)) {
+            entries.remove(key);
+            evicted();
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * @return A teljes tábla id szerint rendezve, vagy null, ha a cache nem
+     * tartalmazza a teljes táblát.
+     */
+    synchronized List<V> getAll() {
+        if (!complete || isExpired(completeLoadedAt)) {
+            complete = false;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        List<V> values = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        values.sort(Comparator.comparingInt(id));
+        return values;
+    }
+
+    synchronized void put(V value) {
+        entries.put(id.applyAsInt(value), new Entry<>(value, System.currentTimeMillis()));
+        evictOverflow();
+    }
+
+    /**
+     * A teljes tábla betöltése után hívjuk. Ha a tábla belefér a cache-be,
+     * onnantól a teljes lista is kiszolgálható belõle.
+     */
+    synchronized void putAll(Collection<V> values) {
+        long now = System.currentTimeMillis();
+
+        if (values.size() > maxSize) {
+            complete = false;
+            return;
+        }
+
+        entries.clear();
+        for (V value : values) {
+            entries.put(id.applyAsInt(value), new Entry<>(value, now));
+        }
+        complete = true;
+        completeLoadedAt = now;
+    }
+
+    /**
+     * Jelzi, hogy a tábla olyan módon változott, amit a cache nem követett
+     * (pl. id nélkül felvett sorok), így a teljes lista nem szolgálható ki.
+     */
+    synchronized void markIncomplete() {
+        complete = false;
+    }
+
+    synchronized void invalidate(int key) {
+        entries.remove(key);
+        complete = false;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size());
+    }
+
+    private boolean isExpired(long loadedAt) {
+        return System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Integer, Entry<V>>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evicted();
+        }
+    }
+
+    private void evicted() {
+        evictions++;
+        complete = false;
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memóriában tároló DAO implementációk közös eladási segédmetódusai: a
+ * vásárlás alapértékei és az eladási kimutatás ({@link BookShopDAO#getSales}).
+ * Az adatbázisban ugyanezt a GROUP BY lekérdezés végzi.
+ */
+final class InMemorySales {
+
+    private InMemorySales() {
+    }
+
+    /**
+     * Ha a hívó nem adta meg, az eladás napja a mai nap, az ára a könyv
+     * jelenlegi ára (ahogy az adatbázisban is).
+     */
+    static void recordSale(Purchase purchase) {
+        if (purchase.getSellDate() == null) {
+            purchase.setSellDate(LocalDate.now());
+        }
+        if (!purchase.isPriceSet()) {
+            purchase.setPrice(purchase.getBook().getPrice());
+        }
+    }
+
+    /**
+     * @return A vásárlás könyvének és vásárlójának id-ja egy long-ba
+     * csomagolva, az adatbázis {@code UNIQUE (id_book, id_customer)}
+     * megszorításának megfelelõ egyediség ellenõrzéshez.
+     */
+    static long purchaseKey(Purchase purchase) {
+        return purchaseKey(purchase.getBook().getId(), purchase.getCustomer().getId());
+    }
+
+    static long purchaseKey(int bookId, int customerId) {
+        return (long) bookId << 32 | (customerId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Csoportosítja a vásárlásokat, lásd {@link BookShopDAO#getSales}.
+     */
+    static List<SalesRow> aggregate(Iterable<Purchase> purchases, SalesGrouping grouping,
+                                    LocalDate from, LocalDate to, int topN) {
+        // csoport kulcs -> {darabszám, bevétel}, a feliratot külön tároljuk
+        Map<String, long[]> totals = new HashMap<>();
+        Map<String, String> labels = new HashMap<>();
+
+        for (Purchase purchase : purchases) {
+            LocalDate day = purchase.getSellDate();
+            if ((from != null || to != null || grouping == SalesGrouping.DAY) && day == null) {
+                continue;
+            }
+            if ((from != null && day.isBefore(from)) || (to != null && day.isAfter(to))) {
+                continue;
+            }
+
+            String key;
+            String label;
+            switch (grouping) {
+                case BOOK:
+                    key = String.valueOf(purchase.getBook().getId());
+                    label = purchase.getBook().getTitle();
+                    break;
+                case CATEGORY:
+                    key = purchase.getBook().getCategory();
+                    label = key;
+                    break;
+                case CUSTOMER:
+                    key = String.valueOf(purchase.getCustomer().getId());
+                    label = purchase.getCustomer().getName();
+                    break;
+                default:
+                    key = day.toString();
+                    label = key;
+                    break;
+            }
+
+            long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+            total[0]++;
+            total[1] += purchase.getPrice();
+            labels.putIfAbsent(key, label);
+        }
+
+        List<SalesRow> rows = new ArrayList<>(totals.size());
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            rows.add(new SalesRow(entry.getKey(), labels.get(entry.getKey()),
+                    entry.getValue()[0], entry.getValue()[1]));
+        }
+        return top(rows, topN);
+    }
+
+    /**
+     * @return A csoportok bevétel, majd darabszám szerint csökkenõ, végül
+     * felirat szerinti sorrendben, legfeljebb topN darab (0: mind).
+     */
+    static List<SalesRow> top(List<SalesRow> rows, int topN) {
+        Comparator<SalesRow> order = Comparator.comparingLong(SalesRow::getRevenue).reversed()
+                .thenComparing(Comparator.comparingLong(SalesRow::getCount).reversed())
+                .thenComparing(SalesRow::getLabel, Comparator.nullsFirst(Comparator.naturalOrder()));
+        return KeysetPaging.top(rows, row -> true, order, topN);
+    }
+}
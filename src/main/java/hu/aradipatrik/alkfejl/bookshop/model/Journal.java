@@ -0,0 +1,204 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Csak hozzáfûzhetõ, bináris napló fájl. Minden rekord egy hossz, a tartalom
+ * CRC32 ellenõrzõ összege, majd maga a tartalom. A rekordokat egy
+ * pufferbe gyûjti, és csak a {@link #sync} írja ki és fsync-eli õket.
+ * <p>
+ * A {@link #sync} csoportos commitot végez: ha több szál vár ugyanarra az
+ * fsync-re, egyetlen fsync mindegyikük rekordjait lemezre viszi. Beolvasáskor
+ * ({@link #read}) a félbeszakadt vagy sérült utolsó rekordot (pl. írás közbeni
+ * áramszünet) levágja a fájl végérõl.
+ * </p>
+ */
+final class Journal implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    // A fájl logikai vége (a pufferben lévõ rekordokkal együtt), illetve
+    // ameddig már biztosan lemezen van
+    private long appended;
+    private volatile long synced;
+
+    private final Object syncLock = new Object();
+
+    /**
+     * Megnyitja (vagy létrehozza) a naplót, az új rekordok a végére kerülnek.
+     */
+    Journal(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        appended = channel.size();
+        synced = appended;
+        channel.position(appended);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return A napló mérete bájtban, a még ki nem írt rekordokkal együtt.
+     */
+    synchronized long size() {
+        return appended;
+    }
+
+    /**
+     * Hozzáfûz egy rekordot. A rekord csak a {@link #sync} után tartós.
+     *
+     * @return A rekord utáni pozíció, ezt kell a {@link #sync}-nek átadni.
+     */
+    synchronized long append(byte[] record) throws IOException {
+        if (record.length > MAX_RECORD_SIZE) {
+            throw new IOException("Journal record too large: " + record.length);
+        }
+        crc.reset();
+        crc.update(record, 0, record.length);
+
+        if (buffer.remaining() < HEADER_SIZE + record.length) {
+            flushBuffer();
+        }
+        if (buffer.remaining() < HEADER_SIZE + record.length) {
+            // a puffernél nagyobb rekordot közvetlenül írjuk ki
+            ByteBuffer large = ByteBuffer.allocate(HEADER_SIZE + record.length);
+            large.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+            write(large);
+        } else {
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+
+        appended += HEADER_SIZE + record.length;
+        return appended;
+    }
+
+    /**
+     * Lemezre írja (fsync) a naplót legalább a megadott pozícióig. Ha egy
+     * másik szál fsync-je ezt már elvégezte, azonnal visszatér.
+     */
+    void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+
+            long target;
+            synchronized (this) {
+                flushBuffer();
+                target = appended;
+            }
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    /**
+     * Lemezre írja az összes eddig hozzáfûzött rekordot.
+     */
+    void sync() throws IOException {
+        sync(size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * A napló egy rekordját feldolgozó mûvelet.
+     */
+    interface RecordHandler {
+        void accept(byte[] record) throws IOException;
+    }
+
+    /**
+     * Sorban beolvassa a napló rekordjait. Az elsõ hiányos vagy hibás
+     * ellenõrzõ összegû rekordnál megáll, és a fájlt erre a pontra vágja, így
+     * a további írások egy ép rekord után folytatódnak.
+     *
+     * @return A beolvasott rekordok száma.
+     */
+    static long read(Path path, RecordHandler handler) throws IOException {
+        long records = 0;
+        long valid = 0;
+        CRC32 crc = new CRC32();
+
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            while (true) {
+                byte[] record;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    checksum = in.readInt();
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(record, 0, record.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                handler.accept(record);
+                valid += HEADER_SIZE + record.length;
+                records++;
+            }
+        }
+
+        long size = Files.size(path);
+        if (valid < size) {
+            System.out.println("Truncating torn journal record at " + valid + " in " + path
+                    + " (" + (size - valid) + " bytes)");
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(false);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,201 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * A {@link DurableBookShopDAO} napló és snapshot rekordjainak bináris
+ * kódolása. Egy rekord az elem típusa, majd a mezõi, a hivatkozott
+ * könyveket és vásárlókat id-jukkal tároljuk.
+ */
+final class JournalRecords {
+
+    static final byte CUSTOMER = 1;
+    static final byte BOOK = 2;
+    static final byte PURCHASE = 3;
+    // eladás: vásárlás, és a könyv eladás utáni készlete
+    static final byte SALE = 4;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private JournalRecords() {
+    }
+
+    static byte[] customer(Customer customer) {
+        byte[] name = bytes(customer.getName());
+        byte[] qualification = bytes(customer.getQualification());
+
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 + size(name) + 4 + 4 + size(qualification));
+        out.put(CUSTOMER);
+        out.putInt(customer.getId());
+        putString(out, name);
+        out.putInt(customer.getAge());
+        out.put(flag(customer.isFemale()));
+        out.put(flag(customer.isRented()));
+        out.put(flag(customer.isStudent()));
+        out.put(flag(customer.isGrantee()));
+        putString(out, qualification);
+        return out.array();
+    }
+
+    static byte[] book(Book book) {
+        return book(book, book.getPiece());
+    }
+
+    /**
+     * @param pieces A tárolandó készlet (snapshotnál a rögzítés pillanatában érvényes).
+     */
+    static byte[] book(Book book, int pieces) {
+        byte[] author = bytes(book.getAuthor());
+        byte[] title = bytes(book.getTitle());
+        byte[] category = bytes(book.getCategory());
+
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 + size(author) + size(title) + 4 + size(category) + 4 + 4 + 1);
+        out.put(BOOK);
+        out.putInt(book.getId());
+        putString(out, author);
+        putString(out, title);
+        out.putInt(book.getYear());
+        putString(out, category);
+        out.putInt(book.getPrice());
+        out.putInt(pieces);
+        out.put(flag(book.isAncient()));
+        return out.array();
+    }
+
+    static byte[] purchase(Purchase purchase) {
+        return purchase(PURCHASE, purchase);
+    }
+
+    /**
+     * Eladás rekord: a vásárlás mellett a könyv eladás utáni készletét is
+     * tárolja, így a visszajátszás nem függ a készlet korábbi értékétõl.
+     */
+    static byte[] sale(Purchase purchase) {
+        return purchase(SALE, purchase);
+    }
+
+    private static byte[] purchase(byte type, Purchase purchase) {
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 + 4 + 4 + 8 + 4 + (type == SALE ? 4 : 0));
+        out.put(type);
+        out.putInt(purchase.getId());
+        out.putInt(purchase.getBook().getId());
+        out.putInt(purchase.getCustomer().getId());
+        out.putLong(purchase.getSellDate() != null ? purchase.getSellDate().toEpochDay() : NO_DATE);
+        out.putInt(purchase.getPrice());
+        if (type == SALE) {
+            out.putInt(purchase.getBook().getPiece());
+        }
+        return out.array();
+    }
+
+    /**
+     * Visszajátssza a rekordot a tárolón.
+     *
+     * @throws IOException Ha a rekord hibás, ismeretlen típusú, vagy nem létezõ elemre hivatkozik.
+     */
+    static void apply(byte[] record, BookShopDAOConcurrentMemImpl store) throws IOException {
+        try {
+            apply(ByteBuffer.wrap(record), store);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt journal record: too short", e);
+        }
+    }
+
+    private static void apply(ByteBuffer in, BookShopDAOConcurrentMemImpl store) throws IOException {
+        byte type = in.get();
+
+        switch (type) {
+            case CUSTOMER: {
+                Customer customer = new Customer();
+                customer.setId(in.getInt());
+                customer.setName(getString(in));
+                customer.setAge(in.getInt());
+                customer.setFemale(in.get() != 0);
+                customer.setRented(in.get() != 0);
+                customer.setStudent(in.get() != 0);
+                customer.setGrantee(in.get() != 0);
+                customer.setQualification(getString(in));
+                store.restore(customer);
+                break;
+            }
+            case BOOK: {
+                Book book = new Book();
+                book.setId(in.getInt());
+                book.setAuthor(getString(in));
+                book.setTitle(getString(in));
+                book.setYear(in.getInt());
+                book.setCategory(getString(in));
+                book.setPrice(in.getInt());
+                book.setPiece(in.getInt());
+                book.setAncient(in.get() != 0);
+                store.restore(book);
+                break;
+            }
+            case PURCHASE:
+            case SALE: {
+                Purchase purchase = new Purchase();
+                purchase.setId(in.getInt());
+                int bookId = in.getInt();
+                int customerId = in.getInt();
+                purchase.setBook(store.getBook(bookId));
+                purchase.setCustomer(store.getCustomer(customerId));
+                if (purchase.getBook() == null || purchase.getCustomer() == null) {
+                    throw new IOException("Purchase " + purchase.getId() + " refers to unknown book "
+                            + bookId + " or customer " + customerId);
+                }
+                long day = in.getLong();
+                purchase.setSellDate(day != NO_DATE ? LocalDate.ofEpochDay(day) : null);
+                purchase.setPrice(in.getInt());
+                if (type == SALE) {
+                    purchase.getBook().setPiece(in.getInt());
+                }
+                store.restore(purchase);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type: " + type);
+        }
+    }
+
+    // Szövegek: hossz (-1, ha null), majd UTF-8 bájtok
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int size(byte[] value) {
+        return 4 + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        out.putInt(value != null ? value.length : -1);
+        if (value != null) {
+            out.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IOException("Corrupt journal record: string length " + length);
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static byte flag(boolean value) {
+        return (byte) (value ? 1 : 0);
+    }
+}
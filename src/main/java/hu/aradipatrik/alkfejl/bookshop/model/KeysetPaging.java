@@ -0,0 +1,190 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A keyset lapozás és a rendezett keresések ({@link BookQuery},
+ * {@link CustomerQuery}) közös segédmetódusai a DAO implementációk számára.
+ * Itt vannak felsorolva az engedélyezett rendezési kulcsok is, ezek neve
+ * megegyezik az adatbázis oszlopnevével.
+ */
+final class KeysetPaging {
+
+    static final Map<String, Function<Book, Comparable<?>>> BOOK_SORT_KEYS = new HashMap<>();
+    static final Map<String, Function<Customer, Comparable<?>>> CUSTOMER_SORT_KEYS = new HashMap<>();
+    static final Map<String, Function<Purchase, Comparable<?>>> PURCHASE_SORT_KEYS = new HashMap<>();
+
+    static {
+        BOOK_SORT_KEYS.put(PageRequest.SORT_BY_ID, Book::getId);
+        BOOK_SORT_KEYS.put("author", Book::getAuthor);
+        BOOK_SORT_KEYS.put("title", Book::getTitle);
+        BOOK_SORT_KEYS.put("year", Book::getYear);
+        BOOK_SORT_KEYS.put("category", Book::getCategory);
+        BOOK_SORT_KEYS.put("price", Book::getPrice);
+
+        CUSTOMER_SORT_KEYS.put(PageRequest.SORT_BY_ID, Customer::getId);
+        CUSTOMER_SORT_KEYS.put("name", Customer::getName);
+        CUSTOMER_SORT_KEYS.put("age", Customer::getAge);
+
+        PURCHASE_SORT_KEYS.put(PageRequest.SORT_BY_ID, Purchase::getId);
+    }
+
+    private KeysetPaging() {
+    }
+
+    /**
+     * Visszaadja a kéréshez tartozó rendezési kulcsot.
+     *
+     * @throws IllegalArgumentException Ha az adott típus nem rendezhetõ a kért kulcs szerint.
+     */
+    static <T> Function<T, Comparable<?>> sortKey(Map<String, Function<T, Comparable<?>>> keys,
+                                                   PageRequest request) {
+        return sortKey(keys, request.getSortKey());
+    }
+
+    static <T> Function<T, Comparable<?>> sortKey(Map<String, Function<T, Comparable<?>>> keys,
+                                                   String sortKey) {
+        Function<T, Comparable<?>> key = keys.get(sortKey);
+        if (key == null) {
+            throw new IllegalArgumentException("Unsupported sort key: " + sortKey);
+        }
+        return key;
+    }
+
+    /**
+     * Lappá alakítja a lekérdezett sorokat. A hívó legfeljebb limit+1 sort ad
+     * át, a plusz sor jelzi, hogy van következõ lap.
+     */
+    static <T> Page<T> toPage(List<T> rows, PageRequest request,
+                              Function<T, Comparable<?>> key, ToIntFunction<T> id) {
+        if (rows.size() <= request.getLimit()) {
+            return new Page<>(rows, null);
+        }
+
+        List<T> items = new ArrayList<>(rows.subList(0, request.getLimit()));
+        T last = items.get(items.size() - 1);
+        return new Page<>(items, request.after(key.apply(last), id.applyAsInt(last)));
+    }
+
+    /**
+     * Memóriában tárolt, azonosító szerint növekvõ listából állítja elõ a
+     * kért lapot. Azonosító szerinti rendezésnél bináris kereséssel ugrik a
+     * lap elejére, egyébként egy limit+1 méretû kupaccal választja ki a lap
+     * sorait, így nem kell a teljes listát rendezni.
+     */
+    static <T> Page<T> page(List<T> items, PageRequest request,
+                            Map<String, Function<T, Comparable<?>>> keys, ToIntFunction<T> id) {
+        Function<T, Comparable<?>> key = sortKey(keys, request);
+        int fetch = request.getLimit() + 1;
+
+        if (request.isSortedById()) {
+            int from = request.isFirst() ? 0 : firstIdAfter(items, request.getAfterId(), id);
+            int to = Math.min(items.size(), from + fetch);
+            return toPage(new ArrayList<>(items.subList(from, to)), request, key, id);
+        }
+
+        Comparator<T> order = order(key, id);
+        PriorityQueue<T> heap = new PriorityQueue<>(fetch, Collections.reverseOrder(order));
+
+        for (T item : items) {
+            if (!request.isFirst() && compareToCursor(item, request, key, id) <= 0) {
+                continue;
+            }
+            heap.offer(item);
+            if (heap.size() > fetch) {
+                heap.poll();
+            }
+        }
+
+        List<T> rows = new ArrayList<>(heap);
+        rows.sort(order);
+        return toPage(rows, request, key, id);
+    }
+
+    /**
+     * Memóriában tárolt, azonosító szerint növekvõ listából visszaadja a
+     * megadott azonosítónál nagyobb azonosítójú elemeket.
+     */
+    static <T> List<T> since(List<T> items, int watermark, ToIntFunction<T> id) {
+        return new ArrayList<>(items.subList(firstIdAfter(items, watermark, id), items.size()));
+    }
+
+    /**
+     * A jelöltek közül kiválasztja a feltételnek megfelelõ elsõ limit darabot a
+     * megadott rendezés szerint. Korlát esetén egy limit méretû kupacot
+     * használ, így nem kell az összes találatot rendezni.
+     *
+     * @param limit Legfeljebb ennyi elem, 0 esetén nincs korlát.
+     */
+    static <T> List<T> top(Iterable<T> candidates, Predicate<T> filter, Comparator<T> order, int limit) {
+        if (limit == 0) {
+            List<T> rows = new ArrayList<>();
+            for (T item : candidates) {
+                if (filter.test(item)) {
+                    rows.add(item);
+                }
+            }
+            rows.sort(order);
+            return rows;
+        }
+
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, Collections.reverseOrder(order));
+        for (T item : candidates) {
+            if (filter.test(item)) {
+                heap.offer(item);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+
+        List<T> rows = new ArrayList<>(heap);
+        rows.sort(order);
+        return rows;
+    }
+
+    private static <T> int firstIdAfter(List<T> items, int afterId, ToIntFunction<T> id) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (id.applyAsInt(items.get(mid)) <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static <T> Comparator<T> order(Function<T, Comparable<?>> key, ToIntFunction<T> id) {
+        return (a, b) -> {
+            int result = compare(key.apply(a), key.apply(b));
+            return result != 0 ? result : Integer.compare(id.applyAsInt(a), id.applyAsInt(b));
+        };
+    }
+
+    private static <T> int compareToCursor(T item, PageRequest request,
+                                           Function<T, Comparable<?>> key, ToIntFunction<T> id) {
+        int result = compare(key.apply(item), request.getAfterValue());
+        return result != 0 ? result : Integer.compare(id.applyAsInt(item), request.getAfterId());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+}
@@ -0,0 +1,414 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Egy memóriabeli {@link BookShopDAO} elé tehetõ adattár, amely a
+ * vásárlásokat nem a heap-en, hanem egy {@link PurchaseLog}-ban tárolja. A
+ * vásárlók és könyvek a megadott adattárban (katalógus) maradnak, így a
+ * heap mérete és a GC szünetek nem nõnek az eladási történettel.
+ * <p>
+ * A vásárlásokat lekéréskor építjük fel, a könyvet és a vásárlót a
+ * katalógusból id szerint kikeresve. Eladáskor a katalógus által visszaadott
+ * könyv készletét csökkentjük, ezért a katalógusnak a tárolt példányokat
+ * kell visszaadnia ({@link BookShopDAOMemImpl},
+ * {@link BookShopDAOConcurrentMemImpl}). Az adatbázis a vásárlásokat
+ * eleve nem a heap-en tartja, ott nincs szükség erre az osztályra.
+ * </p>
+ */
+public class OffHeapPurchaseDAO implements BookShopDAO, AutoCloseable {
+
+    private final BookShopDAO catalog;
+    private final PurchaseLog log;
+
+    // A naplóban lévõ (könyv, vásárló) párok, lásd InMemorySales.purchaseKey
+    private final Set<Long> purchasedPairs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param catalog A vásárlókat és könyveket tároló memóriabeli adattár.
+     * @param log     A vásárlások naplója (a már benne lévõ vásárlásokkal együtt).
+     */
+    public OffHeapPurchaseDAO(BookShopDAO catalog, PurchaseLog log) {
+        this.catalog = catalog;
+        this.log = log;
+        log.scan(0, 0, (id, bookId, customerId, sellDay, price) ->
+                purchasedPairs.add(InMemorySales.purchaseKey(bookId, customerId)));
+    }
+
+    @Override
+    public boolean addCustomer(Customer customer) {
+        return catalog.addCustomer(customer);
+    }
+
+    @Override
+    public List<Customer> getCustomers() {
+        return catalog.getCustomers();
+    }
+
+    @Override
+    public Customer getCustomer(int id) {
+        return catalog.getCustomer(id);
+    }
+
+    @Override
+    public Page<Customer> getCustomers(PageRequest request) {
+        return catalog.getCustomers(request);
+    }
+
+    @Override
+    public List<Customer> getCustomersSince(int watermark) {
+        return catalog.getCustomersSince(watermark);
+    }
+
+    @Override
+    public List<Customer> findCustomers(CustomerQuery query) {
+        return catalog.findCustomers(query);
+    }
+
+    @Override
+    public BatchResult addCustomers(Collection<Customer> customers) {
+        return catalog.addCustomers(customers);
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        return catalog.addBook(book);
+    }
+
+    @Override
+    public List<Book> getBooks() {
+        return catalog.getBooks();
+    }
+
+    @Override
+    public Book getBook(int id) {
+        return catalog.getBook(id);
+    }
+
+    @Override
+    public Page<Book> getBooks(PageRequest request) {
+        return catalog.getBooks(request);
+    }
+
+    @Override
+    public List<Book> getBooksSince(int watermark) {
+        return catalog.getBooksSince(watermark);
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        return catalog.findBooks(query);
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return catalog.searchBooks(query, limit);
+    }
+
+    @Override
+    public BatchResult addBooks(Collection<Book> books) {
+        return catalog.addBooks(books);
+    }
+
+    @Override
+    public boolean addPurchase(Purchase purchase) {
+        return insert(purchase) == BatchResult.Outcome.INSERTED;
+    }
+
+    private BatchResult.Outcome insert(Purchase purchase) {
+        if (!isStored(purchase)) {
+            return BatchResult.Outcome.INVALID;
+        }
+        if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+        append(purchase);
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    /**
+     * A vásárlás csak a katalógusban lévõ könyvre és vásárlóra hivatkozhat.
+     */
+    private boolean isStored(Purchase purchase) {
+        return purchase.getBook() != null && purchase.getCustomer() != null
+                && catalog.getBook(purchase.getBook().getId()) != null
+                && catalog.getCustomer(purchase.getCustomer().getId()) != null;
+    }
+
+    private void append(Purchase purchase) {
+        InMemorySales.recordSale(purchase);
+        purchase.setId(log.append(purchase.getBook().getId(), purchase.getCustomer().getId(),
+                purchase.getSellDate(), purchase.getPrice()));
+    }
+
+    /**
+     * Visszaadja az összes vásárlást. Nagy történetnél kerülendõ, mert
+     * mindet a heap-re tölti: ehelyett lapozva, a bejárókkal, vagy dátum,
+     * illetve vásárló szerint érdemes lekérni.
+     */
+    @Override
+    public List<Purchase> getPurchases() {
+        return getPurchasesSince(0);
+    }
+
+    @Override
+    public Page<Purchase> getPurchases(PageRequest request) {
+        Function<Purchase, Comparable<?>> key = KeysetPaging.sortKey(KeysetPaging.PURCHASE_SORT_KEYS, request);
+        if (!request.isSortedById()) {
+            return KeysetPaging.page(getPurchases(), request, KeysetPaging.PURCHASE_SORT_KEYS, Purchase::getId);
+        }
+
+        // id szerint a napló sorrendje a lap sorrendje
+        List<Purchase> rows = new ArrayList<>(request.getLimit() + 1);
+        log.scan(request.isFirst() ? 0 : request.getAfterId(), request.getLimit() + 1, collectInto(rows));
+        return KeysetPaging.toPage(rows, request, key, Purchase::getId);
+    }
+
+    @Override
+    public List<Purchase> getPurchasesSince(int watermark) {
+        List<Purchase> purchases = new ArrayList<>();
+        log.scan(watermark, 0, collectInto(purchases));
+        return purchases;
+    }
+
+    /**
+     * Visszaadja a megadott napok között (mindkét határt beleértve) eladott
+     * vásárlásokat, id szerint növekvõ sorrendben.
+     *
+     * @param from Az elsõ nap, vagy null, ha nincs alsó korlát.
+     * @param to   Az utolsó nap, vagy null, ha nincs felsõ korlát.
+     */
+    public List<Purchase> getPurchases(LocalDate from, LocalDate to) {
+        List<Purchase> purchases = new ArrayList<>();
+        log.scanByDate(from, to, collectInto(purchases));
+        return purchases;
+    }
+
+    /**
+     * Visszaadja a vásárló vásárlásait, id szerint növekvõ sorrendben.
+     */
+    public List<Purchase> getPurchasesOf(Customer customer) {
+        List<Purchase> purchases = new ArrayList<>();
+        log.scanByCustomer(customer.getId(), collectInto(purchases));
+        return purchases;
+    }
+
+    @Override
+    public BatchResult addPurchases(Collection<Purchase> purchases) {
+        BatchResult result = new BatchResult(purchases.size());
+        int index = 0;
+
+        for (Purchase purchase : purchases) {
+            result.set(index++, insert(purchase));
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean sellBook(Purchase purchase) {
+        return sell(purchase) == BatchResult.Outcome.INSERTED;
+    }
+
+    @Override
+    public BatchResult sellBooks(Collection<Purchase> purchases) {
+        BatchResult result = new BatchResult(purchases.size());
+        int index = 0;
+
+        for (Purchase purchase : purchases) {
+            result.set(index++, sell(purchase));
+        }
+
+        return result;
+    }
+
+    /**
+     * A készlet ellenõrzése és csökkentése szinkronizált, így több szálon
+     * sem adunk el több példányt, mint amennyi raktáron van.
+     */
+    private synchronized BatchResult.Outcome sell(Purchase purchase) {
+        if (!isStored(purchase)) {
+            return BatchResult.Outcome.INVALID;
+        }
+
+        Book book = catalog.getBook(purchase.getBook().getId());
+        if (book.getPiece() <= 0) {
+            return BatchResult.Outcome.OUT_OF_STOCK;
+        }
+        if (!purchasedPairs.add(InMemorySales.purchaseKey(purchase))) {
+            return BatchResult.Outcome.DUPLICATE;
+        }
+
+        book.setPiece(book.getPiece() - 1);
+        if (purchase.getBook() != book) {
+            purchase.getBook().setPiece(book.getPiece());
+        }
+        append(purchase);
+        return BatchResult.Outcome.INSERTED;
+    }
+
+    /**
+     * A kimutatást közvetlenül a napló rekordjaiból számolja, vásárlás
+     * bean-ek nélkül: elõbb a rekord könyv, vásárló vagy nap mezõje szerint
+     * összegez, és csak a csoportok feliratához néz a katalógusba.
+     */
+    @Override
+    public List<SalesRow> getSales(SalesGrouping grouping, LocalDate from, LocalDate to, int topN) {
+        // könyv, vásárló id vagy nap -> {darabszám, bevétel}; kategóriánál könyvenként
+        Map<Integer, long[]> totals = new HashMap<>();
+        PurchaseLog.RecordVisitor sum = (id, bookId, customerId, sellDay, price) -> {
+            int key = grouping == SalesGrouping.CUSTOMER ? customerId
+                    : grouping == SalesGrouping.DAY ? sellDay : bookId;
+            long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+            total[0]++;
+            total[1] += price;
+        };
+        if (from == null && to == null && grouping != SalesGrouping.DAY) {
+            // szûrés nélkül a dátum nélküli vásárlások is beleszámítanak
+            log.scan(0, 0, sum);
+        } else {
+            log.scanByDate(from, to, sum);
+        }
+
+        List<SalesRow> rows = new ArrayList<>(totals.size());
+        if (grouping == SalesGrouping.CATEGORY) {
+            Map<String, long[]> categories = new HashMap<>();
+            for (Map.Entry<Integer, long[]> entry : totals.entrySet()) {
+                long[] total = categories.computeIfAbsent(
+                        catalog.getBook(entry.getKey()).getCategory(), k -> new long[2]);
+                total[0] += entry.getValue()[0];
+                total[1] += entry.getValue()[1];
+            }
+            for (Map.Entry<String, long[]> entry : categories.entrySet()) {
+                rows.add(new SalesRow(entry.getKey(), entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+            return InMemorySales.top(rows, topN);
+        }
+
+        for (Map.Entry<Integer, long[]> entry : totals.entrySet()) {
+            int key = entry.getKey();
+            String label;
+            switch (grouping) {
+                case BOOK:
+                    label = catalog.getBook(key).getTitle();
+                    break;
+                case CUSTOMER:
+                    label = catalog.getCustomer(key).getName();
+                    break;
+                default:
+                    label = LocalDate.ofEpochDay(key).toString();
+                    break;
+            }
+            rows.add(new SalesRow(grouping == SalesGrouping.DAY ? label : String.valueOf(key), label,
+                    entry.getValue()[0], entry.getValue()[1]));
+        }
+        return InMemorySales.top(rows, topN);
+    }
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action, boolean reuseBean) {
+        return catalog.forEachCustomer(action, reuseBean);
+    }
+
+    @Override
+    public boolean forEachBook(Consumer<? super Book> action, boolean reuseBean) {
+        return catalog.forEachBook(action, reuseBean);
+    }
+
+    /**
+     * Ha a reuseBean igaz, minden vásárlást ugyanabba a példányba olvas (a
+     * könyv és a vásárló a katalógus tárolt példánya).
+     */
+    @Override
+    public boolean forEachPurchase(Consumer<? super Purchase> action, boolean reuseBean) {
+        Purchase reused = reuseBean ? new Purchase() : null;
+        log.scan(0, 0, (id, bookId, customerId, sellDay, price) ->
+                action.accept(fill(reused != null ? reused : new Purchase(), id, bookId, customerId, sellDay, price)));
+        return true;
+    }
+
+    @Override
+    public Stream<Customer> streamCustomers() {
+        return catalog.streamCustomers();
+    }
+
+    @Override
+    public Stream<Book> streamBooks() {
+        return catalog.streamBooks();
+    }
+
+    /**
+     * A stream a létrehozásakor tárolt vásárlásokat adja. A teljes bejárás
+     * (forEach, collect, stb.) egyetlen naplóbejárás.
+     */
+    @Override
+    public Stream<Purchase> streamPurchases() {
+        int end = log.size();
+        Spliterator<Purchase> purchases = new Spliterators.AbstractSpliterator<Purchase>(
+                end, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED) {
+            private int next = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Purchase> action) {
+                if (next >= end) {
+                    return false;
+                }
+                log.scan(next++, 1, emitTo(action));
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super Purchase> action) {
+                if (next < end) {
+                    log.scan(next, end - next, emitTo(action));
+                    next = end;
+                }
+            }
+        };
+        return StreamSupport.stream(purchases, false);
+    }
+
+    private PurchaseLog.RecordVisitor emitTo(Consumer<? super Purchase> action) {
+        return (id, bookId, customerId, sellDay, price) ->
+                action.accept(fill(new Purchase(), id, bookId, customerId, sellDay, price));
+    }
+
+    private PurchaseLog.RecordVisitor collectInto(List<Purchase> purchases) {
+        return emitTo(purchases::add);
+    }
+
+    private Purchase fill(Purchase purchase, int id, int bookId, int customerId, int sellDay, int price) {
+        purchase.setId(id);
+        purchase.setBook(catalog.getBook(bookId));
+        purchase.setCustomer(catalog.getCustomer(customerId));
+        purchase.setSellDate(sellDay != PurchaseLog.NO_DATE ? LocalDate.ofEpochDay(sellDay) : null);
+        purchase.setPrice(price);
+        return purchase;
+    }
+
+    /**
+     * Lezárja a vásárlások naplóját (a katalógust nem).
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,40 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.List;
+
+/**
+ * Egy lapozott lekérdezés egy lapja.
+ *
+ * @param <T> A lap elemeinek típusa.
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final PageRequest nextRequest;
+
+    Page(List<T> items, PageRequest nextRequest) {
+        this.items = items;
+        this.nextRequest = nextRequest;
+    }
+
+    /**
+     * @return A lap elemei, a kért rendezés szerint.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return True, ha van következõ lap.
+     */
+    public boolean hasNext() {
+        return nextRequest != null;
+    }
+
+    /**
+     * @return A következõ lap lekérdezése, vagy null, ha ez az utolsó lap.
+     */
+    public PageRequest getNextRequest() {
+        return nextRequest;
+    }
+}
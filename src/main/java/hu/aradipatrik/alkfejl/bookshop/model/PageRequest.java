@@ -0,0 +1,93 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+/**
+ * Egy lap lekérdezését írja le keyset lapozáshoz. A következõ lapot nem
+ * eltolással (OFFSET), hanem az elõzõ lap utolsó sorának kulcsa alapján
+ * kérjük le, így a lekérdezés költsége nem nõ a lapok számával.
+ * <p>
+ * Az elsõ lapot a {@link #first(int)} vagy {@link #first(int, String)}
+ * metódussal kérjük, a továbbiakat a {@link Page#getNextRequest()} adja.
+ * </p>
+ */
+public class PageRequest {
+
+    /**
+     * Az alapértelmezett rendezési kulcs, az azonosító.
+     */
+    public static final String SORT_BY_ID = "id";
+
+    private final int limit;
+    private final String sortKey;
+
+    // Az elõzõ lap utolsó sorának rendezési kulcsa és azonosítója,
+    // az elsõ lapnál null
+    private final Object afterValue;
+    private final int afterId;
+
+    private PageRequest(int limit, String sortKey, Object afterValue, int afterId) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        this.sortKey = sortKey;
+        this.afterValue = afterValue;
+        this.afterId = afterId;
+    }
+
+    /**
+     * Az elsõ lap, azonosító szerint rendezve.
+     *
+     * @param limit A lap legfeljebb ennyi sort tartalmaz.
+     */
+    public static PageRequest first(int limit) {
+        return first(limit, SORT_BY_ID);
+    }
+
+    /**
+     * Az elsõ lap, a megadott kulcs, azon belül azonosító szerint rendezve.
+     *
+     * @param limit   A lap legfeljebb ennyi sort tartalmaz.
+     * @param sortKey A rendezési kulcs, pl. {@code "title"} (lásd {@link BookShopDAO}).
+     */
+    public static PageRequest first(int limit, String sortKey) {
+        return new PageRequest(limit, sortKey, null, 0);
+    }
+
+    /**
+     * A megadott sor utáni lap, ugyanazzal a mérettel és rendezéssel.
+     */
+    PageRequest after(Object value, int id) {
+        return new PageRequest(limit, sortKey, value, id);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isSortedById() {
+        return SORT_BY_ID.equals(sortKey);
+    }
+
+    public boolean isFirst() {
+        return afterValue == null;
+    }
+
+    public Object getAfterValue() {
+        return afterValue;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest [" +
+                "limit=" + limit + ", sortKey=" + sortKey +
+                ", afterValue=" + afterValue + ", afterId=" + afterId + "]";
+    }
+}
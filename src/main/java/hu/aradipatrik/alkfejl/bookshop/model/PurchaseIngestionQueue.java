@@ -0,0 +1,216 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Aszinkron vásárlás rögzítõ sor. Tetszõleges számú szál (pl. kassza) tehet
+ * bele {@link Purchase}-eket, ezeket egyetlen író szál gyûjti össze és
+ * tranzakciónként egy batch-ben adja el ({@link BookShopDAO#sellBooks}).
+ * Így a kasszák nem versenyeznek az adatbázis írási záráért, és nem kell
+ * minden vásárlásnak külön fsync-et fizetnie (group commit).
+ * <p>
+ * Az író legfeljebb {@code maxLatencyMillis}-ig vár további vásárlásokra
+ * egy batch elsõ eleme után. Ha a sor megtelt, a beküldõ szál várakozik
+ * (backpressure).
+ * </p>
+ */
+public class PurchaseIngestionQueue implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 5;
+
+    private final BookShopDAO dao;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+
+    // Lock-free, több termelõs sor; a kapacitást a szemafor korlátozza
+    private final ConcurrentLinkedQueue<PendingPurchase> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore capacity;
+
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    public PurchaseIngestionQueue(BookShopDAO dao) {
+        this(dao, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * @param dao              Az adattár, ahova az író szál a batch-eket írja.
+     * @param capacity         A sorban egyszerre várakozó vásárlások maximális száma.
+     * @param maxBatchSize     Egy tranzakcióban legfeljebb ennyi vásárlást írunk.
+     * @param maxLatencyMillis Egy batch elsõ eleme után legfeljebb ennyit várunk továbbiakra.
+     */
+    public PurchaseIngestionQueue(BookShopDAO dao, int capacity, int maxBatchSize, long maxLatencyMillis) {
+        this.dao = dao;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.capacity = new Semaphore(capacity);
+
+        writer = new Thread(this::writeLoop, "purchase-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Sorba állítja a vásárlást. Ha a sor megtelt, megvárja, amíg hely szabadul fel.
+     *
+     * @param purchase A rögzítendõ {@link Purchase}.
+     * @return Az írás eredménye: igaz, ha sikeresen tárolva, hamis, egyébként.
+     * @throws InterruptedException  Ha a várakozás közben megszakították a szálat.
+     * @throws IllegalStateException Ha a sort már lezárták.
+     */
+    public CompletableFuture<Boolean> submit(Purchase purchase) throws InterruptedException {
+        checkOpen();
+        capacity.acquire();
+        return enqueue(purchase);
+    }
+
+    /**
+     * Sorba állítja a vásárlást, de legfeljebb a megadott ideig vár szabad helyre.
+     *
+     * @param purchase A rögzítendõ {@link Purchase}.
+     * @return Az írás eredménye, vagy null, ha a sor a megadott ideig tele volt.
+     * @throws InterruptedException  Ha a várakozás közben megszakították a szálat.
+     * @throws IllegalStateException Ha a sort már lezárták.
+     */
+    public CompletableFuture<Boolean> offer(Purchase purchase, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkOpen();
+        if (!capacity.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return enqueue(purchase);
+    }
+
+    /**
+     * @return A sorban írásra váró vásárlások száma.
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Nem fogad több vásárlást, megvárja, hogy az író a sorban lévõket kiírja.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // a lezárással egy idõben beküldött vásárlások már nem kerülnek
+        // kiírásra; a helyüket felszabadítjuk, így a teli sorra váró beküldõ
+        // sem marad bent
+        PendingPurchase pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.complete(false);
+            capacity.release();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Purchase queue is closed.");
+        }
+    }
+
+    private CompletableFuture<Boolean> enqueue(Purchase purchase) {
+        PendingPurchase pending = new PendingPurchase(purchase);
+        queue.offer(pending);
+
+        // A checkOpen óta lezárhatták a sort, és a close() ürítése is
+        // lefuthatott a sorba tétel elõtt. Ha még bent van, mi vesszük ki; ha
+        // nincs, az író vagy a close() már kivette, és õ teljesíti
+        if (closed && queue.remove(pending)) {
+            pending.result.complete(false);
+            capacity.release();
+            return pending.result;
+        }
+
+        LockSupport.unpark(writer);
+        return pending.result;
+    }
+
+    /**
+     * Az író szál ciklusa: megvárja az elsõ vásárlást, a késleltetési korláton
+     * belül összegyûjt mellé további vásárlásokat, majd egy tranzakcióban kiírja õket.
+     */
+    private void writeLoop() {
+        List<PendingPurchase> batch = new ArrayList<>(maxBatchSize);
+
+        while (true) {
+            PendingPurchase first = queue.poll();
+            if (first == null) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            batch.add(first);
+            long deadline = System.nanoTime() + maxLatencyNanos;
+
+            while (batch.size() < maxBatchSize) {
+                PendingPurchase next = queue.poll();
+                if (next != null) {
+                    batch.add(next);
+                    continue;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || closed) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+
+            writeBatch(batch);
+            capacity.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingPurchase> batch) {
+        List<Purchase> purchases = new ArrayList<>(batch.size());
+        for (PendingPurchase pending : batch) {
+            purchases.add(pending.purchase);
+        }
+
+        try {
+            BatchResult result = dao.sellBooks(purchases);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(result.getOutcome(i) == BatchResult.Outcome.INSERTED);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to write purchase batch.");
+            e.printStackTrace();
+            for (PendingPurchase pending : batch) {
+                pending.result.complete(false);
+            }
+        }
+    }
+
+    private static class PendingPurchase {
+        final Purchase purchase;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingPurchase(Purchase purchase) {
+            this.purchase = purchase;
+        }
+    }
+}
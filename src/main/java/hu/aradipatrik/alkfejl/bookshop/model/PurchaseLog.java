@@ -0,0 +1,286 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vásárlások hozzáfûzhetõ, a Java heap-en kívül tárolt naplója. Minden
+ * vásárlás egy fix hosszú rekord (id, könyv id, vásárló id, az eladás napja
+ * epoch napként, ár), így a történet méretétõl nem nõ a heap és a GC munkája.
+ * <p>
+ * A rekordok szegmensekben vannak: direkt {@link ByteBuffer}-ekben, vagy
+ * fájlba képezve ({@link #open(Path)}), ekkor a {@link #close()} után
+ * újranyitva is megmaradnak (összeomlás ellen nem véd, ahhoz lásd
+ * {@link DurableBookShopDAO}). Az id a rekord sorszáma + 1.
+ * Szegmensenként tároljuk a legkorábbi és legkésõbbi eladási napot, így a
+ * dátum szerinti keresés átugorja a tartományon kívüli szegmenseket. Minden rekord az ugyanazon
+ * vásárló elõzõ rekordjára mutat, így a vásárló szerinti keresés csak a
+ * vásárló rekordjait olvassa.
+ * </p>
+ * <p>
+ * Az írás szinkronizált, az olvasás zár nélküli: az olvasók csak a már
+ * teljesen kiírt rekordokat látják.
+ * </p>
+ */
+public final class PurchaseLog implements AutoCloseable {
+
+    // id, könyv id, vásárló id, eladás napja, ár, a vásárló elõzõ rekordja
+    static final int RECORD_SIZE = 24;
+    static final int SEGMENT_RECORDS = 1 << 20;
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+    private static final int NO_RECORD = -1;
+
+    /**
+     * Egy rekord mezõit kapja meg, bean létrehozása nélkül.
+     */
+    public interface RecordVisitor {
+        /**
+         * @param sellDay Az eladás napja epoch napként, vagy {@link #NO_DATE}.
+         */
+        void visit(int id, int bookId, int customerId, int sellDay, int price);
+    }
+
+    private final FileChannel channel;
+
+    // Az olvasók elõbb a size-t olvassák, így a tömbök addigi állapotát látják
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    private volatile int[] minDays = new int[0];
+    private volatile int[] maxDays = new int[0];
+    private volatile int size;
+
+    // vásárló id -> a vásárló utolsó rekordjának sorszáma
+    private final Map<Integer, Integer> lastByCustomer = new ConcurrentHashMap<>();
+
+    private PurchaseLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return A heap-en kívüli, direkt memóriában tárolt napló.
+     */
+    public static PurchaseLog inMemory() {
+        return new PurchaseLog(null);
+    }
+
+    /**
+     * Megnyitja (vagy létrehozza) a fájlba képzett naplót. A fájl
+     * szegmensenként nõ, a már benne lévõ rekordokat beolvassa.
+     *
+     * @throws IOException Ha a fájl nem nyitható meg vagy nem képezhetõ le.
+     */
+    public static PurchaseLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PurchaseLog log = new PurchaseLog(channel);
+        try {
+            log.recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * A fájl szegmenseit leképezi, és az elsõ üres (0 id-jú) rekordig
+     * újraépíti a méretet, a dátum tartományokat és a vásárlók láncait.
+     */
+    private void recover() throws IOException {
+        long segmentCount = (channel.size() + SEGMENT_BYTES - 1) / SEGMENT_BYTES;
+        for (int s = 0; s < segmentCount; s++) {
+            addSegment();
+        }
+
+        int recovered = 0;
+        while (recovered < segments.length * SEGMENT_RECORDS && field(recovered, 0) != 0) {
+            recovered++;
+        }
+
+        for (int index = 0; index < recovered; index++) {
+            int segment = index / SEGMENT_RECORDS;
+            int day = field(index, 12);
+            if (day != NO_DATE) {
+                minDays[segment] = Math.min(minDays[segment], day);
+                maxDays[segment] = Math.max(maxDays[segment], day);
+            }
+            lastByCustomer.put(field(index, 8), index);
+        }
+        size = recovered;
+    }
+
+    /**
+     * Hozzáfûz egy vásárlást.
+     *
+     * @param sellDate Az eladás napja, lehet null.
+     * @return A vásárlás id-ja.
+     * @throws DataAccessException Ha a fájlba képzett napló nem bõvíthetõ.
+     */
+    public synchronized int append(int bookId, int customerId, LocalDate sellDate, int price) {
+        int index = size;
+        if (index == Integer.MAX_VALUE - 1) {
+            throw new DataAccessException("Purchase log is full", null);
+        }
+        int segment = index / SEGMENT_RECORDS;
+        if (segment == segments.length) {
+            try {
+                addSegment();
+            } catch (IOException e) {
+                throw new DataAccessException("Failed to grow purchase log", e);
+            }
+        }
+
+        int day = sellDate != null ? (int) sellDate.toEpochDay() : NO_DATE;
+        Integer previous = lastByCustomer.get(customerId);
+
+        ByteBuffer buffer = segments[segment];
+        int offset = (index % SEGMENT_RECORDS) * RECORD_SIZE;
+        buffer.putInt(offset + 4, bookId);
+        buffer.putInt(offset + 8, customerId);
+        buffer.putInt(offset + 12, day);
+        buffer.putInt(offset + 16, price);
+        buffer.putInt(offset + 20, previous != null ? previous : NO_RECORD);
+        // az id kerül be utoljára, a fájl visszatöltésekor ez jelzi a rekordot
+        buffer.putInt(offset, index + 1);
+
+        if (day != NO_DATE) {
+            minDays[segment] = Math.min(minDays[segment], day);
+            maxDays[segment] = Math.max(maxDays[segment], day);
+        }
+        lastByCustomer.put(customerId, index);
+        size = index + 1;
+        return index + 1;
+    }
+
+    private void addSegment() throws IOException {
+        int segment = segments.length;
+        ByteBuffer buffer = channel != null
+                ? channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * SEGMENT_BYTES, SEGMENT_BYTES)
+                : ByteBuffer.allocateDirect(SEGMENT_BYTES);
+
+        int[] newMinDays = Arrays.copyOf(minDays, segment + 1);
+        int[] newMaxDays = Arrays.copyOf(maxDays, segment + 1);
+        newMinDays[segment] = Integer.MAX_VALUE;
+        newMaxDays[segment] = Integer.MIN_VALUE;
+        minDays = newMinDays;
+        maxDays = newMaxDays;
+
+        ByteBuffer[] newSegments = Arrays.copyOf(segments, segment + 1);
+        newSegments[segment] = buffer;
+        segments = newSegments;
+    }
+
+    /**
+     * @return A tárolt vásárlások száma (egyben a legnagyobb id).
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorban végigmegy a megadott id tartomány vásárlásain.
+     *
+     * @param afterId Az ennél nagyobb id-jú vásárlásoktól kezdve.
+     * @param limit   Legfeljebb ennyi vásárlás, 0 esetén nincs korlát.
+     */
+    public void scan(int afterId, int limit, RecordVisitor visitor) {
+        int end = size;
+        if (limit > 0) {
+            end = (int) Math.min(end, (long) Math.max(afterId, 0) + limit);
+        }
+        for (int index = Math.max(afterId, 0); index < end; index++) {
+            visit(index, visitor);
+        }
+    }
+
+    /**
+     * Végigmegy a megadott napok (mindkét határt beleértve) között eladott
+     * vásárlásokon, id szerint növekvõ sorrendben. A határok null-ok is
+     * lehetnek, ekkor nincs alsó / felsõ korlát, de a napló nélküli
+     * vásárlások kimaradnak.
+     */
+    public void scanByDate(LocalDate from, LocalDate to, RecordVisitor visitor) {
+        int end = size;
+        int[] minDays = this.minDays;
+        int[] maxDays = this.maxDays;
+        long fromDay = from != null ? from.toEpochDay() : Integer.MIN_VALUE + 1L;
+        long toDay = to != null ? to.toEpochDay() : Integer.MAX_VALUE;
+
+        for (int segment = 0; segment * SEGMENT_RECORDS < end; segment++) {
+            if (maxDays[segment] < fromDay || minDays[segment] > toDay) {
+                continue;
+            }
+            ByteBuffer buffer = segments[segment];
+            int segmentEnd = Math.min(end - segment * SEGMENT_RECORDS, SEGMENT_RECORDS);
+            for (int i = 0; i < segmentEnd; i++) {
+                int day = buffer.getInt(i * RECORD_SIZE + 12);
+                if (day != NO_DATE && day >= fromDay && day <= toDay) {
+                    visit(segment * SEGMENT_RECORDS + i, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Végigmegy a vásárló vásárlásain, id szerint növekvõ sorrendben.
+     */
+    public void scanByCustomer(int customerId, RecordVisitor visitor) {
+        int end = size;
+        Integer last = lastByCustomer.get(customerId);
+        if (last == null) {
+            return;
+        }
+
+        // a lánc visszafelé halad, ezért elõbb összegyûjtjük a sorszámokat
+        int[] indexes = new int[16];
+        int count = 0;
+        for (int index = last; index != NO_RECORD; index = field(index, 20)) {
+            if (index >= end) {
+                // a scan kezdete után hozzáfûzött rekord
+                continue;
+            }
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+            }
+            indexes[count++] = index;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            visit(indexes[i], visitor);
+        }
+    }
+
+    private void visit(int index, RecordVisitor visitor) {
+        ByteBuffer buffer = segments[index / SEGMENT_RECORDS];
+        int offset = (index % SEGMENT_RECORDS) * RECORD_SIZE;
+        visitor.visit(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8),
+                buffer.getInt(offset + 12), buffer.getInt(offset + 16));
+    }
+
+    private int field(int index, int fieldOffset) {
+        return segments[index / SEGMENT_RECORDS].getInt((index % SEGMENT_RECORDS) * RECORD_SIZE + fieldOffset);
+    }
+
+    /**
+     * Fájlba képzett naplónál lemezre írja a szegmenseket és lezárja a fájlt.
+     * A direkt memóriát a GC szabadítja fel, amikor a napló már nem elérhetõ.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,15 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+/**
+ * Az eladási kimutatás ({@link BookShopDAO#getSales}) csoportosítása.
+ */
+public enum SalesGrouping {
+    /** Könyvenként; a kulcs a könyv id-ja, a felirat a címe. */
+    BOOK,
+    /** Kategóriánként; a kulcs és a felirat is a kategória. */
+    CATEGORY,
+    /** Vásárlónként; a kulcs a vásárló id-ja, a felirat a neve. */
+    CUSTOMER,
+    /** Naponként; a kulcs és a felirat is a nap ISO formában (pl. 2017-05-01). */
+    DAY
+}
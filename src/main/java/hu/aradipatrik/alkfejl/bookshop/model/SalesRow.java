@@ -0,0 +1,53 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+/**
+ * Az eladási kimutatás ({@link BookShopDAO#getSales}) egy sora: egy csoport
+ * eladásainak száma és az eladási árak összege.
+ */
+public class SalesRow {
+
+    private final String key;
+    private final String label;
+    private final long count;
+    private final long revenue;
+
+    SalesRow(String key, String label, long count, long revenue) {
+        this.key = key;
+        this.label = label;
+        this.count = count;
+        this.revenue = revenue;
+    }
+
+    /**
+     * @return A csoport kulcsa (lásd {@link SalesGrouping}).
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return A csoport megjeleníthetõ neve.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return Az eladott példányok száma.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Az eladott példányok eladáskori árainak összege.
+     */
+    public long getRevenue() {
+        return revenue;
+    }
+
+    @Override
+    public String toString() {
+        return "SalesRow [key=" + key + ", label=" + label + ", count=" + count + ", revenue=" + revenue + "]";
+    }
+}
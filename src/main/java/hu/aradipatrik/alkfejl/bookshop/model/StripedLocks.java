@@ -0,0 +1,51 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Kulcs (pl. könyv id) szerint csíkozott zárak. Az azonos kulcsú mûveletek
+ * ugyanazt a zárat kapják, így sorba állnak, a különbözõ kulcsúak viszont
+ * (amíg nem esnek ugyanabba a csíkba) egymástól függetlenül futhatnak.
+ * Egyetlen globális zárral szemben a népszerû könyvek eladása nem
+ * tartja fel a többi könyvét.
+ */
+final class StripedLocks {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final Lock[] locks;
+    private final int mask;
+
+    StripedLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes A zárak minimális száma, a következõ kettõhatványra kerekítve.
+     */
+    StripedLocks(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripes);
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return A kulcshoz tartozó zár.
+     */
+    Lock get(int key) {
+        // az egymást követõ id-k szétszórása, hogy ne mindig a szomszédos csíkot kapják
+        int h = key * 0x9E3779B9;
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
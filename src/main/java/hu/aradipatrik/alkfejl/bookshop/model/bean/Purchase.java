@@ -1,10 +1,15 @@
 package hu.aradipatrik.alkfejl.bookshop.model.bean;
 
+import java.time.LocalDate;
+
 public class Purchase {
 
     private int id;
     private Book book;
     private Customer customer;
+    private LocalDate sellDate;
+    private int price;
+    private boolean priceSet;
 
     // id
 
@@ -36,11 +41,41 @@ public class Purchase {
         this.customer = customer;
     }
 
+    // sellDate
+
+    public LocalDate getSellDate() {
+        return sellDate;
+    }
+
+    public void setSellDate(LocalDate sellDate) {
+        this.sellDate = sellDate;
+    }
+
+    // price (az eladáskori ár)
+
+    public int getPrice() {
+        return price;
+    }
+
+    public void setPrice(int price) {
+        this.price = price;
+        this.priceSet = true;
+    }
+
+    /**
+     * @return True, ha az árat megadták (akár 0-ra). Ha nem, tároláskor a
+     * könyv jelenlegi ára lesz az eladási ár.
+     */
+    public boolean isPriceSet() {
+        return priceSet;
+    }
+
     @Override
     public String toString() {
         return "Purchase [" +
                 "book=" + book.toString() +
                 ", customer=" + customer.toString() +
+                ", sellDate=" + sellDate + ", price=" + price +
                 "]";
     }
 }
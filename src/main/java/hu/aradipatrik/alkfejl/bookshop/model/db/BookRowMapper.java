@@ -0,0 +1,71 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A Book tábla sorait {@link Book} példánnyá alakító mapper.
+ */
+public class BookRowMapper implements RowMapper<Book> {
+
+    private static final String[] COLUMNS = {
+            "id", "author", "title", "year", "category", "price", "pieces", "ancient" };
+
+    private final int id;
+    private final int author;
+    private final int title;
+    private final int year;
+    private final int category;
+    private final int price;
+    private final int pieces;
+    private final int ancient;
+
+    public BookRowMapper(ResultSet rs) throws SQLException {
+        this(rs, "");
+    }
+
+    /**
+     * @param rs     A lekérdezés eredménye.
+     * @param prefix Az oszlopnevek elõtagja, ha a {@link #projection(String, String)} ilyet adott.
+     */
+    public BookRowMapper(ResultSet rs, String prefix) throws SQLException {
+        id = RowMapper.findColumn(rs, prefix + "id");
+        author = RowMapper.findColumn(rs, prefix + "author");
+        title = RowMapper.findColumn(rs, prefix + "title");
+        year = RowMapper.findColumn(rs, prefix + "year");
+        category = RowMapper.findColumn(rs, prefix + "category");
+        price = RowMapper.findColumn(rs, prefix + "price");
+        pieces = RowMapper.findColumn(rs, prefix + "pieces");
+        ancient = RowMapper.findColumn(rs, prefix + "ancient");
+    }
+
+    /**
+     * @return A mapper által olvasott oszlopok listája, SELECT-be illeszthetõ formában.
+     */
+    public static String projection() {
+        return RowMapper.projection(null, "", COLUMNS);
+    }
+
+    /**
+     * @return A mapper által olvasott oszlopok, aliassal minõsítve és elõtaggal ellátva.
+     */
+    public static String projection(String alias, String prefix) {
+        return RowMapper.projection(alias, prefix, COLUMNS);
+    }
+
+    @Override
+    public Book map(ResultSet rs, Book target) throws SQLException {
+        Book book = target != null ? target : new Book();
+        book.setId(rs.getInt(id));
+        book.setAuthor(rs.getString(author));
+        book.setTitle(rs.getString(title));
+        book.setYear(rs.getInt(year));
+        book.setCategory(rs.getString(category));
+        book.setPrice(rs.getInt(price));
+        book.setPiece(rs.getInt(pieces));
+        book.setAncient(rs.getInt(ancient) == 1);
+        return book;
+    }
+}
@@ -0,0 +1,68 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import org.sqlite.BusyHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A {@code PRAGMA busy_timeout} helyett használt várakozás zárolt
+ * adatbázisra. A beépített kezelõ a használt SQLite build-ben egész
+ * másodperceket alszik, így egy pár ms-os írásra is legalább egy
+ * másodpercet vár, és több egyszerre író szálnál hamar kifut az idõbõl.
+ * Ez a kezelõ milliszekundumos, fokozatosan növekvõ szünetekkel próbálkozik
+ * újra, amíg le nem jár az idõ.
+ * <p>
+ * A sqlite-jdbc ezen verziója a busy handlert nem kapcsolatonként, hanem a
+ * folyamatban egyetlen példányként tárolja: minden kapcsolat a legutoljára
+ * beállítottat hívja. Ezért a határidõt nem a példány, hanem a váró szál
+ * tárolja (egy szál egyszerre egy utasításon vár), így egy közben nyitott
+ * új kapcsolat nem szakítja meg a már folyó várakozásokat.
+ * </p>
+ */
+final class BusyTimeout extends BusyHandler {
+
+    // Az újrapróbálások közötti leghosszabb szünet
+    private static final long MAX_SLEEP_MILLIS = 16;
+
+    // A váró szál aktuális várakozásának határideje (System.nanoTime)
+    private static final ThreadLocal<long[]> DEADLINE = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long timeoutNanos;
+
+    private BusyTimeout(int timeoutMillis) {
+        this.timeoutNanos = timeoutMillis * 1_000_000L;
+    }
+
+    /**
+     * Beállítja a várakozást a kapcsolatra (a korábbi busy timeout helyett).
+     *
+     * @param timeoutMillis Ennyit vár egy zárolt adatbázisra, mielõtt hibát adna.
+     */
+    static void install(Connection conn, int timeoutMillis) throws SQLException {
+        BusyHandler.setHandler(conn, new BusyTimeout(timeoutMillis));
+    }
+
+    /**
+     * @param retries Az eddigi próbálkozások száma az aktuális zárolásnál.
+     * @return 0, ha feladjuk (a mûvelet SQLITE_BUSY hibát ad), egyébként újrapróbál.
+     */
+    @Override
+    protected int callback(int retries) {
+        long now = System.nanoTime();
+        long[] deadline = DEADLINE.get();
+        if (retries == 0) {
+            deadline[0] = now + timeoutNanos;
+        } else if (now - deadline[0] >= 0) {
+            return 0;
+        }
+
+        try {
+            Thread.sleep(Math.min(1L << Math.min(retries, 4), MAX_SLEEP_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,13 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A {@link ConnectionPool} által nyitott új fizikai kapcsolatok beállítása,
+ * mielõtt a pool elõször kiadná õket.
+ */
+public interface ConnectionInitializer {
+
+    void initialize(Connection conn) throws SQLException;
+}
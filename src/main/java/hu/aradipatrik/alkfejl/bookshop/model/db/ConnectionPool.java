@@ -0,0 +1,214 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Korlátos méretû adatbázis kapcsolat pool. A kapcsolatokat nem nyitjuk meg
+ * minden DAO hívásnál újra, hanem a használat után visszakerülnek a pool-ba.
+ * <p>
+ * A pool legfeljebb {@code maxSize} kapcsolatot ad ki egyszerre, a többi
+ * kérés várakozik. A régóta nem használt kapcsolatokat lezárja, kiadás elõtt
+ * pedig ellenõrzi, hogy a kapcsolat még él-e.
+ * </p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_SIZE = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String url;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+    private final ConnectionInitializer initializer;
+
+    // Egyszerre kiadható kapcsolatok száma
+    private final Semaphore permits;
+
+    // A szabad kapcsolatok, a legutóbb visszaadott van elöl (LIFO)
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url) {
+        this(url, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_MILLIS,
+                DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param url                 A JDBC kapcsolat URL-je.
+     * @param maxSize             Az egyszerre kiadható kapcsolatok maximális száma.
+     * @param idleTimeoutMillis   Ennyi ideig álló szabad kapcsolatot lezárunk.
+     * @param borrowTimeoutMillis Legfeljebb ennyit várunk egy szabad kapcsolatra.
+     * @param statementCacheSize  Kapcsolatonként ennyi utasítást tartunk elõfordítva.
+     */
+    public ConnectionPool(String url, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, int statementCacheSize) {
+        this(url, maxSize, idleTimeoutMillis, borrowTimeoutMillis, statementCacheSize, conn -> { });
+    }
+
+    /**
+     * @param url                 A JDBC kapcsolat URL-je.
+     * @param maxSize             Az egyszerre kiadható kapcsolatok maximális száma.
+     * @param idleTimeoutMillis   Ennyi ideig álló szabad kapcsolatot lezárunk.
+     * @param borrowTimeoutMillis Legfeljebb ennyit várunk egy szabad kapcsolatra.
+     * @param statementCacheSize  Kapcsolatonként ennyi utasítást tartunk elõfordítva.
+     * @param initializer         Minden új fizikai kapcsolatra lefut (pl. PRAGMA beállítások).
+     */
+    public ConnectionPool(String url, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, int statementCacheSize,
+                          ConnectionInitializer initializer) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.initializer = initializer;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Kiad egy kapcsolatot a pool-ból. Ha van szabad, egészséges kapcsolat,
+     * azt adja vissza, egyébként újat nyit (amíg a korlát engedi).
+     *
+     * @return A kölcsönzött kapcsolat, amit {@link PooledConnection#close()}-zal kell visszaadni.
+     * @throws SQLException Ha a pool le van zárva, lejárt a várakozás, vagy nem sikerült kapcsolódni.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+        }
+
+        try {
+            PooledConnection conn;
+            while ((conn = pollIdle()) != null) {
+                if (conn.isHealthy(VALIDATION_TIMEOUT_SECONDS)) {
+                    conn.markBorrowed();
+                    return conn;
+                }
+                conn.closePhysically();
+            }
+
+            conn = new PooledConnection(this, openConnection(), statementCacheSize);
+            conn.markBorrowed();
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try {
+            initializer.initialize(conn);
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    /**
+     * Visszaveszi a kapcsolatot a pool-ba. A {@link PooledConnection#close()} hívja.
+     */
+    void release(PooledConnection conn) {
+        try {
+            if (!closed && conn.reset()) {
+                List<PooledConnection> evicted;
+                synchronized (this) {
+                    idle.push(conn);
+                    evicted = evictIdle();
+                }
+                closeAll(evicted);
+            } else {
+                conn.closePhysically();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Lezárja a pool-t és az összes szabad kapcsolatot. A még kiadott
+     * kapcsolatok visszaadáskor záródnak le.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        closeAll(toClose);
+    }
+
+    private PooledConnection pollIdle() {
+        List<PooledConnection> evicted;
+        PooledConnection conn;
+        synchronized (this) {
+            evicted = evictIdle();
+            conn = idle.poll();
+        }
+        closeAll(evicted);
+        return conn;
+    }
+
+    /**
+     * Kiveszi a szabad kapcsolatok közül a túl régóta állókat. A legrégebbiek
+     * a sor végén vannak. Csak szinkronizáltan hívható, a lezárást a hívó végzi.
+     */
+    private List<PooledConnection> evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long limit = System.currentTimeMillis() - idleTimeoutMillis;
+
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection conn = it.next();
+            if (conn.getLastReleased() >= limit) {
+                break;
+            }
+            it.remove();
+            evicted.add(conn);
+        }
+        return evicted;
+    }
+
+    private static void closeAll(List<PooledConnection> connections) {
+        for (PooledConnection conn : connections) {
+            conn.closePhysically();
+        }
+    }
+}
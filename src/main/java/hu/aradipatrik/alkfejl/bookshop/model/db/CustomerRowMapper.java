@@ -0,0 +1,71 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A Customer tábla sorait {@link Customer} példánnyá alakító mapper.
+ */
+public class CustomerRowMapper implements RowMapper<Customer> {
+
+    private static final String[] COLUMNS = {
+            "id", "name", "age", "female", "rented", "student", "grantee", "qualification" };
+
+    private final int id;
+    private final int name;
+    private final int age;
+    private final int female;
+    private final int rented;
+    private final int student;
+    private final int grantee;
+    private final int qualification;
+
+    public CustomerRowMapper(ResultSet rs) throws SQLException {
+        this(rs, "");
+    }
+
+    /**
+     * @param rs     A lekérdezés eredménye.
+     * @param prefix Az oszlopnevek elõtagja, ha a {@link #projection(String, String)} ilyet adott.
+     */
+    public CustomerRowMapper(ResultSet rs, String prefix) throws SQLException {
+        id = RowMapper.findColumn(rs, prefix + "id");
+        name = RowMapper.findColumn(rs, prefix + "name");
+        age = RowMapper.findColumn(rs, prefix + "age");
+        female = RowMapper.findColumn(rs, prefix + "female");
+        rented = RowMapper.findColumn(rs, prefix + "rented");
+        student = RowMapper.findColumn(rs, prefix + "student");
+        grantee = RowMapper.findColumn(rs, prefix + "grantee");
+        qualification = RowMapper.findColumn(rs, prefix + "qualification");
+    }
+
+    /**
+     * @return A mapper által olvasott oszlopok listája, SELECT-be illeszthetõ formában.
+     */
+    public static String projection() {
+        return RowMapper.projection(null, "", COLUMNS);
+    }
+
+    /**
+     * @return A mapper által olvasott oszlopok, aliassal minõsítve és elõtaggal ellátva.
+     */
+    public static String projection(String alias, String prefix) {
+        return RowMapper.projection(alias, prefix, COLUMNS);
+    }
+
+    @Override
+    public Customer map(ResultSet rs, Customer target) throws SQLException {
+        Customer customer = target != null ? target : new Customer();
+        customer.setId(rs.getInt(id));
+        customer.setName(rs.getString(name));
+        customer.setAge(rs.getInt(age));
+        customer.setFemale(rs.getInt(female) == 1);
+        customer.setRented(rs.getInt(rented) == 1);
+        customer.setStudent(rs.getInt(student) == 1);
+        customer.setGrantee(rs.getInt(grantee) == 1);
+        customer.setQualification(rs.getString(qualification));
+        return customer;
+    }
+}
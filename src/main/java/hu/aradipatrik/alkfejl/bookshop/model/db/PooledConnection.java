@@ -0,0 +1,154 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link ConnectionPool}-ból kölcsönzött, hosszú életû adatbázis kapcsolat.
+ * A kapcsolathoz tartozik egy {@link PreparedStatement} cache, így ugyanazt az
+ * SQL utasítást nem kell minden hívásnál újra lefordítani.
+ * <p>
+ * A {@link #close()} nem zárja le a fizikai kapcsolatot, hanem visszaadja azt a
+ * pool-nak, ezért try-with-resources blokkban használjuk.
+ * </p>
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    // Az utolsó visszaadás ideje, ez alapján dobja el a pool a régóta álló kapcsolatokat
+    private long lastReleased;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection connection, final int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+
+        // LRU cache: a legrégebben használt utasítást zárjuk le, ha betelt
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Visszaadja a fizikai kapcsolatot (pl. tranzakciókezeléshez).
+     * Lezárni tilos, azt a pool végzi!
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Visszaad egy elõfordított utasítást a megadott SQL-hez. Ha a kapcsolaton
+     * már fordítottuk, akkor a cache-bõl adjuk vissza, törölt paraméterekkel.
+     * <p>
+     * A visszaadott utasítást lezárni tilos, a belõle nyert
+     * {@link java.sql.ResultSet}-et viszont le kell zárni.
+     * </p>
+     *
+     * @param sql A paraméterezhetõ SQL utasítás.
+     * @return A kapcsolathoz tartozó {@link PreparedStatement}.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pst = statements.get(sql);
+
+        if (pst == null || pst.isClosed()) {
+            pst = connection.prepareStatement(sql);
+            statements.put(sql, pst);
+        } else {
+            pst.clearParameters();
+        }
+
+        return pst;
+    }
+
+    /**
+     * Visszaadja a kapcsolatot a pool-nak.
+     */
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            pool.release(this);
+        }
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    long getLastReleased() {
+        return lastReleased;
+    }
+
+    /**
+     * Ellenõrzi, hogy a kapcsolat még használható-e.
+     */
+    boolean isHealthy(int timeoutSeconds) {
+        try {
+            return !connection.isClosed() && connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Visszaállítja a kapcsolatot alapállapotba, mielõtt a pool újra kiadná.
+     * Egy félbehagyott tranzakciót visszagörgetünk.
+     *
+     * @return True, ha a kapcsolat újra kiadható, false egyébként.
+     */
+    boolean reset() {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            lastReleased = System.currentTimeMillis();
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            System.out.println("Failed to reset pooled connection.");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Lezárja a cache-elt utasításokat és a fizikai kapcsolatot.
+     */
+    void closePhysically() {
+        for (PreparedStatement pst : statements.values()) {
+            closeQuietly(pst);
+        }
+        statements.clear();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("Failed to close database connection.");
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement pst) {
+        try {
+            pst.close();
+        } catch (SQLException e) {
+            // a lezárás hibája nem befolyásolja a mûködést
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Az SQLite kapcsolatokra alkalmazott PRAGMA beállítások elõre összeállított
+ * csomagjai. A pool minden új kapcsolatára alkalmazzuk.
+ */
+public enum PragmaProfile {
+
+    /**
+     * Az SQLite alapértelmezése: rollback journal, teljes fsync minden commitnál.
+     * Az olvasók blokkolják az írót és fordítva.
+     */
+    LEGACY("DELETE", "FULL", 0, 0, null),
+
+    /**
+     * WAL journal teljes fsync-kel: az olvasók nem blokkolják az írót, és
+     * áramszünet esetén sem veszik el commitolt tranzakció.
+     */
+    DURABLE("WAL", "FULL", -16 * 1024, 64L * 1024 * 1024, "MEMORY"),
+
+    /**
+     * WAL journal, fsync csak checkpointnál. Alkalmazás összeomlásakor nem
+     * vész el adat, áramszünetkor az utolsó tranzakciók elveszhetnek.
+     */
+    FAST("WAL", "NORMAL", -64 * 1024, 256L * 1024 * 1024, "MEMORY");
+
+    private final String journalMode;
+    private final String synchronous;
+
+    // Pozitív érték lapokban, negatív KiB-ban adja meg a cache méretét (0: alapértelmezés)
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+
+    PragmaProfile(String journalMode, String synchronous, int cacheSize, long mmapSize, String tempStore) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+    }
+
+    /**
+     * Alkalmazza a profilt a kapcsolatra.
+     *
+     * @param conn              Egy frissen nyitott kapcsolat.
+     * @param busyTimeoutMillis Ennyit vár a kapcsolat egy zárolt adatbázisra, mielõtt hibát adna.
+     */
+    public void apply(Connection conn, int busyTimeoutMillis) throws SQLException {
+        // még a journal_mode elõtt, mert a WAL-ra váltás is várhat zárolásra
+        BusyTimeout.install(conn, busyTimeoutMillis);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA journal_mode = " + journalMode);
+            st.execute("PRAGMA synchronous = " + synchronous);
+            if (cacheSize != 0) {
+                st.execute("PRAGMA cache_size = " + cacheSize);
+            }
+            if (mmapSize != 0) {
+                st.execute("PRAGMA mmap_size = " + mmapSize);
+            }
+            if (tempStore != null) {
+                st.execute("PRAGMA temp_store = " + tempStore);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A SoldBookInstances, Book és Customer táblák joinjának sorait
+ * {@link Purchase} példánnyá alakító mapper. A könyv és a vásárló oszlopait
+ * a {@link BookRowMapper} és a {@link CustomerRowMapper} olvassa, elõtaggal
+ * ellátott oszlopnevek alapján.
+ * <p>
+ * A mapper egy lekérdezés idejére identity map-et tart: az azonos id-jú
+ * könyvekhez és vásárlókhoz egyetlen (teljesen feltöltött) példányt hoz
+ * létre, így pl. egy sokszor eladott könyv vásárlásai ugyanarra a
+ * {@link Book}-ra hivatkoznak, és a példányok identitás szerint is
+ * összehasonlíthatók. A map legfeljebb annyi elemet tart, ahány különbözõ
+ * könyv és vásárló szerepel az eredményben.
+ * </p>
+ */
+public class PurchaseRowMapper implements RowMapper<Purchase> {
+
+    private static final String PURCHASE_PREFIX = "purchase_";
+    private static final String BOOK_PREFIX = "book_";
+    private static final String CUSTOMER_PREFIX = "customer_";
+
+    private static final String[] COLUMNS = { "id", "sellDate", "price" };
+
+    private final int id;
+    private final int sellDate;
+    private final int price;
+    private final int bookId;
+    private final int customerId;
+    private final BookRowMapper bookMapper;
+    private final CustomerRowMapper customerMapper;
+
+    // A lekérdezés során már beolvasott könyvek és vásárlók, id szerint
+    private final Map<Integer, Book> books = new HashMap<>();
+    private final Map<Integer, Customer> customers = new HashMap<>();
+
+    public PurchaseRowMapper(ResultSet rs) throws SQLException {
+        id = RowMapper.findColumn(rs, PURCHASE_PREFIX + "id");
+        sellDate = RowMapper.findColumn(rs, PURCHASE_PREFIX + "sellDate");
+        price = RowMapper.findColumn(rs, PURCHASE_PREFIX + "price");
+        bookId = RowMapper.findColumn(rs, BOOK_PREFIX + "id");
+        customerId = RowMapper.findColumn(rs, CUSTOMER_PREFIX + "id");
+        bookMapper = new BookRowMapper(rs, BOOK_PREFIX);
+        customerMapper = new CustomerRowMapper(rs, CUSTOMER_PREFIX);
+    }
+
+    /**
+     * Visszaadja a join SELECT oszloplistáját.
+     *
+     * @param purchaseAlias A SoldBookInstances tábla aliasa.
+     * @param bookAlias     A Book tábla aliasa.
+     * @param customerAlias A Customer tábla aliasa.
+     */
+    public static String projection(String purchaseAlias, String bookAlias, String customerAlias) {
+        return RowMapper.projection(purchaseAlias, PURCHASE_PREFIX, COLUMNS) + ", " +
+                BookRowMapper.projection(bookAlias, BOOK_PREFIX) + ", " +
+                CustomerRowMapper.projection(customerAlias, CUSTOMER_PREFIX);
+    }
+
+    @Override
+    public Purchase map(ResultSet rs, Purchase target) throws SQLException {
+        Purchase purchase = target != null ? target : new Purchase();
+        purchase.setId(rs.getInt(id));
+
+        // az eladás napját a nap kezdetének idõpontjaként (epoch millis) tároljuk
+        long sellMillis = rs.getLong(sellDate);
+        purchase.setSellDate(rs.wasNull() ? null
+                : Instant.ofEpochMilli(sellMillis).atZone(ZoneId.systemDefault()).toLocalDate());
+        purchase.setPrice(rs.getInt(price));
+
+        if (target != null) {
+            // újrahasznosított bean: a hozzá tartozó könyvet és vásárlót is
+            // felülírjuk, ezeket nem oszthatjuk meg más sorokkal
+            purchase.setBook(bookMapper.map(rs, purchase.getBook()));
+            purchase.setCustomer(customerMapper.map(rs, purchase.getCustomer()));
+            return purchase;
+        }
+
+        Book book = books.get(rs.getInt(bookId));
+        if (book == null) {
+            book = bookMapper.map(rs, null);
+            books.put(book.getId(), book);
+        }
+        purchase.setBook(book);
+
+        Customer customer = customers.get(rs.getInt(customerId));
+        if (customer == null) {
+            customer = customerMapper.map(rs, null);
+            customers.put(customer.getId(), customer);
+        }
+        purchase.setCustomer(customer);
+        return purchase;
+    }
+}
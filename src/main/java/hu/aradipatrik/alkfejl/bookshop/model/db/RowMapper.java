@@ -0,0 +1,79 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Egy {@link ResultSet} sorait bean-né alakító leképezés. A mapper az
+ * oszlopok indexét a lekérdezés elején egyszer oldja fel (név alapján), a
+ * sorok olvasásakor már csak index alapján éri el az oszlopokat.
+ *
+ * @param <T> A bean típusa.
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Beolvassa a {@link ResultSet} aktuális sorát.
+     *
+     * @param rs     Az aktuális sorra állított {@link ResultSet}.
+     * @param target Ha nem null, ezt a példányt tölti fel, egyébként újat hoz létre.
+     * @return A feltöltött bean.
+     */
+    T map(ResultSet rs, T target) throws SQLException;
+
+    /**
+     * Egy lekérdezés eredményéhez létrehozza a mappert (feloldja az oszlopindexeket).
+     *
+     * @param <T> A bean típusa.
+     */
+    interface Factory<T> {
+        RowMapper<T> create(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Megkeresi az oszlop indexét a {@link ResultSetMetaData} alapján. A
+     * {@link ResultSet#findColumn(String)}-nel szemben üres eredményre is mûködik.
+     *
+     * @param rs    A lekérdezés eredménye.
+     * @param label Az oszlop neve (vagy aliasa), kis- és nagybetû nem számít.
+     * @return Az oszlop 1-tõl kezdõdõ indexe.
+     */
+    static int findColumn(ResultSet rs, String label) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (label.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        throw new SQLException("No such column: " + label);
+    }
+
+    /**
+     * Összeállítja egy SELECT oszloplistáját, minden oszlopot a táblanév
+     * (alias) alapján minõsítve és elõtaggal ellátott névvel (pl.
+     * {@code b.title AS book_title}), így join esetén sem lesz kétértelmû oszlop.
+     *
+     * @param alias   A tábla aliasa, vagy null, ha nem kell minõsíteni.
+     * @param prefix  Az oszlopnevek elé kerülõ elõtag, vagy üres.
+     * @param columns Az oszlopok nevei.
+     */
+    static String projection(String alias, String prefix, String... columns) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            if (alias != null) {
+                sb.append(alias).append('.');
+            }
+            sb.append(column);
+            if (!prefix.isEmpty()) {
+                sb.append(" AS ").append(prefix).append(column);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,251 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verziózott séma migrációk futtatója. Az alkalmazott verziókat a
+ * {@code schema_version} táblában tartja nyilván, induláskor pedig sorban
+ * lefuttatja a még hiányzó migrációkat.
+ * <p>
+ * Az 1. verzió az eredeti {@code /bookshop.ddl} séma. Azokat az
+ * adatbázisokat, melyek még a migrációk bevezetése elõtt jöttek létre (van
+ * Book tábla, de nincs verzió tábla), 1. verziójúnak tekinti.
+ * </p>
+ */
+public class SchemaMigrator {
+
+    /**
+     * Az ismert migrációk, verzió szerint növekvõ sorrendben. Új migrációt
+     * mindig a lista végére kell tenni, a már kiadottakat nem szabad módosítani.
+     */
+    static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new Migration(1, "Baseline schema", "/bookshop.ddl"),
+            new Migration(2, "Purchase and category indexes", "/migrations/V2__purchase_indexes.sql"),
+            new Migration(3, "Book and customer search indexes", "/migrations/V3__search_indexes.sql"),
+            new Migration(4, "Book full-text search", "/migrations/V4__book_search.sql"),
+            new Migration(5, "Purchase sale price", "/migrations/V5__purchase_price.sql"),
+            new Migration(6, "Book author sort index", "/migrations/V6__author_index.sql")
+    ));
+
+    private static final String SQL_CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version " +
+                    "(version integer PRIMARY KEY, description text NOT NULL, applied_at integer NOT NULL)";
+
+    private static final String SQL_CURRENT_VERSION = "SELECT coalesce(max(version), 0) FROM schema_version";
+
+    private static final String SQL_ADD_VERSION =
+            "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+
+    private static final String SQL_TABLE_EXISTS =
+            "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = ?";
+
+    // A migrációs tranzakció rögtön az írási zárat kéri, így egy párhuzamosan
+    // induló másik példány itt, a busy handlerrel vár, nem a verzió
+    // olvasása utáni írásnál kap azonnali SQLITE_BUSY hibát
+    private static final String SQL_BEGIN = "BEGIN IMMEDIATE";
+    private static final String SQL_COMMIT = "COMMIT";
+    private static final String SQL_ROLLBACK = "ROLLBACK";
+
+    private static final Pattern BEGIN = Pattern.compile("\\bbegin\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END = Pattern.compile("\\bend\\b", Pattern.CASE_INSENSITIVE);
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Lefuttatja a még nem alkalmazott migrációkat. Minden migráció a
+     * verziójának rögzítésével együtt egy {@code BEGIN IMMEDIATE}
+     * tranzakcióban fut, így hiba esetén az adatbázis az utolsó sikeres
+     * verzión marad. Ha egyszerre több példány indul, a késõbbi megvárja az
+     * elsõ migrációját (a kapcsolat busy timeout-jáig), majd a már
+     * alkalmazott verziókat átugorja.
+     *
+     * @param conn Kapcsolat a (esetleg üres) adatbázishoz. Ha nyitott
+     *             tranzakciója van, azt a migrációk elõtt lezárja.
+     * @throws SQLException Ha egy migráció nem alkalmazható (pl. lejárt a várakozás az írási zárra).
+     * @return A most alkalmazott migrációk listája (üres, ha a séma naprakész).
+     */
+    public static List<Migration> migrate(Connection conn) throws SQLException {
+        List<Migration> applied = new ArrayList<>();
+
+        boolean autoCommit = conn.getAutoCommit();
+        // a tranzakciókat mi nyitjuk, nem a driver (az halasztott is lehet)
+        conn.setAutoCommit(true);
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate(SQL_CREATE_VERSION_TABLE);
+
+            for (Migration migration : MIGRATIONS) {
+                st.execute(SQL_BEGIN);
+                try {
+                    // a verziót a tranzakción belül olvassuk, így egy
+                    // párhuzamosan induló másik példány nem futtatja kétszer
+                    int current = currentVersion(conn);
+                    if (current == 0 && tableExists(conn, "Book")) {
+                        recordVersion(conn, MIGRATIONS.get(0));
+                        current = 1;
+                    }
+
+                    if (migration.getVersion() > current) {
+                        for (String sql : readStatements(migration.getResource())) {
+                            st.executeUpdate(sql);
+                        }
+                        recordVersion(conn, migration);
+                        applied.add(migration);
+                    }
+                    st.execute(SQL_COMMIT);
+                } catch (SQLException e) {
+                    st.execute(SQL_ROLLBACK);
+                    throw new SQLException("Failed to apply schema migration " + migration, e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * @return Az adatbázis jelenlegi séma verziója, 0, ha még nincs verzió tábla.
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        if (!tableExists(conn, "schema_version")) {
+            return 0;
+        }
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SQL_CURRENT_VERSION)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Lekéri az SQLite végrehajtási tervét ({@code EXPLAIN QUERY PLAN}) a
+     * megadott lekérdezéshez. A paramétereket nem kell beállítani.
+     *
+     * @return A terv lépései (a detail oszlop), a végrehajtás sorrendjében.
+     */
+    public static List<String> explainQueryPlan(Connection conn, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            int detail = RowMapper.findColumn(rs, "detail");
+            while (rs.next()) {
+                plan.add(rs.getString(detail));
+            }
+        }
+        return plan;
+    }
+
+    private static void recordVersion(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement pst = conn.prepareStatement(SQL_ADD_VERSION)) {
+            pst.setInt(1, migration.getVersion());
+            pst.setString(2, migration.getDescription());
+            pst.setLong(3, System.currentTimeMillis());
+            pst.executeUpdate();
+        }
+    }
+
+    static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement pst = conn.prepareStatement(SQL_TABLE_EXISTS)) {
+            pst.setString(1, table);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /**
+     * Beolvassa egy classpath erõforrás pontosvesszõvel elválasztott SQL
+     * utasításait. A trigger törzsében ({@code begin ... end}) lévõ
+     * pontosvesszõk nem zárják le az utasítást.
+     */
+    static List<String> readStatements(String resource) throws SQLException {
+        List<String> statements = new ArrayList<>();
+
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new SQLException("Missing schema resource: " + resource);
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+
+            StringBuilder statement = new StringBuilder();
+            for (String sql : sb.toString().split(";")) {
+                statement.append(sql);
+                if (count(BEGIN, statement) > count(END, statement)) {
+                    statement.append(';');
+                    continue;
+                }
+
+                if (!statement.toString().trim().isEmpty()) {
+                    statements.add(statement.toString().trim());
+                }
+                statement.setLength(0);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read schema resource: " + resource, e);
+        }
+        return statements;
+    }
+
+    private static int count(Pattern pattern, CharSequence text) {
+        int count = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Egy séma migráció: egy verziószám és a hozzá tartozó SQL erõforrás.
+     */
+    public static class Migration {
+
+        private final int version;
+        private final String description;
+        private final String resource;
+
+        Migration(int version, String description, String resource) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        @Override
+        public String toString() {
+            return "V" + version + " (" + description + ")";
+        }
+    }
+}
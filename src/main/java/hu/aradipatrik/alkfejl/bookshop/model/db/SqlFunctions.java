@@ -0,0 +1,55 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import org.sqlite.Function;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * A pool kapcsolataira regisztrált Java SQL függvények.
+ */
+public final class SqlFunctions {
+
+    /**
+     * A beépített {@code lower()} csak az ASCII betûket alakítja kisbetûssé
+     * (és a {@code LIKE} is csak ezekre kis-nagybetû független). Ez a Java
+     * változat minden betûre mûködik, így a részszöveg keresés ugyanazokat a
+     * sorokat adja, mint a memóriabeli adattárak
+     * {@code toLowerCase(Locale.ROOT)} összehasonlítása.
+     * <p>
+     * Saját néven regisztráljuk, a beépített {@code lower()} változatlan
+     * marad: soronként egy Java hívásba kerül, és a sqlite-jdbc ezen
+     * verziója nem tudja determinisztikusnak jelölni, ezért index vagy
+     * generált oszlop nem használhatja. Csak a keresési feltételekben
+     * szerepel.
+     * </p>
+     */
+    public static final String UNICODE_LOWER = "unicode_lower";
+
+    private SqlFunctions() {
+    }
+
+    /**
+     * Regisztrálja a függvényeket a kapcsolatra.
+     */
+    public static void register(Connection conn) throws SQLException {
+        Function.create(conn, UNICODE_LOWER, new Lower());
+    }
+
+    private static final class Lower extends Function {
+        @Override
+        protected void xFunc() throws SQLException {
+            if (args() != 1) {
+                error(UNICODE_LOWER + "() takes exactly one argument");
+                return;
+            }
+            String value = value_text(0);
+            if (value == null) {
+                result();
+            } else {
+                result(value.toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package hu.aradipatrik.alkfejl.bookshop.model.db;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Az adatbázis tároló beállításai: a fájl helye, a kapcsolatokra alkalmazott
+ * {@link PragmaProfile} és a {@link ConnectionPool} paraméterei.
+ * <p>
+ * A {@link #fromSystemProperties()} a következõ rendszer tulajdonságokat olvassa
+ * (pl. {@code java -Dbookshop.db.path=/var/lib/bookshop/bookshop.db ...}):
+ * </p>
+ * <ul>
+ * <li>{@code bookshop.db.path} - az adatbázis fájl, alapértelmezés: {@code ~/.bookshop/bookshop.db}</li>
+ * <li>{@code bookshop.db.profile} - LEGACY, DURABLE vagy FAST, alapértelmezés: DURABLE</li>
+ * <li>{@code bookshop.db.busyTimeout} - zárolt adatbázisra várakozás (ms), alapértelmezés: 5000</li>
+ * <li>{@code bookshop.db.poolSize} - nyitott kapcsolatok maximális száma</li>
+ * <li>{@code bookshop.db.idleTimeout} - nem használt kapcsolat lezárása ennyi idõ után (ms)</li>
+ * </ul>
+ */
+public class StorageConfig {
+
+    public static final PragmaProfile DEFAULT_PROFILE = PragmaProfile.DURABLE;
+    public static final int DEFAULT_BUSY_TIMEOUT_MILLIS = 5000;
+
+    private Path databasePath = Paths.get(System.getProperty("user.home"), ".bookshop", "bookshop.db");
+    private PragmaProfile profile = DEFAULT_PROFILE;
+    private int busyTimeoutMillis = DEFAULT_BUSY_TIMEOUT_MILLIS;
+    private int poolSize = ConnectionPool.DEFAULT_MAX_SIZE;
+    private long idleTimeoutMillis = ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    /**
+     * Összeállítja a beállításokat a rendszer tulajdonságokból, a meg nem
+     * adott értékeknél az alapértelmezéssel.
+     */
+    public static StorageConfig fromSystemProperties() {
+        StorageConfig config = new StorageConfig();
+
+        String path = System.getProperty("bookshop.db.path");
+        if (path != null) {
+            config.setDatabasePath(Paths.get(path));
+        }
+
+        String profile = System.getProperty("bookshop.db.profile");
+        if (profile != null) {
+            config.setProfile(PragmaProfile.valueOf(profile.trim().toUpperCase()));
+        }
+
+        config.setBusyTimeoutMillis(Integer.getInteger("bookshop.db.busyTimeout", config.getBusyTimeoutMillis()));
+        config.setPoolSize(Integer.getInteger("bookshop.db.poolSize", config.getPoolSize()));
+        config.setIdleTimeoutMillis(Long.getLong("bookshop.db.idleTimeout", config.getIdleTimeoutMillis()));
+
+        return config;
+    }
+
+    /**
+     * @return Az adatbázis fájlhoz tartozó JDBC URL. A tranzakciók (a
+     * {@code setAutoCommit(false)} után) {@code BEGIN IMMEDIATE}-tel
+     * indulnak, vagyis rögtön az írási zárat kérik. Egy olvasással kezdõdõ
+     * halasztott tranzakció WAL módban azonnal SQLITE_BUSY hibát kapna, ha
+     * közben más írt, mert a busy handler ilyenkor nem próbálkozik újra.
+     * Itt minden tranzakció ír, így a várakozás a kezdéskor, a busy
+     * handlerrel történik.
+     */
+    public String getJdbcUrl() {
+        return "jdbc:sqlite:" + databasePath.toAbsolutePath() + "?transaction_mode=IMMEDIATE";
+    }
+
+    /**
+     * @return A pool új kapcsolataira a profilt alkalmazó és a Java SQL
+     * függvényeket regisztráló inicializáló.
+     */
+    public ConnectionInitializer getConnectionInitializer() {
+        return conn -> {
+            profile.apply(conn, busyTimeoutMillis);
+            SqlFunctions.register(conn);
+        };
+    }
+
+    public Path getDatabasePath() {
+        return databasePath;
+    }
+
+    public void setDatabasePath(Path databasePath) {
+        this.databasePath = databasePath;
+    }
+
+    public PragmaProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(PragmaProfile profile) {
+        this.profile = profile;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageConfig [" +
+                "databasePath=" + databasePath + ", profile=" + profile +
+                ", busyTimeoutMillis=" + busyTimeoutMillis + ", poolSize=" + poolSize +
+                ", idleTimeoutMillis=" + idleTimeoutMillis + "]";
+    }
+}
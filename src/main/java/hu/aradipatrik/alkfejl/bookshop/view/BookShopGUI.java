@@ -3,8 +3,15 @@ package hu.aradipatrik.alkfejl.bookshop.view;
 import hu.aradipatrik.alkfejl.bookshop.controller.BookShopController;
 
 import java.awt.Container;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
 
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
 /**
  * Ez az osztály indítja el a GUI-t, és ezen keresztül érhetõ el a control osztály a többi gui elem számára.
@@ -37,6 +44,14 @@ public class BookShopGUI {
         // Ezt a viselkedést módosítjuk arra, hogy az ablak ténylegesen záródjon be.
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+        // Kilépés elõtt a még sorban álló vásárlásokat kiírjuk
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                controller.shutdown();
+            }
+        });
+
         // Gyártunk egy bookMenuBar objektumot
         BookShopMenuBar bookMenuBar = new BookShopMenuBar(this);
 
@@ -60,6 +75,22 @@ public class BookShopGUI {
         window.setVisible(true);
     }
 
+    /**
+     * A controller aszinkron hívásának eredményét a GUI szálán (EDT) adja
+     * át a callback-nek, így abban a Swing komponensek biztonságosan
+     * módosíthatók. Hiba esetén az eredmény null, a hiba pedig a tényleges
+     * kivétel (a {@link CompletionException} nélkül); megszakítás esetén
+     * {@link CancellationException}.
+     */
+    public <T> void onEdt(CompletableFuture<T> future, BiConsumer<? super T, Throwable> callback) {
+        future.whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            SwingUtilities.invokeLater(() -> callback.accept(result, cause));
+        });
+    }
+
     /**
      * Visszaadja az alkalmazás fõablakát. A metódus az alkalmazás belsõ
      * vázának, infrastruktúrájának részét képezi, minden alkalmazásban szükség
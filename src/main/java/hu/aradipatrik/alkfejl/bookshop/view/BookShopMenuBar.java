@@ -1,5 +1,6 @@
 package hu.aradipatrik.alkfejl.bookshop.view;
 
+import hu.aradipatrik.alkfejl.bookshop.controller.BookShopChangeListener;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
@@ -10,22 +11,34 @@ import hu.aradipatrik.alkfejl.bookshop.view.tablemodels.BookTableModel;
 import hu.aradipatrik.alkfejl.bookshop.view.tablemodels.CustomerTableModel;
 import hu.aradipatrik.alkfejl.bookshop.view.tablemodels.PurchaseTableModel;
 
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableModel;
 
 /**
  * A {@link BookShopMenuBar} osztály reprezentálja a menüt.
  * Azért teheti ezt meg, mert a {@link JMenuBar} osztályból származik.
  * Így a menüre a this-szel hivatkozhatunk.
  */
-public class BookShopMenuBar extends JMenuBar implements ActionListener {
+public class BookShopMenuBar extends JMenuBar implements ActionListener, BookShopChangeListener {
 
     // A JMenuBar implementálja a Serializable interfészt, emiatt kell a serialVersionUID
     // Ez máshol is elõfordulhat, feloldása: az osztály mellett bal oldalt sárga
@@ -34,6 +47,13 @@ public class BookShopMenuBar extends JMenuBar implements ActionListener {
     private static final long serialVersionUID = 2973555574160940115L;
     private BookShopGUI gui;
 
+    // Az éppen futó listázás, új listázás indításakor megszakítjuk
+    private CompletableFuture<?> currentLoad;
+
+    // A fõablakban éppen látható táblázat modellje, az újonnan felvett sorok
+    // ehhez adódnak hozzá (teljes újratöltés nélkül)
+    private TableModel shownModel;
+
     public BookShopMenuBar(BookShopGUI gui) {
         super();
         this.gui = gui;
@@ -42,6 +62,9 @@ public class BookShopMenuBar extends JMenuBar implements ActionListener {
         createMenuPoint(Labels.customer, Labels.add_customer, Labels.list_customers);
         createMenuPoint(Labels.book, Labels.buy_book, Labels.list_books);
         createMenuPoint(Labels.sell, Labels.sell_book, Labels.list_sold_books);
+
+        // Az új sorokról értesítést kérünk a controllertõl
+        gui.getController().addChangeListener(this);
     }
 
     private void createMenuPoint(String name, String... subnames) {
@@ -81,33 +104,112 @@ public class BookShopMenuBar extends JMenuBar implements ActionListener {
             // AddCustomerDialog-ot indítunk
             new AddCustomerDialog(gui, true);
         } else if (actionCommand.equals(Labels.list_customers)) {
-            List<Customer> customers = gui.getController().getCustomers();
-
-            // Csinálunk egy táblázatot, a CustomerTableModel alapjan, ami
-            // megkapja a controltol a customereket
-            JTable table = new JTable(new CustomerTableModel(customers));
-
-            // A táblazatot rárakjuk egy ScrollPane-re, így ha az túl nagy lenne
-            // az ablak méretéhez képest, akkor is görgetheto lesz
-            JScrollPane container = new JScrollPane(table);
-
-            // Ezt a ScrollPane-t állítjuk be a fõablak tartalmának
-            gui.setActualContent(container);
+            // A customereket a háttérben kérjük le a controllertõl, a táblázat
+            // a CustomerTableModel alapján készül el, ha megérkeztek
+            showTable(gui.getController().getCustomersAsync(), CustomerTableModel::new);
         } else if(actionCommand.equals(Labels.buy_book)) {
             new BuyBookDialog(gui, true);
         } else if(actionCommand.equals(Labels.list_books)) {
-            List<Book> books = gui.getController().getBooks();
-            JTable table = new JTable(new BookTableModel(books));
-            JScrollPane container = new JScrollPane(table);
-            gui.setActualContent(container);
+            showTable(gui.getController().getBooksAsync(), BookTableModel::new);
         } else if (actionCommand.equals(Labels.sell_book)) {
             new SellBookDialog(gui, true);
         } else if (actionCommand.equals(Labels.list_sold_books)) {
-            List<Purchase> purchases = gui.getController().getPurchases();
-            JTable table = new JTable(new PurchaseTableModel(purchases));
-            JScrollPane container = new JScrollPane(table);
-            gui.setActualContent(container);
+            showTable(gui.getController().getPurchasesAsync(), PurchaseTableModel::new);
         }
     }
 
+    /**
+     * Amíg a lista betöltése tart, egy megszakítható folyamatjelzõt mutat,
+     * majd a GUI szálán kirakja a lista táblázatát a fõablakba.
+     */
+    private <T> void showTable(CompletableFuture<List<T>> load,
+                               Function<List<T>, TableModel> tableModel) {
+        if (currentLoad != null) {
+            currentLoad.cancel(true);
+        }
+        currentLoad = load;
+        shownModel = null;
+
+        gui.setActualContent(createProgressPanel(load));
+
+        gui.onEdt(load, (items, error) -> {
+            if (currentLoad != load) {
+                // Közben újabb listázást indítottak, ez az eredmény már nem kell
+                return;
+            }
+            currentLoad = null;
+
+            if (error instanceof CancellationException) {
+                gui.setActualContent(createMessagePanel(Labels.loading_cancelled));
+            } else if (error != null) {
+                gui.setActualContent(createMessagePanel(Labels.loading_failed));
+                JOptionPane.showMessageDialog(
+                        gui.getWindow(),
+                        Labels.loading_failed,
+                        Labels.error,
+                        JOptionPane.ERROR_MESSAGE);
+            } else {
+                // A táblazatot rárakjuk egy ScrollPane-re, így ha az túl nagy lenne
+                // az ablak méretéhez képest, akkor is görgetheto lesz
+                shownModel = tableModel.apply(items);
+                gui.setActualContent(new JScrollPane(new JTable(shownModel)));
+            }
+        });
+    }
+
+    /*
+     * A controller értesítései nem a GUI szálán érkeznek, ezért a táblázat
+     * módosítását átadjuk az EDT-nek.
+     */
+
+    @Override
+    public void customersAdded(List<Customer> customers) {
+        SwingUtilities.invokeLater(() -> {
+            if (shownModel instanceof CustomerTableModel) {
+                ((CustomerTableModel) shownModel).addRows(customers);
+            }
+        });
+    }
+
+    @Override
+    public void booksAdded(List<Book> books) {
+        SwingUtilities.invokeLater(() -> {
+            if (shownModel instanceof BookTableModel) {
+                ((BookTableModel) shownModel).addRows(books);
+            }
+        });
+    }
+
+    @Override
+    public void purchasesAdded(List<Purchase> purchases) {
+        SwingUtilities.invokeLater(() -> {
+            if (shownModel instanceof PurchaseTableModel) {
+                ((PurchaseTableModel) shownModel).addRows(purchases);
+            }
+        });
+    }
+
+    private JPanel createProgressPanel(CompletableFuture<?> load) {
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        JButton cancelButton = new JButton(Labels.cancel);
+        cancelButton.addActionListener(e -> load.cancel(true));
+
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        progressPanel.add(new JLabel(Labels.loading));
+        progressPanel.add(progressBar);
+        progressPanel.add(cancelButton);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(progressPanel, BorderLayout.NORTH);
+        return panel;
+    }
+
+    private JPanel createMessagePanel(String message) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(message, JLabel.CENTER), BorderLayout.NORTH);
+        return panel;
+    }
+
 }
@@ -19,6 +19,9 @@ public class Labels {
     public final static String error = "Error";
     public final static String empty = "";
     public final static String unknown = "Unknown";
+    public final static String loading = "Loading...";
+    public final static String loading_cancelled = "Loading cancelled.";
+    public final static String loading_failed = "Failed to load data!";
 
     // Main window
     public static final String main_window_title = "Book Shop";
@@ -183,18 +183,25 @@ public class AddCustomerDialog extends JDialog implements ActionListener {
             customer.setGrantee(granteeCheck.isSelected());
             customer.setQualification(qualificationCombo.getSelectedItem().toString());
 
-            if (!gui.getController().addCustomer(customer)) {
-                // Ha az addCustomer false-t ad vissza akkor egy hibaüzenetet
-                // írunk ki egy error dialogra(JOptionPane.ERROR_MESSAGE)
-                JOptionPane.showMessageDialog(
-                        gui.getWindow(),
-                        Labels.customer_exists,
-                        Labels.error,
-                        JOptionPane.ERROR_MESSAGE);
-            } else {
-                // Ha az addCustomer true-t ad vissza akkor bezárjuk a dialógust
-                setVisible(false);
-            }
+            // Amíg a mentés a háttérben fut, nem lehet újra OK-t nyomni
+            okButton.setEnabled(false);
+
+            gui.onEdt(gui.getController().addCustomerAsync(customer), (isStored, error) -> {
+                okButton.setEnabled(true);
+
+                if (error != null || !isStored) {
+                    // Ha az addCustomer false-t ad vissza akkor egy hibaüzenetet
+                    // írunk ki egy error dialogra(JOptionPane.ERROR_MESSAGE)
+                    JOptionPane.showMessageDialog(
+                            gui.getWindow(),
+                            Labels.customer_exists,
+                            Labels.error,
+                            JOptionPane.ERROR_MESSAGE);
+                } else {
+                    // Ha az addCustomer true-t ad vissza akkor bezárjuk a dialógust
+                    setVisible(false);
+                }
+            });
         } else if (cancelButton == e.getSource()) {
             // cancel esetén egyszerûen bezárjuk az ablakot
             setVisible(false);
@@ -160,15 +160,22 @@ public class BuyBookDialog extends JDialog implements ActionListener {
             book.setTitle(titleTextfield.getText());
             book.setYear((int) yearSpinner.getValue());
 
-            if (!gui.getController().addBook(book)) {
-                JOptionPane.showMessageDialog(
-                        gui.getWindow(),
-                        Labels.book_exists,
-                        Labels.error,
-                        JOptionPane.ERROR_MESSAGE);
-            } else {
-                setVisible(false);
-            }
+            // Amíg a mentés a háttérben fut, nem lehet újra OK-t nyomni
+            okButton.setEnabled(false);
+
+            gui.onEdt(gui.getController().addBookAsync(book), (isStored, error) -> {
+                okButton.setEnabled(true);
+
+                if (error != null || !isStored) {
+                    JOptionPane.showMessageDialog(
+                            gui.getWindow(),
+                            Labels.book_exists,
+                            Labels.error,
+                            JOptionPane.ERROR_MESSAGE);
+                } else {
+                    setVisible(false);
+                }
+            });
         } else if (cancelButton == e.getSource()) {
             // cancel esetén egyszerûen bezárjuk az ablakot
             setVisible(false);
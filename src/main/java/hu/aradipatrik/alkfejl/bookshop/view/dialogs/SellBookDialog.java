@@ -19,6 +19,8 @@ import java.awt.event.ItemListener;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -45,6 +47,12 @@ public class SellBookDialog extends JDialog implements ActionListener {
 
     private JButton okButton = new JButton(Labels.ok);
     private JButton cancelButton = new JButton(Labels.cancel);
+    private JComboBox<String> bookCombo = new JComboBox<String>();
+    private JComboBox<String> customerCombo = new JComboBox<String>();
+
+    // A könyvek és vásárlók háttérben futó betöltése
+    private CompletableFuture<List<Book>> booksLoad;
+    private CompletableFuture<List<Customer>> customersLoad;
 
     private Map<String, Book> bookMap = new HashMap<String, Book>();
     private Book selectedBook;
@@ -87,21 +95,48 @@ public class SellBookDialog extends JDialog implements ActionListener {
     }
 
     /**
-     * A controlleren keresztül megkapott adatok struktúráját (lista) a view
-     * szükségleteinek megfelelõen átalakítja.
+     * A háttérben lekéri a controllertõl a könyveket és a vásárlókat, majd a
+     * GUI szálán a view szükségleteinek megfelelõen átalakítja (map) és
+     * feltölti velük a combo-kat. A betöltés alatt az OK gomb le van tiltva.
      */
     private void prepareDataStructure() {
-        List<Book> books = gui.getController().getBooks();
+        booksLoad = gui.getController().getBooksAsync();
+        customersLoad = gui.getController().getCustomersAsync();
 
-        for (Book book : books) {
-            bookMap.put(book.getTitle(), book);
-        }
+        okButton.setEnabled(false);
+        bookCombo.setEnabled(false);
+        customerCombo.setEnabled(false);
 
-        List<Customer> customers = gui.getController().getCustomers();
+        gui.onEdt(CompletableFuture.allOf(booksLoad, customersLoad), (ignored, error) -> {
+            if (error instanceof CancellationException) {
+                return;
+            } else if (error != null) {
+                JOptionPane.showMessageDialog(
+                        gui.getWindow(),
+                        Labels.loading_failed,
+                        Labels.error,
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
-        for (Customer customer : customers) {
-            customerMap.put(customer.getName(), customer);
-        }
+            for (Book book : booksLoad.join()) {
+                bookMap.put(book.getTitle(), book);
+            }
+            for (String bookTitle : bookMap.keySet()) {
+                bookCombo.addItem(bookTitle);
+            }
+
+            for (Customer customer : customersLoad.join()) {
+                customerMap.put(customer.getName(), customer);
+            }
+            for (String customerName : customerMap.keySet()) {
+                customerCombo.addItem(customerName);
+            }
+
+            okButton.setEnabled(true);
+            bookCombo.setEnabled(true);
+            customerCombo.setEnabled(true);
+        });
     }
 
     private Component createSettingPanel() {
@@ -118,15 +153,10 @@ public class SellBookDialog extends JDialog implements ActionListener {
 
     private Container getLeftSettingsPanel(){
         // a könyvválasztó combo összerakása
-        JComboBox<String> bookCombo = new JComboBox<String>();
-
         bookCombo.setPreferredSize(new Dimension(100, 20));
 
-        // a combo elemeinek beállítása
+        // a combo elemeinek beállítása, a könyvek a betöltés után kerülnek bele
         bookCombo.addItem(BOOK_NONE_SELECTED);
-        for (String bookTitle : bookMap.keySet()) {
-            bookCombo.addItem(bookTitle);
-        }
 
         JPanel bookComboPanel = new JPanel();
         bookComboPanel.add(bookCombo);
@@ -213,15 +243,10 @@ public class SellBookDialog extends JDialog implements ActionListener {
 
     private Container getRightSettingsPanel(){
         // a vásárlóválasztó combo összerakása
-        JComboBox<String> customerCombo = new JComboBox<String>();
-
         customerCombo.setPreferredSize(new Dimension(100, 20));
 
-        // a combo elemeinek beállítása
+        // a combo elemeinek beállítása, a vásárlók a betöltés után kerülnek bele
         customerCombo.addItem(CUSTOMER_NONE_SELECTED);
-        for (String customerName : customerMap.keySet()) {
-            customerCombo.addItem(customerName);
-        }
 
         JPanel customerComboPanel = new JPanel();
         customerComboPanel.add(customerCombo);
@@ -334,17 +359,26 @@ public class SellBookDialog extends JDialog implements ActionListener {
             purchase.setBook(selectedBook);
             purchase.setCustomer(selectedCustomer);
 
-            if (!gui.getController().addPurchase(purchase)) {
-                JOptionPane.showMessageDialog(
-                        gui.getWindow(),
-                        Labels.purchase_failed,
-                        Labels.error,
-                        JOptionPane.ERROR_MESSAGE);
-            } else {
-                setVisible(false);
-            }
+            // Amíg a vásárlás rögzítése a háttérben fut, nem lehet újra OK-t nyomni
+            okButton.setEnabled(false);
+
+            gui.onEdt(gui.getController().addPurchaseAsync(purchase), (isStored, error) -> {
+                okButton.setEnabled(true);
+
+                if (error != null || !isStored) {
+                    JOptionPane.showMessageDialog(
+                            gui.getWindow(),
+                            Labels.purchase_failed,
+                            Labels.error,
+                            JOptionPane.ERROR_MESSAGE);
+                } else {
+                    setVisible(false);
+                }
+            });
         } else if (cancelButton == e.getSource()) {
-            // cancel esetén egyszerûen bezárjuk az ablakot
+            // cancel esetén megszakítjuk a még futó betöltést és bezárjuk az ablakot
+            booksLoad.cancel(true);
+            customersLoad.cancel(true);
             setVisible(false);
         }
     }
@@ -3,6 +3,7 @@ package hu.aradipatrik.alkfejl.bookshop.view.tablemodels;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
 import hu.aradipatrik.alkfejl.bookshop.view.Labels;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.table.AbstractTableModel;
@@ -21,10 +22,39 @@ public class BookTableModel extends AbstractTableModel {
 
     List<Book> books;
 
+    // A legnagyobb megjelenített id, az addRows az ennél nem nagyobb id-jú
+    // sorokat kihagyja
+    private int lastId;
+
     public BookTableModel(List<Book> books) {
         super();
 
-        this.books = books;
+        // saját másolat, mert a sorok késõbb bõvülhetnek (lásd addRows)
+        this.books = new ArrayList<Book>(books);
+        for (Book item : this.books) {
+            lastId = Math.max(lastId, item.getId());
+        }
+    }
+
+    /**
+     * A táblázat végére fûzi az újonnan felvett könyveket. A már megjelenített
+     * (nem nagyobb id-jú) sorokat kihagyja.
+     *
+     * @param added Az újonnan felvett {@link Book}-ok, id szerint rendezve.
+     */
+    public void addRows(List<Book> added) {
+        int firstRow = books.size();
+
+        for (Book item : added) {
+            if (item.getId() > lastId) {
+                books.add(item);
+                lastId = item.getId();
+            }
+        }
+
+        if (books.size() > firstRow) {
+            fireTableRowsInserted(firstRow, books.size() - 1);
+        }
     }
 
     /* A table model megvalósításához felül kell írni néhány fontos metódust!
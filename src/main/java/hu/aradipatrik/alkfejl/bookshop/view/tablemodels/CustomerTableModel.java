@@ -25,6 +25,10 @@ public class CustomerTableModel extends AbstractTableModel {
     // A vásárlókat tartalmazó objektum (a DAO-tól kapott átstruktúrálva)
     Map<Integer, Customer> customers = new HashMap<Integer, Customer>();
 
+    // A legnagyobb megjelenített id, az addRows az ennél nem nagyobb id-jú
+    // vásárlókat kihagyja
+    private int lastId;
+
     public CustomerTableModel(List<Customer> customers) {
         super();
 
@@ -46,10 +50,33 @@ public class CustomerTableModel extends AbstractTableModel {
 
         for (Customer customer : customers) {
             this.customers.put(row, customer);
+            lastId = Math.max(lastId, customer.getId());
             row++;
         }
     }
 
+    /**
+     * A táblázat végére fûzi az újonnan felvett vásárlókat. A már megjelenített
+     * (nem nagyobb id-jú) vásárlókat kihagyja.
+     *
+     * @param added Az újonnan felvett {@link Customer}-ek, id szerint rendezve.
+     */
+    public void addRows(List<Customer> added) {
+        int firstRow = customers.size();
+
+        int row = firstRow;
+        for (Customer customer : added) {
+            if (customer.getId() > lastId) {
+                customers.put(row++, customer);
+                lastId = customer.getId();
+            }
+        }
+
+        if (row > firstRow) {
+            fireTableRowsInserted(firstRow, row - 1);
+        }
+    }
+
     /* A table model megvalósításához felül kell írni néhány fontos metódust!
      */
 
@@ -3,6 +3,7 @@ package hu.aradipatrik.alkfejl.bookshop.view.tablemodels;
 import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
 import hu.aradipatrik.alkfejl.bookshop.view.Labels;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.table.AbstractTableModel;
@@ -16,10 +17,39 @@ public class PurchaseTableModel extends AbstractTableModel {
 
     List<Purchase> purchases;
 
+    // A legnagyobb megjelenített id, az addRows az ennél nem nagyobb id-jú
+    // sorokat kihagyja
+    private int lastId;
+
     public PurchaseTableModel(List<Purchase> purchases) {
         super();
 
-        this.purchases = purchases;
+        // saját másolat, mert a sorok késõbb bõvülhetnek (lásd addRows)
+        this.purchases = new ArrayList<Purchase>(purchases);
+        for (Purchase item : this.purchases) {
+            lastId = Math.max(lastId, item.getId());
+        }
+    }
+
+    /**
+     * A táblázat végére fûzi az újonnan felvett vásárlásokat. A már megjelenített
+     * (nem nagyobb id-jú) sorokat kihagyja.
+     *
+     * @param added Az újonnan felvett {@link Purchase}-ek, id szerint rendezve.
+     */
+    public void addRows(List<Purchase> added) {
+        int firstRow = purchases.size();
+
+        for (Purchase item : added) {
+            if (item.getId() > lastId) {
+                purchases.add(item);
+                lastId = item.getId();
+            }
+        }
+
+        if (purchases.size() > firstRow) {
+            fireTableRowsInserted(firstRow, purchases.size() - 1);
+        }
     }
 
     /* A table model megvalósításához felül kell írni néhány fontos metódust!
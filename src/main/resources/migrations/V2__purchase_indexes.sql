@@ -0,0 +1,5 @@
+create index if not exists idx_sold_customer on SoldBookInstances (id_customer);
+
+create index if not exists idx_sold_date on SoldBookInstances (sellDate);
+
+create index if not exists idx_book_category on Book (category);
@@ -0,0 +1,5 @@
+create index if not exists idx_book_year on Book (year);
+
+create index if not exists idx_book_price on Book (price);
+
+create index if not exists idx_customer_age on Customer (age);
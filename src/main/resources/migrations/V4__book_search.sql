@@ -0,0 +1,26 @@
+create virtual table if not exists BookSearch using fts5
+(
+  title,
+  author,
+  content = 'Book',
+  content_rowid = 'id',
+  prefix = '2 3'
+);
+
+create trigger if not exists BookSearch_insert after insert on Book
+begin
+  insert into BookSearch (rowid, title, author) values (new.id, new.title, new.author);
+end;
+
+create trigger if not exists BookSearch_delete after delete on Book
+begin
+  insert into BookSearch (BookSearch, rowid, title, author) values ('delete', old.id, old.title, old.author);
+end;
+
+create trigger if not exists BookSearch_update after update of title, author on Book
+begin
+  insert into BookSearch (BookSearch, rowid, title, author) values ('delete', old.id, old.title, old.author);
+  insert into BookSearch (rowid, title, author) values (new.id, new.title, new.author);
+end;
+
+insert into BookSearch (BookSearch) values ('rebuild');
@@ -0,0 +1,3 @@
+alter table SoldBookInstances add column price integer;
+
+update SoldBookInstances set price = (select price from Book where Book.id = SoldBookInstances.id_book) where price is null;
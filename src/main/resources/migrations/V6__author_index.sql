@@ -0,0 +1 @@
+create index if not exists idx_book_author on Book (author);
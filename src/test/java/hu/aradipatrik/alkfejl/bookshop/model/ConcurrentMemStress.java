@@ -0,0 +1,347 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Többszálú terhelési teszt a {@link BookShopDAOConcurrentMemImpl}-hez.
+ * Minden körben új adattáron ellenõrzi, hogy
+ * <ul>
+ * <li>párhuzamos felvételnél egyetlen sikeres felvétel sem vész el, és két
+ * elem sem kap azonos id-t;</li>
+ * <li>azonos nevû vásárlók, azonos címû könyvek és azonos (könyv, vásárló)
+ * párú vásárlások közül pontosan egy kerül be;</li>
+ * <li>egyszerre eladva sem megy egy könyv készlete nulla alá, és pontosan a
+ * készletnyi eladás sikerül;</li>
+ * <li>a watermark szerint lekérdezõ (getXSince) olvasó minden sort pontosan
+ * egyszer lát.</li>
+ * </ul>
+ * Hiba esetén kivétellel, nem nulla kilépési kóddal áll le. Futtatás (a körök
+ * száma opcionális):
+ * <pre>
+ * java -cp target/classes:target/test-classes hu.aradipatrik.alkfejl.bookshop.model.ConcurrentMemStress 10
+ * </pre>
+ */
+public final class ConcurrentMemStress {
+
+    private static final int THREADS = 8;
+    private static final int ROWS_PER_THREAD = 2_000;
+    private static final int DUPLICATE_NAMES = 500;
+    private static final int BOOKS = 50;
+    private static final int STOCK = 20;
+    // Könyvenként és szálanként ennyi eladási kísérlet (összesen több a készletnél)
+    private static final int SALES_PER_THREAD = 10;
+    private static final int POLLERS = 2;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ConcurrentMemStress() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        try {
+            for (int round = 1; round <= rounds; round++) {
+                concurrentInserts();
+                duplicates();
+                stockNeverNegative();
+                pollerSeesEachRowOnce();
+                System.out.println("Round " + round + "/" + rounds + " passed");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Minden szál egyedi nevû vásárlókat és egyedi címû könyveket vesz fel.
+     */
+    private static void concurrentInserts() throws Exception {
+        BookShopDAOConcurrentMemImpl dao = new BookShopDAOConcurrentMemImpl();
+        Set<Integer> customerIds = ConcurrentHashMap.newKeySet();
+        Set<Integer> bookIds = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(THREADS, thread -> {
+            for (int n = 0; n < ROWS_PER_THREAD; n++) {
+                Customer customer = customer("customer-" + thread + "-" + n);
+                check(dao.addCustomer(customer), "Unique customer rejected: " + customer.getName());
+                check(customerIds.add(customer.getId()), "Id handed out twice: " + customer.getId());
+
+                Book book = book("book-" + thread + "-" + n, 1);
+                check(dao.addBook(book), "Unique book rejected: " + book.getTitle());
+                check(bookIds.add(book.getId()), "Id handed out twice: " + book.getId());
+            }
+        });
+
+        check(Collections.disjoint(customerIds, bookIds), "A customer and a book got the same id");
+        checkIds("customers", dao.getCustomers(), Customer::getId, customerIds);
+        checkIds("books", dao.getBooks(), Book::getId, bookIds);
+    }
+
+    /**
+     * Minden szál ugyanazokat a neveket, címeket és párokat próbálja
+     * felvenni, szálanként más sorrendben.
+     */
+    private static void duplicates() throws Exception {
+        BookShopDAOConcurrentMemImpl dao = new BookShopDAOConcurrentMemImpl();
+        AtomicIntegerArray customerWinners = new AtomicIntegerArray(DUPLICATE_NAMES);
+        AtomicIntegerArray bookWinners = new AtomicIntegerArray(DUPLICATE_NAMES);
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < DUPLICATE_NAMES; i++) {
+                int n = (i + thread * DUPLICATE_NAMES / THREADS) % DUPLICATE_NAMES;
+                if (dao.addCustomer(customer("duplicate-" + n))) {
+                    customerWinners.incrementAndGet(n);
+                }
+                if (dao.addBook(book("duplicate-" + n, 1))) {
+                    bookWinners.incrementAndGet(n);
+                }
+            }
+        });
+
+        for (int n = 0; n < DUPLICATE_NAMES; n++) {
+            check(customerWinners.get(n) == 1, customerWinners.get(n) + " winners for customer name " + n);
+            check(bookWinners.get(n) == 1, bookWinners.get(n) + " winners for book title " + n);
+        }
+        check(dao.getCustomers().size() == DUPLICATE_NAMES, "Stored " + dao.getCustomers().size() + " customers");
+        check(dao.getBooks().size() == DUPLICATE_NAMES, "Stored " + dao.getBooks().size() + " books");
+
+        // a tárolt példányokra hivatkozó, azonos párú vásárlások
+        List<Customer> customers = dao.getCustomers();
+        List<Book> books = dao.getBooks();
+        AtomicIntegerArray purchaseWinners = new AtomicIntegerArray(DUPLICATE_NAMES);
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < DUPLICATE_NAMES; i++) {
+                int n = (i + thread * DUPLICATE_NAMES / THREADS) % DUPLICATE_NAMES;
+                if (dao.addPurchase(purchase(books.get(n), customers.get(n)))) {
+                    purchaseWinners.incrementAndGet(n);
+                }
+            }
+        });
+
+        for (int n = 0; n < DUPLICATE_NAMES; n++) {
+            check(purchaseWinners.get(n) == 1, purchaseWinners.get(n) + " winners for purchase pair " + n);
+        }
+        check(dao.getPurchases().size() == DUPLICATE_NAMES, "Stored " + dao.getPurchases().size() + " purchases");
+    }
+
+    /**
+     * A szálak a készletnél többször próbálják eladni ugyanazokat a könyveket
+     * (mindig más vásárlónak), közben egy figyelõ szál a készletet olvassa.
+     */
+    private static void stockNeverNegative() throws Exception {
+        BookShopDAOConcurrentMemImpl dao = new BookShopDAOConcurrentMemImpl();
+        for (int n = 0; n < BOOKS; n++) {
+            dao.addBook(book("stock-" + n, STOCK));
+        }
+        for (int n = 0; n < THREADS * SALES_PER_THREAD; n++) {
+            dao.addCustomer(customer("buyer-" + n));
+        }
+        List<Book> books = dao.getBooks();
+        List<Customer> customers = dao.getCustomers();
+
+        AtomicIntegerArray sold = new AtomicIntegerArray(BOOKS);
+        AtomicBoolean selling = new AtomicBoolean(true);
+        AtomicInteger lowestStock = new AtomicInteger(STOCK);
+        Future<?> watcher = executor.submit(() -> {
+            while (selling.get()) {
+                for (Book book : books) {
+                    lowestStock.accumulateAndGet(book.getPiece(), Math::min);
+                }
+            }
+        });
+
+        try {
+            runConcurrently(THREADS, thread -> {
+                for (int attempt = 0; attempt < SALES_PER_THREAD; attempt++) {
+                    Customer customer = customers.get(thread * SALES_PER_THREAD + attempt);
+                    for (int n = 0; n < BOOKS; n++) {
+                        BatchResult.Outcome outcome = dao.sellBooks(
+                                Collections.singletonList(purchase(books.get(n), customer))).getOutcome(0);
+                        if (outcome == BatchResult.Outcome.INSERTED) {
+                            sold.incrementAndGet(n);
+                        } else {
+                            check(outcome == BatchResult.Outcome.OUT_OF_STOCK, "Unexpected outcome " + outcome);
+                        }
+                    }
+                }
+            });
+        } finally {
+            selling.set(false);
+        }
+        watcher.get();
+
+        check(lowestStock.get() >= 0, "Stock went down to " + lowestStock.get());
+        for (int n = 0; n < BOOKS; n++) {
+            check(sold.get(n) == STOCK, "Sold " + sold.get(n) + " copies of a book with " + STOCK + " in stock");
+            check(books.get(n).getPiece() == 0, "Stock left: " + books.get(n).getPiece());
+        }
+        check(dao.getPurchases().size() == BOOKS * STOCK, "Stored " + dao.getPurchases().size() + " purchases");
+    }
+
+    /**
+     * Vásárlók és vásárlások felvétele közben az olvasók a legnagyobb látott
+     * id-tól kérdezik le az újakat. A felvételek végén még egyszer lekérdeznek.
+     */
+    private static void pollerSeesEachRowOnce() throws Exception {
+        BookShopDAOConcurrentMemImpl dao = new BookShopDAOConcurrentMemImpl();
+        for (int n = 0; n < BOOKS; n++) {
+            dao.addBook(book("polled-" + n, 1));
+        }
+        List<Book> books = dao.getBooks();
+
+        int writers = THREADS - POLLERS;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<List<Map<Integer, Integer>>>> pollers = new ArrayList<>();
+        for (int p = 0; p < POLLERS; p++) {
+            pollers.add(executor.submit(() -> {
+                Map<Integer, Integer> customersSeen = new HashMap<>();
+                Map<Integer, Integer> purchasesSeen = new HashMap<>();
+                int customerWatermark = 0;
+                int purchaseWatermark = 0;
+                boolean last = false;
+                while (!last) {
+                    // a felvételek vége után még egy teljes lekérdezés
+                    last = !writing.get();
+                    customerWatermark = poll(dao.getCustomersSince(customerWatermark), Customer::getId,
+                            customersSeen, customerWatermark);
+                    purchaseWatermark = poll(dao.getPurchasesSince(purchaseWatermark), Purchase::getId,
+                            purchasesSeen, purchaseWatermark);
+                }
+                List<Map<Integer, Integer>> seen = new ArrayList<>();
+                seen.add(customersSeen);
+                seen.add(purchasesSeen);
+                return seen;
+            }));
+        }
+
+        try {
+            runConcurrently(writers, thread -> {
+                for (int n = 0; n < ROWS_PER_THREAD; n++) {
+                    Customer customer = customer("polled-" + thread + "-" + n);
+                    check(dao.addCustomer(customer), "Unique customer rejected: " + customer.getName());
+                    check(dao.addPurchase(purchase(books.get(n % BOOKS), customer)), "Purchase rejected");
+                }
+            });
+        } finally {
+            writing.set(false);
+        }
+
+        Set<Integer> customerIds = ids(dao.getCustomers(), Customer::getId);
+        Set<Integer> purchaseIds = ids(dao.getPurchases(), Purchase::getId);
+        check(customerIds.size() == writers * ROWS_PER_THREAD, "Stored " + customerIds.size() + " customers");
+        check(purchaseIds.size() == writers * ROWS_PER_THREAD, "Stored " + purchaseIds.size() + " purchases");
+        for (Future<List<Map<Integer, Integer>>> poller : pollers) {
+            List<Map<Integer, Integer>> seen = poller.get();
+            checkSeenOnce("customers", seen.get(0), customerIds);
+            checkSeenOnce("purchases", seen.get(1), purchaseIds);
+        }
+    }
+
+    /**
+     * Feljegyzi a lekérdezett sorokat, és visszaadja az új watermarkot.
+     */
+    private static <T> int poll(List<T> rows, ToIntFunction<T> id, Map<Integer, Integer> seen, int watermark) {
+        for (T row : rows) {
+            int rowId = id.applyAsInt(row);
+            check(rowId > watermark, "Row " + rowId + " returned again after watermark " + watermark);
+            seen.merge(rowId, 1, Integer::sum);
+            watermark = rowId;
+        }
+        return watermark;
+    }
+
+    private static void checkSeenOnce(String table, Map<Integer, Integer> seen, Set<Integer> stored) {
+        for (Map.Entry<Integer, Integer> entry : seen.entrySet()) {
+            check(entry.getValue() == 1, "Poller saw " + table + " row " + entry.getKey() + " " + entry.getValue() + " times");
+        }
+        check(seen.keySet().equals(stored), "Poller saw " + seen.size() + " of " + stored.size() + " " + table);
+    }
+
+    private static <T> void checkIds(String table, List<T> rows, ToIntFunction<T> id, Set<Integer> expected) {
+        Set<Integer> stored = ids(rows, id);
+        check(stored.size() == rows.size(), "Duplicate id in " + table);
+        check(stored.equals(expected), "Expected " + expected.size() + " " + table + " but found " + stored.size());
+    }
+
+    private static <T> Set<Integer> ids(List<T> rows, ToIntFunction<T> id) {
+        Set<Integer> ids = new HashSet<>();
+        for (T row : rows) {
+            ids.add(id.applyAsInt(row));
+        }
+        return ids;
+    }
+
+    /**
+     * Egyszerre indítja a szálakat, és megvárja mindet. Egy szál hibáját a
+     * hívóra dobja tovább.
+     */
+    private static void runConcurrently(int threads, IntConsumer task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.accept(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static Customer customer(String name) {
+        Customer customer = new Customer();
+        customer.setName(name);
+        customer.setAge(30);
+        customer.setQualification("secondary");
+        return customer;
+    }
+
+    private static Book book(String title, int piece) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Author");
+        book.setCategory("Category");
+        book.setYear(2000);
+        book.setPrice(1000);
+        book.setPiece(piece);
+        return book;
+    }
+
+    private static Purchase purchase(Book book, Customer customer) {
+        Purchase purchase = new Purchase();
+        purchase.setBook(book);
+        purchase.setCustomer(customer);
+        return purchase;
+    }
+}
@@ -0,0 +1,253 @@
+package hu.aradipatrik.alkfejl.bookshop.model;
+
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Book;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Customer;
+import hu.aradipatrik.alkfejl.bookshop.model.bean.Purchase;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ellenõrzi a tartós tárolás helyreállítását és a katalógus fájl formátumát:
+ * <ul>
+ * <li>a {@link DurableBookShopDAO} a napló félbeszakadt utolsó rekordját
+ * eldobja, a fájlt az utolsó ép rekordra vágja, és az ezután írt rekordok a
+ * következõ induláskor is megmaradnak;</li>
+ * <li>több snapshot és naplócsere után az újranyitott adattár tartalma
+ * megegyezik a lezárás elõttivel;</li>
+ * <li>a {@link CatalogFile} exportja és importja után a vásárlók, könyvek
+ * és vásárlások (null szövegekkel, dátum nélküli vásárlással, ékezetes
+ * szövegekkel együtt) változatlanok.</li>
+ * </ul>
+ * Ideiglenes könyvtárban dolgozik. Hiba esetén kivétellel, nem nulla
+ * kilépési kóddal áll le. Futtatás:
+ * <pre>
+ * java -cp target/classes:target/test-classes hu.aradipatrik.alkfejl.bookshop.model.DurabilityCheck
+ * </pre>
+ */
+public final class DurabilityCheck {
+
+    private static final int CUSTOMERS = 300;
+    private static final int BOOKS = 100;
+    private static final int STOCK = 2;
+    // Kicsi küszöb, hogy a feltöltés alatt több snapshot is készüljön
+    private static final long SNAPSHOT_THRESHOLD_BYTES = 8 * 1024;
+    // Ennyi bájtot vágunk le a napló végérõl (kevesebb, mint egy rekord)
+    private static final int TORN_BYTES = 3;
+
+    private DurabilityCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("bookshop-durability");
+        try {
+            tornRecordIsDropped(directory.resolve("torn"));
+            System.out.println("Torn journal record: passed");
+            snapshotAndReplay(directory.resolve("snapshot"));
+            System.out.println("Snapshot and journal replay: passed");
+            catalogRoundTrip(directory.resolve("catalog.bin"));
+            System.out.println("Catalog file round trip: passed");
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Az utolsó rekord végét levágjuk, mintha írás közben állt volna le a
+     * folyamat. Újranyitva a rekord nélküli állapotot kell kapnunk.
+     */
+    private static void tornRecordIsDropped(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<String> beforeLastWrite;
+        try (DurableBookShopDAO dao = new DurableBookShopDAO(directory)) {
+            fill(dao);
+            beforeLastWrite = describe(dao);
+            check(dao.addCustomer(customer("Félbeszakadt Ödön", 40)), "Last customer rejected");
+        }
+
+        Path journal = latest(directory, "journal-");
+        long size = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(size - TORN_BYTES);
+        }
+
+        List<String> recovered;
+        try (DurableBookShopDAO dao = new DurableBookShopDAO(directory)) {
+            recovered = describe(dao);
+            check(recovered.equals(beforeLastWrite), "Torn record not dropped: " + diff(beforeLastWrite, recovered));
+            check(Files.size(journal) < size - TORN_BYTES, "Journal not truncated to the last whole record");
+            check(dao.addCustomer(customer("Utólag Ubul", 41)), "Customer after recovery rejected");
+            recovered = describe(dao);
+        }
+
+        try (DurableBookShopDAO dao = new DurableBookShopDAO(directory)) {
+            List<String> reopened = describe(dao);
+            check(reopened.equals(recovered), "Write after truncation lost: " + diff(recovered, reopened));
+        }
+    }
+
+    /**
+     * A kis küszöb miatt a feltöltés közben több snapshot és naplócsere is
+     * történik, a végén pedig egy kézi snapshot után még írunk.
+     */
+    private static void snapshotAndReplay(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<String> expected;
+        try (DurableBookShopDAO dao = new DurableBookShopDAO(directory, 0, SNAPSHOT_THRESHOLD_BYTES)) {
+            fill(dao);
+            dao.snapshot();
+            check(dao.addBook(book("Snapshot után", 1)), "Book after snapshot rejected");
+            Book fresh = dao.getBooks().stream()
+                    .filter(b -> "Snapshot után".equals(b.getTitle()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Book after snapshot missing"));
+            check(dao.sellBook(purchase(fresh, dao.getCustomers().get(CUSTOMERS - 1), null)),
+                    "Sale after snapshot failed");
+            expected = describe(dao);
+        }
+        check(latest(directory, "snapshot-") != null, "No snapshot written");
+
+        try (DurableBookShopDAO dao = new DurableBookShopDAO(directory, 0, SNAPSHOT_THRESHOLD_BYTES)) {
+            List<String> recovered = describe(dao);
+            check(recovered.equals(expected), "Recovered state differs: " + diff(expected, recovered));
+        }
+    }
+
+    private static void catalogRoundTrip(Path file) throws IOException {
+        BookShopDAOMemImpl source = new BookShopDAOMemImpl();
+        fill(source);
+        Customer noQualification = customer("Végzettség Nélküli", 17);
+        noQualification.setQualification(null);
+        check(source.addCustomer(noQualification), "Customer without qualification rejected");
+
+        CatalogFile.export(source, file);
+        BookShopDAOMemImpl target = new BookShopDAOMemImpl();
+        for (BatchResult result : CatalogFile.importInto(file, target)) {
+            check(result.count(BatchResult.Outcome.INSERTED) == result.size(), "Import rejected rows: " + result);
+        }
+
+        List<String> expected = describe(source);
+        List<String> imported = describe(target);
+        check(imported.equals(expected), "Catalog round trip differs: " + diff(expected, imported));
+    }
+
+    /**
+     * Vásárlók, könyvek és eladások, köztük dátum nélküli és elfogyott
+     * készletû könyvre próbált eladás is.
+     */
+    private static void fill(BookShopDAO dao) {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = customer("Vásárló " + i, 10 + i % 70);
+            customer.setFemale(i % 2 == 0);
+            customer.setGrantee(i % 7 == 0);
+            check(dao.addCustomer(customer), "Customer rejected: " + customer.getName());
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = book("Könyv " + i, STOCK);
+            book.setAncient(i % 10 == 0);
+            check(dao.addBook(book), "Book rejected: " + book.getTitle());
+        }
+
+        List<Customer> customers = dao.getCustomers();
+        List<Book> books = dao.getBooks();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Book book = books.get(i % BOOKS);
+            LocalDate sellDate = i % 5 == 0 ? null : LocalDate.of(2020, 1, 1).plusDays(i);
+            // könyvenként STOCK eladás után elfogy a készlet
+            boolean inStock = i / BOOKS < STOCK;
+            check(dao.sellBook(purchase(book, customers.get(i), sellDate)) == inStock, "Unexpected sale outcome " + i);
+        }
+    }
+
+    /**
+     * Az adattár tartalma id-k nélkül, rendezett szövegként (az import új
+     * id-kat oszt ki).
+     */
+    private static List<String> describe(BookShopDAO dao) {
+        List<String> rows = new ArrayList<>();
+        for (Customer c : dao.getCustomers()) {
+            rows.add("customer|" + c.getName() + "|" + c.getAge() + "|" + c.isFemale() + "|" + c.isRented()
+                    + "|" + c.isStudent() + "|" + c.isGrantee() + "|" + c.getQualification());
+        }
+        for (Book b : dao.getBooks()) {
+            rows.add("book|" + b.getAuthor() + "|" + b.getTitle() + "|" + b.getYear() + "|" + b.getCategory()
+                    + "|" + b.getPrice() + "|" + b.getPiece() + "|" + b.isAncient());
+        }
+        for (Purchase p : dao.getPurchases()) {
+            rows.add("purchase|" + p.getBook().getTitle() + "|" + p.getCustomer().getName()
+                    + "|" + p.getSellDate() + "|" + p.getPrice());
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static String diff(List<String> expected, List<String> actual) {
+        List<String> missing = new ArrayList<>(expected);
+        missing.removeAll(actual);
+        List<String> extra = new ArrayList<>(actual);
+        extra.removeAll(expected);
+        return "missing " + missing + ", extra " + extra;
+    }
+
+    /**
+     * @return A könyvtár legnagyobb generációjú, adott elõtagú fájlja, vagy null.
+     */
+    private static Path latest(Path directory, String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix))
+                    .max(Comparator.comparing(f -> f.getFileName().toString()))
+                    .orElse(null);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static Customer customer(String name, int age) {
+        Customer customer = new Customer();
+        customer.setName(name);
+        customer.setAge(age);
+        customer.setQualification("érettségi");
+        return customer;
+    }
+
+    private static Book book(String title, int pieces) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Szerzõ " + title.length());
+        book.setCategory("regény");
+        book.setYear(1850 + title.length());
+        book.setPrice(1000 + title.length());
+        book.setPiece(pieces);
+        return book;
+    }
+
+    private static Purchase purchase(Book book, Customer customer, LocalDate sellDate) {
+        Purchase purchase = new Purchase();
+        purchase.setBook(book);
+        purchase.setCustomer(customer);
+        purchase.setSellDate(sellDate);
+        return purchase;
+    }
+}